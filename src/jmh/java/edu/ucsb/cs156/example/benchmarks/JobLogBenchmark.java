@@ -0,0 +1,178 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import ch.qos.logback.classic.Logger;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobLogWriter;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Benchmarks logging a job's output, one operation being a whole job that logs {@code lines}
+ * lines.
+ *
+ * <p>Strategies compared:
+ *
+ * <ul>
+ *   <li>{@code legacy}: the original JobContext, which appended each line to the job's log column
+ *       and saved the whole job after every line;
+ *   <li>{@code unbuffered}: one job_log_lines row written per line;
+ *   <li>{@code batched}: job_log_lines rows buffered and written 500 at a time (the default).
+ * </ul>
+ *
+ * <p>Each runs against a stub that discards writes (the cost of the Java side alone) and against an
+ * in-memory H2 database. Run with {@code -prof gc} (the default in the jmh Maven profile) to see
+ * the allocation rate next to the throughput. The legacy strategy is quadratic in the number of
+ * lines, so expect its 100k-line runs to take minutes; narrow the run with e.g. {@code -p
+ * lines=10,1000}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JobLogBenchmark {
+
+  @Param({"10", "1000", "100000"})
+  public int lines;
+
+  @Param({"legacy", "unbuffered", "batched"})
+  public String strategy;
+
+  @Param({"stub", "h2"})
+  public String storage;
+
+  private JdbcTemplate jdbcTemplate;
+  private JobsRepository jobsRepository;
+  private JobLogWriter jobLogWriter;
+  private long nextJobId;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    // The legacy path logs every line at INFO; keep the console out of the measurement
+    ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME))
+        .setLevel(ch.qos.logback.classic.Level.WARN);
+
+    if ("h2".equals(storage)) {
+      jdbcTemplate =
+          new JdbcTemplate(
+              new SingleConnectionDataSource("jdbc:h2:mem:jobLogBenchmark", "sa", "", true));
+      jdbcTemplate.execute(
+          "CREATE TABLE jobs (id BIGINT PRIMARY KEY, status VARCHAR(255), log TEXT)");
+      jdbcTemplate.execute(
+          "CREATE TABLE job_log_lines (id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+              + " job_id BIGINT NOT NULL, seq INT NOT NULL, created_at TIMESTAMP WITH TIME ZONE,"
+              + " message TEXT)");
+      jobLogWriter = new JobLogWriter();
+      ReflectionTestUtils.setField(jobLogWriter, "jdbcTemplate", jdbcTemplate);
+      jobsRepository = stubJobsRepository(this::saveLog);
+    } else {
+      jobLogWriter = new DiscardingJobLogWriter();
+      jobsRepository = stubJobsRepository(job -> {});
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void clearTables() {
+    if (jdbcTemplate != null) {
+      jdbcTemplate.execute("TRUNCATE TABLE job_log_lines");
+      jdbcTemplate.execute("TRUNCATE TABLE jobs");
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (jdbcTemplate != null) {
+      jdbcTemplate.execute("SHUTDOWN");
+    }
+  }
+
+  @Benchmark
+  public void logJob(Blackhole blackhole) {
+    Job job = Job.builder().id(++nextJobId).status("running").build();
+    if (jdbcTemplate != null) {
+      jdbcTemplate.update("INSERT INTO jobs (id, status) VALUES (?, ?)", job.getId(), "running");
+    }
+
+    switch (strategy) {
+      case "legacy" -> {
+        for (int i = 0; i < lines; i++) {
+          legacyLog(job, "line " + i);
+        }
+      }
+      case "unbuffered" -> {
+        JobContext context = new JobContext(jobLogWriter, job);
+        for (int i = 0; i < lines; i++) {
+          context.log("line " + i);
+        }
+      }
+      default -> {
+        JobContext context = new JobContext(jobLogWriter, job, 500, Long.MAX_VALUE);
+        for (int i = 0; i < lines; i++) {
+          context.log("line " + i);
+        }
+        context.flush();
+      }
+    }
+    blackhole.consume(job);
+  }
+
+  /** JobContext.log as it was before logs moved to job_log_lines. */
+  private void legacyLog(Job job, String message) {
+    LoggerFactory.getLogger(JobContext.class).info("Job %s: %s".formatted(job.getId(), message));
+    String previousLog = job.getLog() == null ? "" : (job.getLog() + "\n");
+    job.setLog(previousLog + message);
+    jobsRepository.save(job);
+  }
+
+  /** What saving the job costs in H2, minus Hibernate: rewriting the log column. */
+  private void saveLog(Job job) {
+    jdbcTemplate.update("UPDATE jobs SET log = ? WHERE id = ?", job.getLog(), job.getId());
+  }
+
+  /** A JobsRepository whose save hands the job to {@code onSave}; nothing else is called. */
+  private static JobsRepository stubJobsRepository(Consumer<Job> onSave) {
+    return (JobsRepository)
+        Proxy.newProxyInstance(
+            JobsRepository.class.getClassLoader(),
+            new Class<?>[] {JobsRepository.class},
+            (proxy, method, args) -> {
+              if (!"save".equals(method.getName())) {
+                throw new UnsupportedOperationException(method.getName());
+              }
+              onSave.accept((Job) args[0]);
+              return args[0];
+            });
+  }
+
+  /** A JobLogWriter that drops every batch. */
+  private static class DiscardingJobLogWriter extends JobLogWriter {
+    @Override
+    public void write(List<JobLogLine> lines) {
+      // nothing is stored
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Benchmarks the per-request role work behind the homepage and /api/currentUser: the sorted role
+ * list and a single role check, as they were (streamed and sorted on every call) and as they are
+ * now (memoized by GrantedAuthoritiesService). Run with {@code -prof gc} to see that the memoized
+ * versions do not allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RolesBenchmark {
+
+  private final GrantedAuthoritiesService grantedAuthoritiesService =
+      new GrantedAuthoritiesService();
+
+  @Setup(Level.Trial)
+  public void setup() {
+    // GrantedAuthoritiesService logs at DEBUG; keep the console out of the measurement
+    ((ch.qos.logback.classic.Logger)
+            org.slf4j.LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+        .setLevel(ch.qos.logback.classic.Level.WARN);
+    List<GrantedAuthority> authorities =
+        List.of(
+            new SimpleGrantedAuthority("OAUTH2_USER"),
+            new SimpleGrantedAuthority("SCOPE_email"),
+            new SimpleGrantedAuthority("SCOPE_profile"),
+            new SimpleGrantedAuthority("ROLE_USER"),
+            new SimpleGrantedAuthority("ROLE_MEMBER"),
+            new SimpleGrantedAuthority("ROLE_ADMIN"));
+    SecurityContextHolder.getContext()
+        .setAuthentication(
+            UsernamePasswordAuthenticationToken.authenticated("cgaucho", null, authorities));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Benchmark
+  public List<String> sortedRolesStreamed() {
+    Collection<? extends GrantedAuthority> authorities =
+        grantedAuthoritiesService.getGrantedAuthorities();
+    return authorities.stream().map(GrantedAuthority::getAuthority).sorted().toList();
+  }
+
+  @Benchmark
+  public List<String> sortedRolesMemoized() {
+    return grantedAuthoritiesService.getRoles().getSorted();
+  }
+
+  @Benchmark
+  public boolean hasRoleStreamed() {
+    return sortedRolesStreamed().contains("ROLE_ADMIN");
+  }
+
+  @Benchmark
+  public boolean hasRoleMemoized() {
+    return grantedAuthoritiesService.getRoles().contains("ROLE_ADMIN");
+  }
+}
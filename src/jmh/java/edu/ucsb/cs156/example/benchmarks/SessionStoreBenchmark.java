@@ -0,0 +1,172 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import edu.ucsb.cs156.example.config.CompactOAuth2UserService;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.session.MapSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Benchmarks the session work done by each authenticated request, one operation being a request:
+ * load the session, read the SecurityContext, and save the session with its new last-access time.
+ *
+ * <p>Stores compared: {@code memory} (a map, like Tomcat's own sessions) and {@code jdbc} (the
+ * SPRING_SESSION tables, in an in-memory H2 database). Principals compared: {@code full} (the
+ * user as the provider returns it, with its OAuth2UserAuthority also among the token's
+ * authorities) and {@code compact} (trimmed by CompactOAuth2UserService, with only the role in the
+ * token's authorities). The serialized size of each SecurityContext is printed at the start of a
+ * trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SessionStoreBenchmark {
+
+  @Param({"memory", "jdbc"})
+  public String store;
+
+  @Param({"full", "compact"})
+  public String principal;
+
+  private SingleConnectionDataSource dataSource;
+  private SessionRepository<? extends Session> repository;
+  private String sessionId;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    if ("jdbc".equals(store)) {
+      dataSource = new SingleConnectionDataSource("jdbc:h2:mem:sessionBenchmark", "sa", "", true);
+      new ResourceDatabasePopulator(
+              new ClassPathResource("org/springframework/session/jdbc/schema-h2.sql"))
+          .execute(dataSource);
+      repository =
+          new JdbcIndexedSessionRepository(
+              new JdbcTemplate(dataSource),
+              new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+    } else {
+      repository = new MapSessionRepository(new ConcurrentHashMap<>());
+    }
+
+    SecurityContext context = new SecurityContextImpl(authentication());
+    System.out.printf("%n%s SecurityContext: %d bytes serialized%n", principal, size(context));
+    sessionId = createSession(repository, context);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (dataSource != null) {
+      new JdbcTemplate(dataSource).execute("SHUTDOWN");
+      dataSource.destroy();
+    }
+  }
+
+  @Benchmark
+  public void request(Blackhole blackhole) {
+    blackhole.consume(touch(repository, sessionId));
+  }
+
+  private static <S extends Session> String createSession(
+      SessionRepository<S> repository, SecurityContext context) {
+    S session = repository.createSession();
+    session.setAttribute(
+        HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, context);
+    repository.save(session);
+    return session.getId();
+  }
+
+  private static <S extends Session> Object touch(SessionRepository<S> repository, String id) {
+    S session = repository.findById(id);
+    Object context =
+        session.getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY);
+    session.setLastAccessedTime(Instant.now());
+    repository.save(session);
+    return context;
+  }
+
+  /** An OAuth2 login as SecurityConfig produces it, before or after compaction. */
+  private OAuth2AuthenticationToken authentication() {
+    Map<String, Object> attributes =
+        Map.of(
+            "sub", "104567890123456789012",
+            "email", "cgaucho@ucsb.edu",
+            "email_verified", true,
+            "name", "Chris Gaucho",
+            "given_name", "Chris",
+            "family_name", "Gaucho",
+            "picture", "https://lh3.googleusercontent.com/a/ACg8ocJ-example=s96-c",
+            "locale", "en",
+            "hd", "ucsb.edu");
+    OAuth2User user =
+        new DefaultOAuth2User(
+            List.of(
+                new OAuth2UserAuthority(attributes, "sub"),
+                new SimpleGrantedAuthority("SCOPE_email"),
+                new SimpleGrantedAuthority("SCOPE_profile")),
+            attributes,
+            "sub");
+    boolean compact = "compact".equals(principal);
+    if (compact) {
+      user = CompactOAuth2UserService.compact(user, "sub");
+    }
+    Set<GrantedAuthority> authorities = new HashSet<>();
+    for (GrantedAuthority authority : user.getAuthorities()) {
+      authorities.add(
+          compact && authority instanceof OAuth2UserAuthority
+              ? new SimpleGrantedAuthority(authority.getAuthority())
+              : authority);
+    }
+    authorities.add(new SimpleGrantedAuthority("ROLE_USER"));
+    authorities.add(new SimpleGrantedAuthority("ROLE_MEMBER"));
+    return new OAuth2AuthenticationToken(user, authorities, "google");
+  }
+
+  private static int size(Object value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(value);
+    }
+    return bytes.size();
+  }
+}
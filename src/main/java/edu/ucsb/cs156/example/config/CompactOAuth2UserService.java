@@ -0,0 +1,77 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.client.userinfo.DefaultOAuth2UserService;
+import org.springframework.security.oauth2.client.userinfo.OAuth2UserRequest;
+import org.springframework.security.oauth2.client.userinfo.OAuth2UserService;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
+
+/**
+ * Loads the OAuth2 user like {@link DefaultOAuth2UserService}, but keeps only the attributes the
+ * application reads, so that the principal stored in the (shared, serialized) session stays small.
+ */
+public class CompactOAuth2UserService implements OAuth2UserService<OAuth2UserRequest, OAuth2User> {
+
+  /** The attributes read by CurrentUserServiceImpl and SecurityConfig. */
+  public static final Set<String> KEPT_ATTRIBUTES =
+      Set.of(
+          "sub",
+          "email",
+          "email_verified",
+          "name",
+          "given_name",
+          "family_name",
+          "picture",
+          "locale",
+          "hd");
+
+  private final OAuth2UserService<OAuth2UserRequest, OAuth2User> delegate =
+      new DefaultOAuth2UserService();
+
+  @Override
+  public OAuth2User loadUser(OAuth2UserRequest userRequest) throws OAuth2AuthenticationException {
+    String nameAttributeKey =
+        userRequest
+            .getClientRegistration()
+            .getProviderDetails()
+            .getUserInfoEndpoint()
+            .getUserNameAttributeName();
+    return compact(delegate.loadUser(userRequest), nameAttributeKey);
+  }
+
+  /**
+   * Returns a copy of a user with only {@link #KEPT_ATTRIBUTES} and its name attribute, both in
+   * the user itself and in its {@link OAuth2UserAuthority}.
+   *
+   * @param user the user as loaded from the provider
+   * @param nameAttributeKey the attribute holding the user's name (e.g. "sub")
+   * @return the compact user
+   */
+  public static OAuth2User compact(OAuth2User user, String nameAttributeKey) {
+    Map<String, Object> attributes = new HashMap<>();
+    user.getAttributes()
+        .forEach(
+            (key, value) -> {
+              if (value != null
+                  && (KEPT_ATTRIBUTES.contains(key) || key.equals(nameAttributeKey))) {
+                attributes.put(key, value);
+              }
+            });
+    List<GrantedAuthority> authorities = new ArrayList<>();
+    for (GrantedAuthority authority : user.getAuthorities()) {
+      authorities.add(
+          authority instanceof OAuth2UserAuthority
+              ? new OAuth2UserAuthority(authority.getAuthority(), attributes, nameAttributeKey)
+              : authority);
+    }
+    return new DefaultOAuth2User(authorities, attributes, nameAttributeKey);
+  }
+}
@@ -0,0 +1,73 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * The `JobExecutorConfig` class defines the executor that runs background jobs, kept separate from
+ * Spring's default task executor so that a burst of job launches cannot use up threads that the
+ * rest of the application needs.
+ *
+ * <p>At most {@code app.jobs.executor.max-concurrency} jobs run at once; up to {@code
+ * app.jobs.executor.queue-capacity} more wait in the queue. Anything beyond that is rejected with a
+ * {@link org.springframework.core.task.TaskRejectedException}, which JobService records by marking
+ * the job "rejected".
+ *
+ * <p>Spring Boot only creates its own {@code applicationTaskExecutor} when no other {@link
+ * java.util.concurrent.Executor} bean exists, so it is declared here as well, built from Boot's
+ * {@code spring.task.execution.*} settings, for Spring MVC async requests and unqualified
+ * {@code @Async} methods.
+ */
+@Configuration
+public class JobExecutorConfig {
+
+  public static final String JOB_EXECUTOR = "jobExecutor";
+
+  @Value("${app.jobs.executor.max-concurrency:4}")
+  private int maxConcurrency;
+
+  @Value("${app.jobs.executor.queue-capacity:100}")
+  private int queueCapacity;
+
+  @Value("${app.jobs.executor.virtual-threads:false}")
+  private boolean virtualThreads;
+
+  /**
+   * The executor used by {@code @Async(JobExecutorConfig.JOB_EXECUTOR)} methods.
+   *
+   * @return a bounded executor for jobs
+   */
+  @Bean(name = JOB_EXECUTOR)
+  public ThreadPoolTaskExecutor jobExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(maxConcurrency);
+    executor.setMaxPoolSize(maxConcurrency);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setVirtualThreads(virtualThreads);
+    executor.setThreadNamePrefix("job-");
+    return executor;
+  }
+
+  /**
+   * The executor Spring Boot would otherwise auto-configure, used by Spring MVC async request
+   * handling and by {@code @Async} methods that do not name an executor.
+   *
+   * @param builder the builder configured from {@code spring.task.execution.*}
+   * @return the application's default task executor
+   */
+  @Lazy
+  @Bean(
+      name = {
+        TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+        AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME
+      })
+  public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+    return builder.build();
+  }
+}
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.auditing.DateTimeProvider;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+/**
+ * The `JpaAuditingConfig` class turns on JPA auditing, which fills in fields annotated with
+ * {@code @CreatedDate} and {@code @LastModifiedDate} (e.g. on Job) when an entity is saved.
+ *
+ * <p>Spring's default provider returns a LocalDateTime, which cannot be stored in a ZonedDateTime
+ * field, so a provider of ZonedDateTime is supplied instead.
+ */
+@Configuration
+@EnableJpaAuditing(dateTimeProviderRef = "auditingDateTimeProvider")
+public class JpaAuditingConfig {
+
+  @Bean
+  public DateTimeProvider auditingDateTimeProvider() {
+    return () -> Optional.of(ZonedDateTime.now());
+  }
+}
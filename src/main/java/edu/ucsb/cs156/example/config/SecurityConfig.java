@@ -2,23 +2,21 @@ package edu.ucsb.cs156.example.config;
 
 import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
 
-import edu.ucsb.cs156.example.entities.User;
-import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.AdminService;
+import edu.ucsb.cs156.example.services.AuthoritiesMemo;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
@@ -53,10 +51,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 @Slf4j
 public class SecurityConfig {
 
-  @Value("${app.admin.emails}")
-  private final List<String> adminEmails = new ArrayList<>();
-
-  @Autowired UserRepository userRepository;
+  @Autowired AdminService adminService;
 
   /**
    * The `filterChain` method in this Java code configures various security settings for an HTTP
@@ -73,13 +68,21 @@ public class SecurityConfig {
         .oauth2Login(
             oauth2 ->
                 oauth2.userInfoEndpoint(
-                    userInfo -> userInfo.userAuthoritiesMapper(this.userAuthoritiesMapper())))
+                    userInfo ->
+                        userInfo
+                            .userService(new CompactOAuth2UserService())
+                            .userAuthoritiesMapper(this.userAuthoritiesMapper())))
         .csrf(
             csrf ->
                 csrf.csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
                     .csrfTokenRequestHandler(new SpaCsrfTokenRequestHandler()))
         .addFilterAfter(new CsrfCookieFilter(), BasicAuthenticationFilter.class)
-        .authorizeHttpRequests(auth -> auth.anyRequest().permitAll())
+        .authorizeHttpRequests(
+            auth ->
+                auth.requestMatchers(antMatcher("/actuator/metrics/**"))
+                    .hasRole("ADMIN")
+                    .anyRequest()
+                    .permitAll())
         .logout(
             logout ->
                 logout
@@ -100,15 +103,16 @@ public class SecurityConfig {
   private GrantedAuthoritiesMapper userAuthoritiesMapper() {
     return (authorities) -> {
       Set<GrantedAuthority> mappedAuthorities = new HashSet<>();
-      log.info("********** authorities={}", authorities);
+      log.debug("********** authorities={}", authorities);
 
       authorities.forEach(
           authority -> {
-            log.info("********** authority={}", authority);
-            mappedAuthorities.add(authority);
+            log.debug("********** authority={}", authority);
             if (authority instanceof OAuth2UserAuthority oauth2UserAuthority) {
+              // the principal already holds the attributes; keep only the role in the session
+              mappedAuthorities.add(new SimpleGrantedAuthority(authority.getAuthority()));
               Map<String, Object> userAttributes = oauth2UserAuthority.getAttributes();
-              log.info("********** userAttributes={}", userAttributes);
+              log.debug("********** userAttributes={}", userAttributes);
 
               mappedAuthorities.add(new SimpleGrantedAuthority("ROLE_USER"));
 
@@ -120,31 +124,54 @@ public class SecurityConfig {
               if (email.endsWith("@ucsb.edu")) {
                 mappedAuthorities.add(new SimpleGrantedAuthority("ROLE_MEMBER"));
               }
+            } else {
+              mappedAuthorities.add(authority);
             }
           });
-      log.info("********** mappedAuthorities={}", mappedAuthorities);
+      log.debug("********** mappedAuthorities={}", mappedAuthorities);
       return mappedAuthorities;
     };
   }
 
   /**
-   * This method checks if the given email belongs to an admin user either from a predefined list or
-   * by querying the user repository.
+   * This method checks if the given email belongs to an admin user, see {@link AdminService}.
    *
    * @param email email address of the user
    * @return whether the user with the given email is an admin
    */
   public boolean getAdmin(String email) {
-    if (adminEmails.contains(email)) {
-      return true;
-    }
-    Optional<User> u = userRepository.findByEmail(email);
-    return u.isPresent() && u.get().getAdmin();
+    return adminService.isAdmin(email);
   }
 
   @Bean
   static RoleHierarchy roleHierarchy() {
-    return RoleHierarchyImpl.withDefaultRolePrefix().role("ADMIN").implies("USER").build();
+    return new MemoizingRoleHierarchy(
+        RoleHierarchyImpl.withDefaultRolePrefix().role("ADMIN").implies("USER").build());
+  }
+}
+
+/**
+ * Remembers the reachable authorities for each authority list, so that the role hierarchy is not
+ * walked again on every {@code hasRole} check. Only a handful of distinct lists exist.
+ */
+final class MemoizingRoleHierarchy implements RoleHierarchy {
+  private static final int MAX_MEMOIZED = 1000;
+
+  private final RoleHierarchy delegate;
+  private final AuthoritiesMemo<Collection<? extends GrantedAuthority>> reachable =
+      new AuthoritiesMemo<>(MAX_MEMOIZED);
+
+  MemoizingRoleHierarchy(RoleHierarchy delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Collection<? extends GrantedAuthority> getReachableGrantedAuthorities(
+      Collection<? extends GrantedAuthority> authorities) {
+    if (authorities == null || authorities.isEmpty()) {
+      return delegate.getReachableGrantedAuthorities(authorities);
+    }
+    return reachable.get(authorities, a -> List.copyOf(delegate.getReachableGrantedAuthorities(a)));
   }
 }
 
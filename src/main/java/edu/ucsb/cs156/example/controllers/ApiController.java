@@ -1,20 +1,58 @@
 package edu.ucsb.cs156.example.controllers;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import edu.ucsb.cs156.example.entities.TableVersion;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidCursorException;
+import edu.ucsb.cs156.example.errors.StaleVersionException;
 import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.models.CursorPage;
+import edu.ucsb.cs156.example.repositories.KeysetRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.JsonStreamService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.WebRequest;
 
 /** This is an abstract class that provides common functionality for all API controllers. */
 @Slf4j
 public abstract class ApiController {
   @Autowired private CurrentUserService currentUserService;
 
+  @Autowired private JsonStreamService jsonStreamService;
+
+  @Autowired private TableVersionService tableVersionService;
+
+  /** Largest page that {@link #keysetPage} will return. */
+  public static final int MAX_KEYSET_PAGE_SIZE = 1000;
+
+  /** The version named by an {@code If-Match} tag that this application did not hand out. */
+  public static final long UNKNOWN_VERSION = -1;
+
+  private static final Pattern VERSION_TAG = Pattern.compile("\"(\\d{1,18})\"");
+
   /**
    * This method returns the current user.
    *
@@ -34,6 +72,210 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  /**
+   * This method returns a page of entities in primary key order. The key of the last entity on the
+   * page is handed out as an opaque cursor, {@code next}, which the client passes back as {@code
+   * after} to get the following page.
+   *
+   * @param <T> the type of the entities
+   * @param <ID> the type of their primary key
+   * @param repository the repository to read from
+   * @param limit page size (clamped to between 1 and {@link #MAX_KEYSET_PAGE_SIZE})
+   * @param after next from the previous page (null for the first page)
+   * @param parseKey turns the text of a key back into a key, e.g. {@code Long::valueOf}
+   * @param key the key of an entity
+   * @return the page
+   * @throws InvalidCursorException if {@code after} is not a cursor handed out by this method
+   */
+  protected <T, ID> CursorPage<T> keysetPage(
+      KeysetRepository<T, ID> repository,
+      int limit,
+      String after,
+      Function<String, ID> parseKey,
+      Function<T, ID> key) {
+    int pageSize = Math.clamp(limit, 1, MAX_KEYSET_PAGE_SIZE);
+    ID afterKey = after == null ? null : decodeCursor(after, parseKey);
+    // Ask for one extra row to find out whether there is a next page
+    PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+    List<T> items =
+        afterKey == null
+            ? repository.findFirstPage(pageRequest)
+            : repository.findPageAfter(afterKey, pageRequest);
+
+    String next = null;
+    if (items.size() > pageSize) {
+      items = items.subList(0, pageSize);
+      next = encodeCursor(key.apply(items.get(pageSize - 1)));
+    }
+    return CursorPage.<T>builder().items(items).next(next).build();
+  }
+
+  /**
+   * This method writes every entity in a repository to the response as a JSON array, in primary key
+   * order. The entities are streamed from the database to the response as they are read, so memory
+   * use does not depend on the size of the table.
+   *
+   * @param <T> the type of the entities
+   * @param repository the repository to read from
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  protected <T> void streamAll(KeysetRepository<T, ?> repository, HttpServletResponse response)
+      throws IOException {
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    jsonStreamService.writeArray(response.getOutputStream(), repository::streamAll);
+  }
+
+  /**
+   * This method returns an entity with its version as the ETag.
+   *
+   * @param <T> the type of the entity
+   * @param entity the entity
+   * @param version its version (null, and so no ETag, if it has never been saved)
+   * @return a 200 response with the entity as its body
+   */
+  protected static <T> ResponseEntity<T> withVersion(T entity, Long version) {
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+    if (version != null) {
+      response.eTag(version.toString());
+    }
+    return response.body(entity);
+  }
+
+  /**
+   * This method returns the version an {@code If-Match} header asks an update to be made against.
+   * Tags are those handed out by {@link #withVersion}; a tag in any other form (including a weak
+   * one) matches no version.
+   *
+   * @param ifMatch the header (may be null)
+   * @return the version, {@link #UNKNOWN_VERSION}, or null if the header is absent or {@code *}
+   *     (i.e. the update is unconditional)
+   */
+  protected static Long ifMatchVersion(String ifMatch) {
+    if (ifMatch == null || ifMatch.strip().equals("*")) {
+      return null;
+    }
+    Matcher tag = VERSION_TAG.matcher(ifMatch.strip());
+    return tag.matches() ? Long.valueOf(tag.group(1)) : UNKNOWN_VERSION;
+  }
+
+  /**
+   * This method makes a write to the table of an entity, and changes the ETag of its listing, in
+   * one transaction.
+   *
+   * @param <T> the type of the result
+   * @param entityType the class of the entity
+   * @param write the write
+   * @return the result of the write
+   */
+  protected <T> T changeTable(Class<?> entityType, Supplier<T> write) {
+    return tableVersionService.write(entityType, write);
+  }
+
+  /**
+   * This method makes a write to the table of an entity, and changes the ETag of its listing, in
+   * one transaction.
+   *
+   * @param entityType the class of the entity
+   * @param write the write
+   */
+  protected void changeTable(Class<?> entityType, Runnable write) {
+    tableVersionService.write(
+        entityType,
+        () -> {
+          write.run();
+          return null;
+        });
+  }
+
+  /**
+   * This method tags a listing of a table with the table's version as the ETag. If the client
+   * already holds that version, the response is set to 304 Not Modified, and the caller should
+   * return without reading any rows. No Last-Modified is sent: it only has one-second precision, so
+   * two writes within a second would look like one.
+   *
+   * @param request the request
+   * @param entityType the class of the entity listed
+   * @return true if the response has been set to 304
+   */
+  protected boolean tableNotModified(WebRequest request, Class<?> entityType) {
+    TableVersion current = tableVersionService.current(entityType);
+    return request.checkNotModified(Long.toString(current.getVersion()));
+  }
+
+  /**
+   * This method answers a conditional GET of one entity from its version alone. Only when the
+   * request has an {@code If-None-Match} header is the version read, and then without the rest of
+   * the row. If one of the tags given is the version, the response is set to 304 Not Modified, and
+   * the caller should return without loading the entity. {@code If-None-Match: *} is not supported;
+   * it matches no version.
+   *
+   * @param <ID> the type of the primary key
+   * @param request the request
+   * @param repository the repository of the entity
+   * @param id the id of the entity
+   * @return true if the response has been set to 304
+   */
+  protected static <ID> boolean rowNotModified(
+      WebRequest request, KeysetRepository<?, ID> repository, ID id) {
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    Long version = repository.findVersionById(id).orElse(null);
+    if (version == null) {
+      return false;
+    }
+    ETag current = new ETag(version.toString(), false);
+    boolean matches = ETag.parse(ifNoneMatch).stream().anyMatch(tag -> tag.compare(current, false));
+    // only hand the check to Spring when it will succeed; otherwise the ETag would be set twice
+    if (!matches) {
+      return false;
+    }
+    return request.checkNotModified(version.toString());
+  }
+
+  /**
+   * This method checks the row count of a version-checked update. When no row was updated, one more
+   * query tells a missing entity apart from a changed one.
+   *
+   * @param <ID> the type of the primary key
+   * @param updated the number of rows updated
+   * @param repository the repository of the entity
+   * @param entityType the class of the entity
+   * @param id the id of the entity
+   * @throws EntityNotFoundException if there is no such entity
+   * @throws StaleVersionException if the entity is no longer at the version given
+   */
+  protected static <ID> void checkVersionedUpdate(
+      int updated, CrudRepository<?, ID> repository, Class<?> entityType, ID id) {
+    if (updated > 0) {
+      return;
+    }
+    if (!repository.existsById(id)) {
+      throw new EntityNotFoundException(entityType, id);
+    }
+    throw new StaleVersionException(entityType, id);
+  }
+
+  /**
+   * This method turns a primary key into the cursor handed out by {@link #keysetPage}.
+   *
+   * @param key the key
+   * @return the cursor
+   */
+  protected static String encodeCursor(Object key) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(key.toString().getBytes(UTF_8));
+  }
+
+  private static <ID> ID decodeCursor(String cursor, Function<String, ID> parseKey) {
+    try {
+      return parseKey.apply(new String(Base64.getUrlDecoder().decode(cursor), UTF_8));
+    } catch (IllegalArgumentException e) {
+      throw new InvalidCursorException(cursor);
+    }
+  }
+
   /**
    * This method handles the EntityNotFoundException.
    *
@@ -47,4 +289,65 @@ public abstract class ApiController {
         "type", e.getClass().getSimpleName(),
         "message", e.getMessage());
   }
+
+  /**
+   * This method handles the InvalidCursorException.
+   *
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({InvalidCursorException.class})
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleInvalidCursorException(Throwable e) {
+    return Map.of(
+        "type", e.getClass().getSimpleName(),
+        "message", e.getMessage());
+  }
+
+  /**
+   * This method handles the StaleVersionException.
+   *
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({StaleVersionException.class})
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  public Object handleStaleVersionException(Throwable e) {
+    return Map.of(
+        "type", e.getClass().getSimpleName(),
+        "message", e.getMessage());
+  }
+
+  /**
+   * This method handles an OptimisticLockingFailureException, i.e. an unconditional update that
+   * lost a race with another one.
+   *
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({OptimisticLockingFailureException.class})
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleOptimisticLockingFailureException(Throwable e) {
+    return Map.of(
+        "type", e.getClass().getSimpleName(),
+        "message", e.getMessage());
+  }
+
+  /**
+   * This method handles a DataIntegrityViolationException, e.g. a POST whose key is already taken.
+   * The database's own message is only logged, since it includes the failed SQL statement.
+   *
+   * @param e the exception
+   * @return a map with the type of the exception and a fixed message
+   */
+  @ExceptionHandler({DataIntegrityViolationException.class})
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleDataIntegrityViolationException(Throwable e) {
+    log.debug("Data integrity violation", e);
+    return Map.of(
+        "type",
+        e.getClass().getSimpleName(),
+        "message",
+        "The request conflicts with a record that already exists");
+  }
 }
@@ -3,24 +3,33 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.Articles;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /** This is a REST controller for Articles */
 @Tag(name = "Articles")
@@ -32,34 +41,72 @@ public class ArticlesController extends ApiController {
   @Autowired ArticlesRepository articlesRepository;
 
   /**
-   * List all archives
+   * This method returns a page of articles, in id order. To get the following page, pass the
+   * returned {@code next} back as {@code after}.
    *
-   * @return an iterable of archives
+   * <p>The response is tagged with the version of the table, and is 304 Not Modified if the client
+   * already holds it.
+   *
+   * @param limit page size (at most {@link #MAX_KEYSET_PAGE_SIZE})
+   * @param after next from the previous page
+   * @param request the request, for its conditional headers
+   * @return a page of articles (null if not modified)
    */
-  @Operation(summary = "List all articles")
+  @Operation(
+      summary = "List articles in id order",
+      description =
+          "Returns up to limit items. To get the next page, pass the returned next as after.")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<Articles> allArticles() {
-    Iterable<Articles> articles = articlesRepository.findAll();
-    return articles;
+  public CursorPage<Articles> allArticles(
+      @Parameter(name = "limit", description = "page size (at most 1000)")
+          @RequestParam(defaultValue = "100")
+          int limit,
+      @Parameter(name = "after", description = "next from the previous page")
+          @RequestParam(required = false)
+          String after,
+      WebRequest request) {
+    if (tableNotModified(request, Articles.class)) {
+      return null;
+    }
+    return keysetPage(articlesRepository, limit, after, Long::valueOf, Articles::getId);
+  }
+
+  /**
+   * This method writes every article, in id order, as a JSON array. The articles are streamed from
+   * the database to the response as they are read, for clients that need every row.
+   *
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  @Operation(summary = "Stream all articles in id order")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void streamAllArticles(HttpServletResponse response) throws IOException {
+    streamAll(articlesRepository, response);
   }
 
   /**
    * Get a single article by id
    *
    * @param id the id of the article
-   * @return an article
+   * @param request the request, for its conditional headers
+   * @return an article (null if not modified)
    */
   @Operation(summary = "Get a single article")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public Articles getById(@Parameter(name = "id") @RequestParam Long id) {
+  public ResponseEntity<Articles> getById(
+      @Parameter(name = "id") @RequestParam Long id, WebRequest request) {
+    if (rowNotModified(request, articlesRepository, id)) {
+      return null;
+    }
     Articles articles =
         articlesRepository
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
 
-    return articles;
+    return withVersion(articles, articles.getVersion());
   }
 
   /**
@@ -102,11 +149,33 @@ public class ArticlesController extends ApiController {
     articles.setUrl(url);
     articles.setDateAdded(dateAdded);
 
-    Articles savedArticles = articlesRepository.save(articles);
+    Articles savedArticles = changeTable(Articles.class, () -> articlesRepository.save(articles));
 
     return savedArticles;
   }
 
+  /**
+   * This method creates many articles at once from a JSON array. The rows are inserted in JDBC
+   * batches in a single transaction. Any ids given are ignored. Accessible only to users with the
+   * role "ROLE_ADMIN".
+   *
+   * @param incoming the new articles
+   * @return the saved articles, with their ids
+   */
+  @Operation(summary = "Create many articles at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public Iterable<Articles> postArticlesBatch(@RequestBody List<Articles> incoming) {
+    incoming.forEach(
+        article -> {
+          article.setId(0);
+          article.setVersion(null);
+        });
+    Iterable<Articles> saved =
+        changeTable(Articles.class, () -> articlesRepository.saveAll(incoming));
+    return saved;
+  }
+
   /**
    * Delete an Article
    *
@@ -122,7 +191,7 @@ public class ArticlesController extends ApiController {
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
 
-    articlesRepository.delete(articles);
+    changeTable(Articles.class, () -> articlesRepository.delete(articles));
     return genericMessage("Articles with id %s deleted".formatted(id));
   }
 
@@ -130,14 +199,36 @@ public class ArticlesController extends ApiController {
    * Update a single article
    *
    * @param id id of the article to update
+   * @param ifMatch ETag from a previous read (optional); the update fails if it is stale
    * @param incoming the new article
-   * @return the updated article object
+   * @return the updated article; after an update with If-Match this is the request body with the
+   *     new id and version, since the row is not read back
    */
   @Operation(summary = "Update a single article")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
-  public Articles updateArticle(
-      @Parameter(name = "id") @RequestParam Long id, @RequestBody @Valid Articles incoming) {
+  public ResponseEntity<Articles> updateArticle(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = "ETag of the article being replaced")
+          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+          String ifMatch,
+      @RequestBody @Valid Articles incoming) {
+
+    Long version = ifMatchVersion(ifMatch);
+    if (version != null) {
+      changeTable(
+          Articles.class,
+          () ->
+              checkVersionedUpdate(
+                  articlesRepository.updateIfVersion(id, version, incoming),
+                  articlesRepository,
+                  Articles.class,
+                  id));
+      // the row is not read back: every column was just set from the request, so echo it
+      incoming.setId(id);
+      incoming.setVersion(version + 1);
+      return withVersion(incoming, incoming.getVersion());
+    }
 
     Articles articles =
         articlesRepository
@@ -150,8 +241,8 @@ public class ArticlesController extends ApiController {
     articles.setEmail(incoming.getEmail());
     articles.setDateAdded(incoming.getDateAdded());
 
-    articlesRepository.save(articles);
+    Articles saved = changeTable(Articles.class, () -> articlesRepository.save(articles));
 
-    return articles;
+    return withVersion(saved, saved.getVersion());
   }
 }
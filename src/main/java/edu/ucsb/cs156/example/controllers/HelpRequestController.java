@@ -3,24 +3,34 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CursorPage;
+import edu.ucsb.cs156.example.models.RowCount;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /** This is a REST controller for HelpRequest */
 @Tag(name = "HelpRequest")
@@ -32,34 +42,72 @@ public class HelpRequestController extends ApiController {
   @Autowired HelpRequestRepository helpRequestRepository;
 
   /**
-   * List all help requests
+   * This method returns a page of help requests, in id order. To get the following page, pass the
+   * returned {@code next} back as {@code after}.
    *
-   * @return an iterable of HelpRequest
+   * <p>The response is tagged with the version of the table, and is 304 Not Modified if the client
+   * already holds it.
+   *
+   * @param limit page size (at most {@link #MAX_KEYSET_PAGE_SIZE})
+   * @param after next from the previous page
+   * @param request the request, for its conditional headers
+   * @return a page of help requests (null if not modified)
    */
-  @Operation(summary = "List all help requests")
+  @Operation(
+      summary = "List help requests in id order",
+      description =
+          "Returns up to limit items. To get the next page, pass the returned next as after.")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<HelpRequest> allHelpRequests() {
-    Iterable<HelpRequest> requests = helpRequestRepository.findAll();
-    return requests;
+  public CursorPage<HelpRequest> allHelpRequests(
+      @Parameter(name = "limit", description = "page size (at most 1000)")
+          @RequestParam(defaultValue = "100")
+          int limit,
+      @Parameter(name = "after", description = "next from the previous page")
+          @RequestParam(required = false)
+          String after,
+      WebRequest request) {
+    if (tableNotModified(request, HelpRequest.class)) {
+      return null;
+    }
+    return keysetPage(helpRequestRepository, limit, after, Long::valueOf, HelpRequest::getId);
+  }
+
+  /**
+   * This method writes every help request, in id order, as a JSON array. The help requests are
+   * streamed from the database to the response as they are read, for clients that need every row.
+   *
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  @Operation(summary = "Stream all help requests in id order")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void streamAllHelpRequests(HttpServletResponse response) throws IOException {
+    streamAll(helpRequestRepository, response);
   }
 
   /**
    * Get a single help request by id
    *
    * @param id the id of the help request
-   * @return a HelpRequest
+   * @param request the request, for its conditional headers
+   * @return a HelpRequest (null if not modified)
    */
   @Operation(summary = "Get a single help request")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public HelpRequest getById(@Parameter(name = "id") @RequestParam Long id) {
+  public ResponseEntity<HelpRequest> getById(
+      @Parameter(name = "id") @RequestParam Long id, WebRequest request) {
+    if (rowNotModified(request, helpRequestRepository, id)) {
+      return null;
+    }
     HelpRequest helpRequest =
         helpRequestRepository
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
 
-    return helpRequest;
+    return withVersion(helpRequest, helpRequest.getVersion());
   }
 
   /**
@@ -101,23 +149,68 @@ public class HelpRequestController extends ApiController {
     helpRequest.setExplanation(explanation);
     helpRequest.setSolved(solved);
 
-    HelpRequest savedHelpRequest = helpRequestRepository.save(helpRequest);
+    HelpRequest savedHelpRequest =
+        changeTable(HelpRequest.class, () -> helpRequestRepository.save(helpRequest));
 
     return savedHelpRequest;
   }
 
+  /**
+   * This method creates many help requests at once from a JSON array. The rows are inserted in JDBC
+   * batches in a single transaction. Any ids given are ignored. Accessible only to users with the
+   * role "ROLE_ADMIN".
+   *
+   * @param incoming the new help requests
+   * @return the saved help requests, with their ids
+   */
+  @Operation(summary = "Create many help requests at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public Iterable<HelpRequest> postHelpRequestsBatch(@RequestBody List<HelpRequest> incoming) {
+    incoming.forEach(
+        helpRequest -> {
+          helpRequest.setId(0);
+          helpRequest.setVersion(null);
+        });
+    Iterable<HelpRequest> saved =
+        changeTable(HelpRequest.class, () -> helpRequestRepository.saveAll(incoming));
+    return saved;
+  }
+
   /**
    * Update a single help request
    *
    * @param id id of the help request to update
+   * @param ifMatch ETag from a previous read (optional); the update fails if it is stale
    * @param incoming the new help request
-   * @return the updated help request object
+   * @return the updated help request; after an update with If-Match this is the request body with
+   *     the new id and version, since the row is not read back
    */
   @Operation(summary = "Update a single help request")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
-  public HelpRequest updateHelpRequest(
-      @Parameter(name = "id") @RequestParam Long id, @RequestBody @Valid HelpRequest incoming) {
+  public ResponseEntity<HelpRequest> updateHelpRequest(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = "ETag of the help request being replaced")
+          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+          String ifMatch,
+      @RequestBody @Valid HelpRequest incoming) {
+
+    Long version = ifMatchVersion(ifMatch);
+    if (version != null) {
+      changeTable(
+          HelpRequest.class,
+          () ->
+              checkVersionedUpdate(
+                  helpRequestRepository.updateIfVersion(id, version, incoming),
+                  helpRequestRepository,
+                  HelpRequest.class,
+                  id));
+      // the row is not read back: every column was just set from the request, so echo it
+      incoming.setId(id);
+      incoming.setVersion(version + 1);
+      return withVersion(incoming, incoming.getVersion());
+    }
 
     HelpRequest helpRequest =
         helpRequestRepository
@@ -131,9 +224,10 @@ public class HelpRequestController extends ApiController {
     helpRequest.setExplanation(incoming.getExplanation());
     helpRequest.setSolved(incoming.getSolved());
 
-    helpRequestRepository.save(helpRequest);
+    HelpRequest saved =
+        changeTable(HelpRequest.class, () -> helpRequestRepository.save(helpRequest));
 
-    return helpRequest;
+    return withVersion(saved, saved.getVersion());
   }
 
   /**
@@ -151,7 +245,26 @@ public class HelpRequestController extends ApiController {
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
 
-    helpRequestRepository.delete(helpRequest);
+    changeTable(HelpRequest.class, () -> helpRequestRepository.delete(helpRequest));
     return genericMessage("HelpRequest with id %s deleted".formatted(id));
   }
+
+  /**
+   * Set the solved flag of every help request from a team, in a single statement
+   *
+   * @param teamId the team whose help requests to update
+   * @param solved the new value of the flag
+   * @return the number of help requests updated
+   */
+  @Operation(summary = "Mark every help request from a team solved (or unsolved)")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/solved")
+  public RowCount updateSolvedByTeam(
+      @Parameter(name = "teamId") @RequestParam String teamId,
+      @Parameter(name = "solved") @RequestParam(defaultValue = "true") boolean solved) {
+    int count =
+        changeTable(
+            HelpRequest.class, () -> helpRequestRepository.updateSolvedByTeamId(teamId, solved));
+    return RowCount.builder().count(count).build();
+  }
 }
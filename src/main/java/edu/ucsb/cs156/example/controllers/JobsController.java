@@ -5,22 +5,35 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobExecutorStatus;
+import edu.ucsb.cs156.example.models.JobLogTail;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobLogStreamService;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionService;
 import edu.ucsb.cs156.example.services.jobs.JobService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Tag(name = "Jobs")
 @RequestMapping("/api/jobs")
@@ -31,22 +44,68 @@ public class JobsController extends ApiController {
 
   @Autowired private JobService jobService;
 
+  @Autowired private JobLogStreamService jobLogStreamService;
+
+  @Autowired private JobRetentionService jobRetentionService;
+
   @Autowired ObjectMapper mapper;
 
-  @Operation(summary = "List all jobs")
+  /** Largest page that {@link #allJobs} will return. */
+  public static final int MAX_PAGE_SIZE = 500;
+
+  @Operation(
+      summary = "List jobs, newest first, without their logs",
+      description =
+          "Returns up to limit jobs. To get the next page, pass the returned next as after.")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("/all")
-  public Iterable<Job> allJobs() {
-    Iterable<Job> jobs = jobsRepository.findAll();
-    return jobs;
+  public KeysetPage<JobSummary> allJobs(
+      @Parameter(name = "limit", description = "page size (at most 500)")
+          @RequestParam(defaultValue = "50")
+          int limit,
+      @Parameter(name = "after", description = "next from the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(name = "status") @RequestParam(required = false) String status,
+      @Parameter(name = "createdById", description = "id of the user who launched the job")
+          @RequestParam(required = false)
+          Long createdById,
+      @Parameter(name = "createdFrom", description = "ISO datetime, e.g. 2025-10-25T13:45:00Z")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          ZonedDateTime createdFrom,
+      @Parameter(name = "createdTo", description = "ISO datetime (exclusive)")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          ZonedDateTime createdTo) {
+
+    int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+    // Ask for one extra row to find out whether there is a next page
+    List<JobSummary> jobs =
+        jobsRepository.findSummaries(
+            after, status, createdById, createdFrom, createdTo, PageRequest.of(0, pageSize + 1));
+
+    Long next = null;
+    if (jobs.size() > pageSize) {
+      jobs = jobs.subList(0, pageSize);
+      next = jobs.get(pageSize - 1).getId();
+    }
+    return KeysetPage.<JobSummary>builder().items(jobs).next(next).build();
   }
 
-  @Operation(summary = "Delete all job records")
+  @Operation(summary = "Get the number of running, queued and completed jobs")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/executor")
+  public JobExecutorStatus getExecutorStatus() {
+    return jobService.getExecutorStatus();
+  }
+
+  @Operation(summary = "Delete all finished job records")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("/all")
   public Map<String, String> deleteAllJobs() {
-    jobsRepository.deleteAll();
-    return Map.of("message", "All jobs deleted");
+    long deleted = jobRetentionService.deleteAllJobs();
+    return Map.of("message", String.format("All finished jobs deleted (%d)", deleted));
   }
 
   @Operation(summary = "Get a specific Job Log by ID if it is in the database")
@@ -62,17 +121,34 @@ public class JobsController extends ApiController {
     return job;
   }
 
-  @Operation(summary = "Delete specific job record")
+  @Operation(summary = "Delete specific job record, if the job has finished")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
   public Map<String, String> deleteAllJobs(@Parameter(name = "id") @RequestParam Long id) {
     if (!jobsRepository.existsById(id)) {
       return Map.of("message", String.format("Job with id %d not found", id));
     }
-    jobsRepository.deleteById(id);
+    if (jobsRepository.deleteFinishedById(id) == 0) {
+      return Map.of(
+          "message", String.format("Job with id %d has not finished; cancel it first", id));
+    }
     return Map.of("message", String.format("Job with id %d deleted", id));
   }
 
+  @Operation(summary = "Cancel a pending or running job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/{id}/cancel")
+  public Map<String, String> cancelJob(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id) {
+    if (!jobsRepository.existsById(id)) {
+      throw new EntityNotFoundException(Job.class, id);
+    }
+    if (!jobService.cancelJob(id)) {
+      return Map.of("message", String.format("Job with id %d has already finished", id));
+    }
+    return Map.of("message", String.format("Job with id %d is being cancelled", id));
+  }
+
   @Operation(summary = "Launch Test Job (click fail if you want to test exception handling)")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PostMapping("/launch/testjob")
@@ -91,4 +167,31 @@ public class JobsController extends ApiController {
 
     return jobService.getJobLogs(id);
   }
+
+  @Operation(summary = "Get the lines of a job log written since a given line")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/logs/{id}/tail")
+  public JobLogTail getJobLogTail(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "fromLine", description = "nextLine from the previous response")
+          @RequestParam(defaultValue = "0")
+          int fromLine) {
+
+    return jobService.getJobLogTail(id, fromLine);
+  }
+
+  @Operation(summary = "Stream a job log as Server-Sent Events while the job runs")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping(value = "/logs/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "fromLine", description = "first line to send")
+          @RequestParam(defaultValue = "0")
+          int fromLine,
+      @Parameter(hidden = true) @RequestHeader(value = "Last-Event-ID", required = false)
+          Integer lastEventId) {
+
+    int start = lastEventId != null ? lastEventId + 1 : fromLine;
+    return jobLogStreamService.subscribe(id, start);
+  }
 }
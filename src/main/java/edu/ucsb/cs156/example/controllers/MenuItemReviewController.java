@@ -2,18 +2,26 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CursorPage;
+import edu.ucsb.cs156.example.models.RowCount;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 /** Controller for MenuItemReview */
 @Tag(name = "Menu Item Reviews")
@@ -24,22 +32,67 @@ public class MenuItemReviewController extends ApiController {
 
   @Autowired private MenuItemReviewRepository menuItemReviewRepository;
 
-  /** List all menu item reviews */
-  @Operation(summary = "List all menu item reviews")
+  /**
+   * This method returns a page of menu item reviews, in id order. To get the following page, pass
+   * the returned {@code next} back as {@code after}.
+   *
+   * <p>The response is tagged with the version of the table, and is 304 Not Modified if the client
+   * already holds it.
+   *
+   * @param limit page size (at most {@link #MAX_KEYSET_PAGE_SIZE})
+   * @param after next from the previous page
+   * @param request the request, for its conditional headers
+   * @return a page of menu item reviews (null if not modified)
+   */
+  @Operation(
+      summary = "List menu item reviews in id order",
+      description =
+          "Returns up to limit items. To get the next page, pass the returned next as after.")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<MenuItemReview> allReviews() {
-    return menuItemReviewRepository.findAll();
+  public CursorPage<MenuItemReview> allReviews(
+      @Parameter(name = "limit", description = "page size (at most 1000)")
+          @RequestParam(defaultValue = "100")
+          int limit,
+      @Parameter(name = "after", description = "next from the previous page")
+          @RequestParam(required = false)
+          String after,
+      WebRequest request) {
+    if (tableNotModified(request, MenuItemReview.class)) {
+      return null;
+    }
+    return keysetPage(menuItemReviewRepository, limit, after, Long::valueOf, MenuItemReview::getId);
+  }
+
+  /**
+   * This method writes every menu item review, in id order, as a JSON array. The menu item reviews
+   * are streamed from the database to the response as they are read, for clients that need every
+   * row.
+   *
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  @Operation(summary = "Stream all menu item reviews in id order")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void streamAllReviews(HttpServletResponse response) throws IOException {
+    streamAll(menuItemReviewRepository, response);
   }
 
   /** Get a single menu item review by id */
   @Operation(summary = "Get a single menu item review by id")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public MenuItemReview getById(@Parameter(name = "id") @RequestParam Long id) {
-    return menuItemReviewRepository
-        .findById(id)
-        .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+  public ResponseEntity<MenuItemReview> getById(
+      @Parameter(name = "id") @RequestParam Long id, WebRequest request) {
+    if (rowNotModified(request, menuItemReviewRepository, id)) {
+      return null;
+    }
+    MenuItemReview menuItemReview =
+        menuItemReviewRepository
+            .findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+    return withVersion(menuItemReview, menuItemReview.getVersion());
   }
 
   /** Create a new menu item review */
@@ -63,15 +116,59 @@ public class MenuItemReviewController extends ApiController {
     mir.setDateReviewed(dateReviewed);
     mir.setComments(comments);
 
-    return menuItemReviewRepository.save(mir);
+    MenuItemReview saved =
+        changeTable(MenuItemReview.class, () -> menuItemReviewRepository.save(mir));
+    return saved;
+  }
+
+  /**
+   * This method creates many menu item reviews at once from a JSON array. The rows are inserted in
+   * JDBC batches in a single transaction. Any ids given are ignored. Accessible only to users with
+   * the role "ROLE_ADMIN".
+   *
+   * @param incoming the new menu item reviews
+   * @return the saved menu item reviews, with their ids
+   */
+  @Operation(summary = "Create many menu item reviews at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public Iterable<MenuItemReview> postReviewsBatch(@RequestBody List<MenuItemReview> incoming) {
+    incoming.forEach(
+        review -> {
+          review.setId(0);
+          review.setVersion(null);
+        });
+    Iterable<MenuItemReview> saved =
+        changeTable(MenuItemReview.class, () -> menuItemReviewRepository.saveAll(incoming));
+    return saved;
   }
 
   /** Update a single menu item review */
   @Operation(summary = "Update a single menu item review")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
-  public MenuItemReview updateMenuItemReview(
-      @Parameter(name = "id") @RequestParam Long id, @RequestBody MenuItemReview incoming) {
+  public ResponseEntity<MenuItemReview> updateMenuItemReview(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = "ETag of the review being replaced")
+          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+          String ifMatch,
+      @RequestBody MenuItemReview incoming) {
+
+    Long version = ifMatchVersion(ifMatch);
+    if (version != null) {
+      changeTable(
+          MenuItemReview.class,
+          () ->
+              checkVersionedUpdate(
+                  menuItemReviewRepository.updateIfVersion(id, version, incoming),
+                  menuItemReviewRepository,
+                  MenuItemReview.class,
+                  id));
+      // the row is not read back: every column was just set from the request, so echo it
+      incoming.setId(id);
+      incoming.setVersion(version + 1);
+      return withVersion(incoming, incoming.getVersion());
+    }
 
     MenuItemReview existing =
         menuItemReviewRepository
@@ -84,8 +181,9 @@ public class MenuItemReviewController extends ApiController {
     existing.setDateReviewed(incoming.getDateReviewed());
     existing.setComments(incoming.getComments());
 
-    menuItemReviewRepository.save(existing);
-    return existing;
+    MenuItemReview saved =
+        changeTable(MenuItemReview.class, () -> menuItemReviewRepository.save(existing));
+    return withVersion(saved, saved.getVersion());
   }
 
   /** Delete a single menu item review by id */
@@ -104,7 +202,31 @@ public class MenuItemReviewController extends ApiController {
     }
 
     // Found -> delete and return 200 with message "record {id} deleted"
-    menuItemReviewRepository.delete(mirOpt.get());
+    changeTable(MenuItemReview.class, () -> menuItemReviewRepository.delete(mirOpt.get()));
     return ResponseEntity.ok(genericMessage(String.format("record %d deleted", id)));
   }
+
+  /**
+   * Delete every menu item review written before a given time, in a single statement
+   *
+   * @param before the cutoff (exclusive)
+   * @return the number of menu item reviews deleted
+   */
+  @Operation(summary = "Delete every menu item review written before a given time")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("/before")
+  public RowCount deleteReviewsBefore(
+      @Parameter(
+              name = "before",
+              description =
+                  "date (in iso format, e.g. YYYY-mm-ddTHH:MM:SS; see https://en.wikipedia.org/wiki/ISO_8601)")
+          @RequestParam("before")
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime before) {
+    int count =
+        changeTable(
+            MenuItemReview.class,
+            () -> menuItemReviewRepository.deleteByDateReviewedBefore(before));
+    return RowCount.builder().count(count).build();
+  }
 }
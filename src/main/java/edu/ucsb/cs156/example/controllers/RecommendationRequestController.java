@@ -3,24 +3,34 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CursorPage;
+import edu.ucsb.cs156.example.models.RowCount;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @Tag(name = "RecommendationRequests")
 @RequestMapping("/api/recommendationrequests")
@@ -30,11 +40,52 @@ public class RecommendationRequestController extends ApiController {
 
   @Autowired private RecommendationRequestRepository recommendationRequestRepository;
 
-  @Operation(summary = "List all recommendation requests")
+  /**
+   * This method returns a page of recommendation requests, in id order. To get the following page,
+   * pass the returned {@code next} back as {@code after}.
+   *
+   * <p>The response is tagged with the version of the table, and is 304 Not Modified if the client
+   * already holds it.
+   *
+   * @param limit page size (at most {@link #MAX_KEYSET_PAGE_SIZE})
+   * @param after next from the previous page
+   * @param request the request, for its conditional headers
+   * @return a page of recommendation requests (null if not modified)
+   */
+  @Operation(
+      summary = "List recommendation requests in id order",
+      description =
+          "Returns up to limit items. To get the next page, pass the returned next as after.")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<RecommendationRequest> allRecommendationRequests() {
-    return recommendationRequestRepository.findAll();
+  public CursorPage<RecommendationRequest> allRecommendationRequests(
+      @Parameter(name = "limit", description = "page size (at most 1000)")
+          @RequestParam(defaultValue = "100")
+          int limit,
+      @Parameter(name = "after", description = "next from the previous page")
+          @RequestParam(required = false)
+          String after,
+      WebRequest request) {
+    if (tableNotModified(request, RecommendationRequest.class)) {
+      return null;
+    }
+    return keysetPage(
+        recommendationRequestRepository, limit, after, Long::valueOf, RecommendationRequest::getId);
+  }
+
+  /**
+   * This method writes every recommendation request, in id order, as a JSON array. The
+   * recommendation requests are streamed from the database to the response as they are read, for
+   * clients that need every row.
+   *
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  @Operation(summary = "Stream all recommendation requests in id order")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void streamAllRecommendationRequests(HttpServletResponse response) throws IOException {
+    streamAll(recommendationRequestRepository, response);
   }
 
   @Operation(summary = "Create a new recommendation request")
@@ -63,26 +114,77 @@ public class RecommendationRequestController extends ApiController {
     rr.setDateNeeded(dateNeeded);
     rr.setDone(done);
 
-    return recommendationRequestRepository.save(rr);
+    RecommendationRequest saved =
+        changeTable(RecommendationRequest.class, () -> recommendationRequestRepository.save(rr));
+    return saved;
+  }
+
+  /**
+   * This method creates many recommendation requests at once from a JSON array. The rows are
+   * inserted in JDBC batches in a single transaction. Any ids given are ignored. Accessible only to
+   * users with the role "ROLE_ADMIN".
+   *
+   * @param ifMatch ETag from a previous read (optional); the update fails if it is stale
+   * @param incoming the new recommendation requests
+   * @return the saved recommendation requests, with their ids
+   */
+  @Operation(summary = "Create many recommendation requests at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public Iterable<RecommendationRequest> postRecommendationRequestsBatch(
+      @RequestBody List<RecommendationRequest> incoming) {
+    incoming.forEach(
+        request -> {
+          request.setId(0);
+          request.setVersion(null);
+        });
+    Iterable<RecommendationRequest> saved =
+        changeTable(
+            RecommendationRequest.class, () -> recommendationRequestRepository.saveAll(incoming));
+    return saved;
   }
 
   @Operation(summary = "Get a single recommendation request by id")
   @Parameter(name = "id", description = "The id of the recommendation request to look up")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public RecommendationRequest getById(@RequestParam Long id) {
-    return recommendationRequestRepository
-        .findById(id)
-        .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
+  public ResponseEntity<RecommendationRequest> getById(@RequestParam Long id, WebRequest request) {
+    if (rowNotModified(request, recommendationRequestRepository, id)) {
+      return null;
+    }
+    RecommendationRequest recommendationRequest =
+        recommendationRequestRepository
+            .findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
+    return withVersion(recommendationRequest, recommendationRequest.getVersion());
   }
 
   @Operation(summary = "Update a single recommendation request")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
-  public RecommendationRequest updateRecommendationRequest(
+  public ResponseEntity<RecommendationRequest> updateRecommendationRequest(
       @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = "ETag of the request being replaced")
+          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+          String ifMatch,
       @RequestBody @Valid RecommendationRequest incoming) {
 
+    Long version = ifMatchVersion(ifMatch);
+    if (version != null) {
+      changeTable(
+          RecommendationRequest.class,
+          () ->
+              checkVersionedUpdate(
+                  recommendationRequestRepository.updateIfVersion(id, version, incoming),
+                  recommendationRequestRepository,
+                  RecommendationRequest.class,
+                  id));
+      // the row is not read back: every column was just set from the request, so echo it
+      incoming.setId(id);
+      incoming.setVersion(version + 1);
+      return withVersion(incoming, incoming.getVersion());
+    }
+
     RecommendationRequest rr =
         recommendationRequestRepository
             .findById(id)
@@ -95,8 +197,9 @@ public class RecommendationRequestController extends ApiController {
     rr.setDateNeeded(incoming.getDateNeeded());
     rr.setDone(incoming.getDone());
 
-    recommendationRequestRepository.save(rr);
-    return rr;
+    RecommendationRequest saved =
+        changeTable(RecommendationRequest.class, () -> recommendationRequestRepository.save(rr));
+    return withVersion(saved, saved.getVersion());
   }
 
   @Operation(summary = "Delete a RecommendationRequest")
@@ -108,7 +211,29 @@ public class RecommendationRequestController extends ApiController {
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
 
-    recommendationRequestRepository.delete(recommendationRequest);
+    changeTable(
+        RecommendationRequest.class,
+        () -> recommendationRequestRepository.delete(recommendationRequest));
     return genericMessage("RecommendationRequest with id %s deleted".formatted(id));
   }
+
+  /**
+   * Set the done flag of many recommendation requests, in a single statement
+   *
+   * @param ids ids of the recommendation requests to update
+   * @param done the new value of the flag
+   * @return the number of recommendation requests updated
+   */
+  @Operation(summary = "Mark many recommendation requests done (or not done)")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/done")
+  public RowCount updateDoneByIds(
+      @RequestBody List<Long> ids,
+      @Parameter(name = "done") @RequestParam(defaultValue = "true") boolean done) {
+    int count =
+        changeTable(
+            RecommendationRequest.class,
+            () -> ids.isEmpty() ? 0 : recommendationRequestRepository.updateDoneByIdIn(ids, done));
+    return RowCount.builder().count(count).build();
+  }
 }
@@ -2,21 +2,31 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Restaurant;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.StaleVersionException;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /** This is a REST controller for Restaurants */
 @Tag(name = "Restaurants")
@@ -27,16 +37,49 @@ public class RestaurantsController extends ApiController {
   @Autowired RestaurantRepository restaurantRepository;
 
   /**
-   * This method returns a list of all restaurants.
+   * This method returns a page of restaurants, in id order. To get the following page, pass the
+   * returned {@code next} back as {@code after}.
    *
-   * @return a list of all restaurants
+   * <p>The response is tagged with the version of the table, and is 304 Not Modified if the client
+   * already holds it.
+   *
+   * @param limit page size (at most {@link #MAX_KEYSET_PAGE_SIZE})
+   * @param after next from the previous page
+   * @param request the request, for its conditional headers
+   * @return a page of restaurants (null if not modified)
    */
-  @Operation(summary = "List all restaurants")
+  @Operation(
+      summary = "List restaurants in id order",
+      description =
+          "Returns up to limit items. To get the next page, pass the returned next as after.")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<Restaurant> allRestaurants() {
-    Iterable<Restaurant> restaurants = restaurantRepository.findAll();
-    return restaurants;
+  public CursorPage<Restaurant> allRestaurants(
+      @Parameter(name = "limit", description = "page size (at most 1000)")
+          @RequestParam(defaultValue = "100")
+          int limit,
+      @Parameter(name = "after", description = "next from the previous page")
+          @RequestParam(required = false)
+          String after,
+      WebRequest request) {
+    if (tableNotModified(request, Restaurant.class)) {
+      return null;
+    }
+    return keysetPage(restaurantRepository, limit, after, Long::valueOf, Restaurant::getId);
+  }
+
+  /**
+   * This method writes every restaurant, in id order, as a JSON array. The restaurants are streamed
+   * from the database to the response as they are read, for clients that need every row.
+   *
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  @Operation(summary = "Stream all restaurants in id order")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void streamAllRestaurants(HttpServletResponse response) throws IOException {
+    streamAll(restaurantRepository, response);
   }
 
   /**
@@ -48,13 +91,13 @@ public class RestaurantsController extends ApiController {
   @Operation(summary = "Get a single restaurant")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public Restaurant getById(@Parameter(name = "id") @RequestParam Long id) {
+  public ResponseEntity<Restaurant> getById(@Parameter(name = "id") @RequestParam Long id) {
     Restaurant restaurant =
         restaurantRepository
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
 
-    return restaurant;
+    return withVersion(restaurant, restaurant.getVersion());
   }
 
   /**
@@ -75,10 +118,33 @@ public class RestaurantsController extends ApiController {
     restaurant.setName(name);
     restaurant.setDescription(description);
 
-    Restaurant savedrestaurant = restaurantRepository.save(restaurant);
+    Restaurant savedrestaurant =
+        changeTable(Restaurant.class, () -> restaurantRepository.save(restaurant));
     return savedrestaurant;
   }
 
+  /**
+   * This method creates many restaurants at once from a JSON array. The rows are inserted in JDBC
+   * batches in a single transaction. Any ids given are ignored. Accessible only to users with the
+   * role "ROLE_ADMIN".
+   *
+   * @param incoming the new restaurants
+   * @return the saved restaurants, with their ids
+   */
+  @Operation(summary = "Create many restaurants at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public Iterable<Restaurant> postRestaurantsBatch(@RequestBody List<Restaurant> incoming) {
+    incoming.forEach(
+        restaurant -> {
+          restaurant.setId(0);
+          restaurant.setVersion(null);
+        });
+    Iterable<Restaurant> saved =
+        changeTable(Restaurant.class, () -> restaurantRepository.saveAll(incoming));
+    return saved;
+  }
+
   /**
    * Deletes a restaurant. Accessible only to users with the role "ROLE_ADMIN".
    *
@@ -94,7 +160,7 @@ public class RestaurantsController extends ApiController {
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
 
-    restaurantRepository.delete(restaurant);
+    changeTable(Restaurant.class, () -> restaurantRepository.delete(restaurant));
     return genericMessage("Restaurant with id %s deleted".formatted(id));
   }
 
@@ -102,25 +168,35 @@ public class RestaurantsController extends ApiController {
    * Update a single restaurant. Accessible only to users with the role "ROLE_ADMIN".
    *
    * @param id id of the restaurant to update
+   * @param ifMatch ETag from a previous read (optional); the update fails if it is stale
    * @param incoming the new restaurant contents
    * @return the updated restaurant object
    */
   @Operation(summary = "Update a single restaurant")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
-  public Restaurant updateRestaurant(
-      @Parameter(name = "id") @RequestParam Long id, @RequestBody @Valid Restaurant incoming) {
+  public ResponseEntity<Restaurant> updateRestaurant(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = "ETag of the restaurant being replaced")
+          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+          String ifMatch,
+      @RequestBody @Valid Restaurant incoming) {
 
     Restaurant restaurant =
         restaurantRepository
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
 
+    Long version = ifMatchVersion(ifMatch);
+    if (version != null && !version.equals(restaurant.getVersion())) {
+      throw new StaleVersionException(Restaurant.class, id);
+    }
+
     restaurant.setName(incoming.getName());
     restaurant.setDescription(incoming.getDescription());
 
-    restaurantRepository.save(restaurant);
+    Restaurant saved = changeTable(Restaurant.class, () -> restaurantRepository.save(restaurant));
 
-    return restaurant;
+    return withVersion(saved, saved.getVersion());
   }
 }
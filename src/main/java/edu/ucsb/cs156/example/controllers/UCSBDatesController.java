@@ -3,24 +3,33 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /** This is a REST controller for UCSBDates */
 @Tag(name = "UCSBDates")
@@ -32,34 +41,72 @@ public class UCSBDatesController extends ApiController {
   @Autowired UCSBDateRepository ucsbDateRepository;
 
   /**
-   * List all UCSB dates
+   * This method returns a page of UCSB dates, in id order. To get the following page, pass the
+   * returned {@code next} back as {@code after}.
    *
-   * @return an iterable of UCSBDate
+   * <p>The response is tagged with the version of the table, and is 304 Not Modified if the client
+   * already holds it.
+   *
+   * @param limit page size (at most {@link #MAX_KEYSET_PAGE_SIZE})
+   * @param after next from the previous page
+   * @param request the request, for its conditional headers
+   * @return a page of UCSB dates (null if not modified)
    */
-  @Operation(summary = "List all ucsb dates")
+  @Operation(
+      summary = "List UCSB dates in id order",
+      description =
+          "Returns up to limit items. To get the next page, pass the returned next as after.")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<UCSBDate> allUCSBDates() {
-    Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-    return dates;
+  public CursorPage<UCSBDate> allUCSBDates(
+      @Parameter(name = "limit", description = "page size (at most 1000)")
+          @RequestParam(defaultValue = "100")
+          int limit,
+      @Parameter(name = "after", description = "next from the previous page")
+          @RequestParam(required = false)
+          String after,
+      WebRequest request) {
+    if (tableNotModified(request, UCSBDate.class)) {
+      return null;
+    }
+    return keysetPage(ucsbDateRepository, limit, after, Long::valueOf, UCSBDate::getId);
+  }
+
+  /**
+   * This method writes every UCSB date, in id order, as a JSON array. The UCSB dates are streamed
+   * from the database to the response as they are read, for clients that need every row.
+   *
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  @Operation(summary = "Stream all UCSB dates in id order")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void streamAllUCSBDates(HttpServletResponse response) throws IOException {
+    streamAll(ucsbDateRepository, response);
   }
 
   /**
    * Get a single date by id
    *
    * @param id the id of the date
-   * @return a UCSBDate
+   * @param request the request, for its conditional headers
+   * @return a UCSBDate (null if not modified)
    */
   @Operation(summary = "Get a single date")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public UCSBDate getById(@Parameter(name = "id") @RequestParam Long id) {
+  public ResponseEntity<UCSBDate> getById(
+      @Parameter(name = "id") @RequestParam Long id, WebRequest request) {
+    if (rowNotModified(request, ucsbDateRepository, id)) {
+      return null;
+    }
     UCSBDate ucsbDate =
         ucsbDateRepository
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
 
-    return ucsbDate;
+    return withVersion(ucsbDate, ucsbDate.getVersion());
   }
 
   /**
@@ -95,11 +142,33 @@ public class UCSBDatesController extends ApiController {
     ucsbDate.setName(name);
     ucsbDate.setLocalDateTime(localDateTime);
 
-    UCSBDate savedUcsbDate = ucsbDateRepository.save(ucsbDate);
+    UCSBDate savedUcsbDate = changeTable(UCSBDate.class, () -> ucsbDateRepository.save(ucsbDate));
 
     return savedUcsbDate;
   }
 
+  /**
+   * This method creates many UCSB dates at once from a JSON array. The rows are inserted in JDBC
+   * batches in a single transaction. Any ids given are ignored. Accessible only to users with the
+   * role "ROLE_ADMIN".
+   *
+   * @param incoming the new UCSB dates
+   * @return the saved UCSB dates, with their ids
+   */
+  @Operation(summary = "Create many UCSB dates at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public Iterable<UCSBDate> postUCSBDatesBatch(@RequestBody List<UCSBDate> incoming) {
+    incoming.forEach(
+        date -> {
+          date.setId(0);
+          date.setVersion(null);
+        });
+    Iterable<UCSBDate> saved =
+        changeTable(UCSBDate.class, () -> ucsbDateRepository.saveAll(incoming));
+    return saved;
+  }
+
   /**
    * Delete a UCSBDate
    *
@@ -115,7 +184,7 @@ public class UCSBDatesController extends ApiController {
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
 
-    ucsbDateRepository.delete(ucsbDate);
+    changeTable(UCSBDate.class, () -> ucsbDateRepository.delete(ucsbDate));
     return genericMessage("UCSBDate with id %s deleted".formatted(id));
   }
 
@@ -123,14 +192,36 @@ public class UCSBDatesController extends ApiController {
    * Update a single date
    *
    * @param id id of the date to update
+   * @param ifMatch ETag from a previous read (optional); the update fails if it is stale
    * @param incoming the new date
-   * @return the updated date object
+   * @return the updated date; after an update with If-Match this is the request body with the new
+   *     id and version, since the row is not read back
    */
   @Operation(summary = "Update a single date")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
-  public UCSBDate updateUCSBDate(
-      @Parameter(name = "id") @RequestParam Long id, @RequestBody @Valid UCSBDate incoming) {
+  public ResponseEntity<UCSBDate> updateUCSBDate(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = "ETag of the date being replaced")
+          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+          String ifMatch,
+      @RequestBody @Valid UCSBDate incoming) {
+
+    Long version = ifMatchVersion(ifMatch);
+    if (version != null) {
+      changeTable(
+          UCSBDate.class,
+          () ->
+              checkVersionedUpdate(
+                  ucsbDateRepository.updateIfVersion(id, version, incoming),
+                  ucsbDateRepository,
+                  UCSBDate.class,
+                  id));
+      // the row is not read back: every column was just set from the request, so echo it
+      incoming.setId(id);
+      incoming.setVersion(version + 1);
+      return withVersion(incoming, incoming.getVersion());
+    }
 
     UCSBDate ucsbDate =
         ucsbDateRepository
@@ -141,8 +232,8 @@ public class UCSBDatesController extends ApiController {
     ucsbDate.setName(incoming.getName());
     ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
 
-    ucsbDateRepository.save(ucsbDate);
+    UCSBDate saved = changeTable(UCSBDate.class, () -> ucsbDateRepository.save(ucsbDate));
 
-    return ucsbDate;
+    return withVersion(saved, saved.getVersion());
   }
 }
@@ -2,22 +2,32 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.StaleVersionException;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /** This is a REST controller for UCSBDiningCommons */
 @Tag(name = "UCSBDiningCommons")
@@ -29,16 +39,51 @@ public class UCSBDiningCommonsController extends ApiController {
   @Autowired UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
   /**
-   * THis method returns a list of all ucsbdiningcommons.
+   * This method returns a page of UCSB dining commons, in code order. To get the following page,
+   * pass the returned {@code next} back as {@code after}.
    *
-   * @return a list of all ucsbdiningcommons
+   * <p>The response is tagged with the version of the table, and is 304 Not Modified if the client
+   * already holds it.
+   *
+   * @param limit page size (at most {@link #MAX_KEYSET_PAGE_SIZE})
+   * @param after next from the previous page
+   * @param request the request, for its conditional headers
+   * @return a page of UCSB dining commons (null if not modified)
    */
-  @Operation(summary = "List all ucsb dining commons")
+  @Operation(
+      summary = "List UCSB dining commons in code order",
+      description =
+          "Returns up to limit items. To get the next page, pass the returned next as after.")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<UCSBDiningCommons> allCommonss() {
-    Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-    return commons;
+  public CursorPage<UCSBDiningCommons> allCommonss(
+      @Parameter(name = "limit", description = "page size (at most 1000)")
+          @RequestParam(defaultValue = "100")
+          int limit,
+      @Parameter(name = "after", description = "next from the previous page")
+          @RequestParam(required = false)
+          String after,
+      WebRequest request) {
+    if (tableNotModified(request, UCSBDiningCommons.class)) {
+      return null;
+    }
+    return keysetPage(
+        ucsbDiningCommonsRepository, limit, after, Function.identity(), UCSBDiningCommons::getCode);
+  }
+
+  /**
+   * This method writes all UCSB dining commons, in code order, as a JSON array. The UCSB dining
+   * commons are streamed from the database to the response as they are read, for clients that need
+   * every row.
+   *
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  @Operation(summary = "Stream all UCSB dining commons in code order")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void streamAllCommons(HttpServletResponse response) throws IOException {
+    streamAll(ucsbDiningCommonsRepository, response);
   }
 
   /**
@@ -50,13 +95,14 @@ public class UCSBDiningCommonsController extends ApiController {
   @Operation(summary = "Get a single commons")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public UCSBDiningCommons getById(@Parameter(name = "code") @RequestParam String code) {
+  public ResponseEntity<UCSBDiningCommons> getById(
+      @Parameter(name = "code") @RequestParam String code) {
     UCSBDiningCommons commons =
         ucsbDiningCommonsRepository
             .findById(code)
             .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
-    return commons;
+    return withVersion(commons, commons.getVersion());
   }
 
   /**
@@ -92,7 +138,8 @@ public class UCSBDiningCommonsController extends ApiController {
     commons.setLatitude(latitude);
     commons.setLongitude(longitude);
 
-    UCSBDiningCommons savedCommons = ucsbDiningCommonsRepository.save(commons);
+    UCSBDiningCommons savedCommons =
+        changeTable(UCSBDiningCommons.class, () -> ucsbDiningCommonsRepository.save(commons));
 
     return savedCommons;
   }
@@ -112,7 +159,7 @@ public class UCSBDiningCommonsController extends ApiController {
             .findById(code)
             .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
-    ucsbDiningCommonsRepository.delete(commons);
+    changeTable(UCSBDiningCommons.class, () -> ucsbDiningCommonsRepository.delete(commons));
     return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
   }
 
@@ -120,14 +167,18 @@ public class UCSBDiningCommonsController extends ApiController {
    * Update a single diningcommons. Accessible only to users with the role "ROLE_ADMIN".
    *
    * @param code code of the diningcommons
+   * @param ifMatch ETag from a previous read (optional); the update fails if it is stale
    * @param incoming the new commons contents
    * @return the updated commons object
    */
   @Operation(summary = "Update a single commons")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
-  public UCSBDiningCommons updateCommons(
+  public ResponseEntity<UCSBDiningCommons> updateCommons(
       @Parameter(name = "code") @RequestParam String code,
+      @Parameter(name = "If-Match", description = "ETag of the dining commons being replaced")
+          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+          String ifMatch,
       @RequestBody @Valid UCSBDiningCommons incoming) {
 
     UCSBDiningCommons commons =
@@ -135,6 +186,11 @@ public class UCSBDiningCommonsController extends ApiController {
             .findById(code)
             .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
+    Long version = ifMatchVersion(ifMatch);
+    if (version != null && !version.equals(commons.getVersion())) {
+      throw new StaleVersionException(UCSBDiningCommons.class, code);
+    }
+
     commons.setName(incoming.getName());
     commons.setHasSackMeal(incoming.getHasSackMeal());
     commons.setHasTakeOutMeal(incoming.getHasTakeOutMeal());
@@ -142,8 +198,9 @@ public class UCSBDiningCommonsController extends ApiController {
     commons.setLatitude(incoming.getLatitude());
     commons.setLongitude(incoming.getLongitude());
 
-    ucsbDiningCommonsRepository.save(commons);
+    UCSBDiningCommons saved =
+        changeTable(UCSBDiningCommons.class, () -> ucsbDiningCommonsRepository.save(commons));
 
-    return commons;
+    return withVersion(saved, saved.getVersion());
   }
 }
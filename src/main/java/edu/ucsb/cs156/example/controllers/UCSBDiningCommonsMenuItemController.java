@@ -3,22 +3,31 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /** This is a REST controller for UCSBDiningCommonsMenuItems */
 @Tag(name = "UCSBDiningCommonsMenuItem")
@@ -30,17 +39,55 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
   @Autowired UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
 
   /**
-   * List all UCSB Dining Commons Menu Items
+   * This method returns a page of UCSB Dining Commons Menu Items, in id order. To get the following
+   * page, pass the returned {@code next} back as {@code after}.
    *
-   * @return an iterable of UCSBDiningCommonsMenuItem
+   * <p>The response is tagged with the version of the table, and is 304 Not Modified if the client
+   * already holds it.
+   *
+   * @param limit page size (at most {@link #MAX_KEYSET_PAGE_SIZE})
+   * @param after next from the previous page
+   * @param request the request, for its conditional headers
+   * @return a page of UCSB Dining Commons Menu Items (null if not modified)
    */
-  @Operation(summary = "List all UCSB Dining Commons Menu Items")
+  @Operation(
+      summary = "List UCSB Dining Commons Menu Items in id order",
+      description =
+          "Returns up to limit items. To get the next page, pass the returned next as after.")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<UCSBDiningCommonsMenuItem> allUCSBDiningCommonsMenuItems() {
-    Iterable<UCSBDiningCommonsMenuItem> ucsbDiningCommonsMenuItems =
-        ucsbDiningCommonsMenuItemRepository.findAll();
-    return ucsbDiningCommonsMenuItems;
+  public CursorPage<UCSBDiningCommonsMenuItem> allUCSBDiningCommonsMenuItems(
+      @Parameter(name = "limit", description = "page size (at most 1000)")
+          @RequestParam(defaultValue = "100")
+          int limit,
+      @Parameter(name = "after", description = "next from the previous page")
+          @RequestParam(required = false)
+          String after,
+      WebRequest request) {
+    if (tableNotModified(request, UCSBDiningCommonsMenuItem.class)) {
+      return null;
+    }
+    return keysetPage(
+        ucsbDiningCommonsMenuItemRepository,
+        limit,
+        after,
+        Long::valueOf,
+        UCSBDiningCommonsMenuItem::getId);
+  }
+
+  /**
+   * This method writes every UCSB Dining Commons Menu Item, in id order, as a JSON array. The UCSB
+   * Dining Commons Menu Items are streamed from the database to the response as they are read, for
+   * clients that need every row.
+   *
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  @Operation(summary = "Stream all UCSB Dining Commons Menu Items in id order")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void streamAllUCSBDiningCommonsMenuItems(HttpServletResponse response) throws IOException {
+    streamAll(ucsbDiningCommonsMenuItemRepository, response);
   }
 
   /**
@@ -69,43 +116,96 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
     ucsbDiningCommonsMenuItem.setStation(station);
 
     UCSBDiningCommonsMenuItem savedUcsbDiningCommonsMenuItem =
-        ucsbDiningCommonsMenuItemRepository.save(ucsbDiningCommonsMenuItem);
+        changeTable(
+            UCSBDiningCommonsMenuItem.class,
+            () -> ucsbDiningCommonsMenuItemRepository.save(ucsbDiningCommonsMenuItem));
 
     return savedUcsbDiningCommonsMenuItem;
   }
 
+  /**
+   * This method creates many UCSB Dining Commons Menu Items at once from a JSON array. The rows are
+   * inserted in JDBC batches in a single transaction. Any ids given are ignored. Accessible only to
+   * users with the role "ROLE_ADMIN".
+   *
+   * @param incoming the new UCSB Dining Commons Menu Items
+   * @return the saved UCSB Dining Commons Menu Items, with their ids
+   */
+  @Operation(summary = "Create many UCSB Dining Commons Menu Items at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public Iterable<UCSBDiningCommonsMenuItem> postUCSBDiningCommonsMenuItemsBatch(
+      @RequestBody List<UCSBDiningCommonsMenuItem> incoming) {
+    incoming.forEach(
+        menuItem -> {
+          menuItem.setId(0);
+          menuItem.setVersion(null);
+        });
+    Iterable<UCSBDiningCommonsMenuItem> saved =
+        changeTable(
+            UCSBDiningCommonsMenuItem.class,
+            () -> ucsbDiningCommonsMenuItemRepository.saveAll(incoming));
+    return saved;
+  }
+
   /**
    * Get a single menu item by id
    *
    * @param id the id of the menu item
-   * @return a UCSBDiningCommonsMenuItem
+   * @param request the request, for its conditional headers
+   * @return a UCSBDiningCommonsMenuItem (null if not modified)
    */
   @Operation(summary = "Get a single menu item")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public UCSBDiningCommonsMenuItem getById(@Parameter(name = "id") @RequestParam Long id) {
+  public ResponseEntity<UCSBDiningCommonsMenuItem> getById(
+      @Parameter(name = "id") @RequestParam Long id, WebRequest request) {
+    if (rowNotModified(request, ucsbDiningCommonsMenuItemRepository, id)) {
+      return null;
+    }
     UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem =
         ucsbDiningCommonsMenuItemRepository
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
 
-    return ucsbDiningCommonsMenuItem;
+    return withVersion(ucsbDiningCommonsMenuItem, ucsbDiningCommonsMenuItem.getVersion());
   }
 
   /**
    * Update a single UCSB Dining Commons Menu Item
    *
    * @param id id of the item to update
+   * @param ifMatch ETag from a previous read (optional); the update fails if it is stale
    * @param incoming the new item data
-   * @return the updated item
+   * @return the updated item; after an update with If-Match this is the request body with the new
+   *     id and version, since the row is not read back
    */
   @Operation(summary = "Update a single UCSB Dining Commons Menu Item")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
-  public UCSBDiningCommonsMenuItem updateUCSBDiningCommonsMenuItem(
+  public ResponseEntity<UCSBDiningCommonsMenuItem> updateUCSBDiningCommonsMenuItem(
       @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "If-Match", description = "ETag of the menu item being replaced")
+          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+          String ifMatch,
       @RequestBody @Valid UCSBDiningCommonsMenuItem incoming) {
 
+    Long version = ifMatchVersion(ifMatch);
+    if (version != null) {
+      changeTable(
+          UCSBDiningCommonsMenuItem.class,
+          () ->
+              checkVersionedUpdate(
+                  ucsbDiningCommonsMenuItemRepository.updateIfVersion(id, version, incoming),
+                  ucsbDiningCommonsMenuItemRepository,
+                  UCSBDiningCommonsMenuItem.class,
+                  id));
+      // the row is not read back: every column was just set from the request, so echo it
+      incoming.setId(id);
+      incoming.setVersion(version + 1);
+      return withVersion(incoming, incoming.getVersion());
+    }
+
     UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem =
         ucsbDiningCommonsMenuItemRepository
             .findById(id)
@@ -115,9 +215,12 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
     ucsbDiningCommonsMenuItem.setName(incoming.getName());
     ucsbDiningCommonsMenuItem.setStation(incoming.getStation());
 
-    ucsbDiningCommonsMenuItemRepository.save(ucsbDiningCommonsMenuItem);
+    UCSBDiningCommonsMenuItem saved =
+        changeTable(
+            UCSBDiningCommonsMenuItem.class,
+            () -> ucsbDiningCommonsMenuItemRepository.save(ucsbDiningCommonsMenuItem));
 
-    return ucsbDiningCommonsMenuItem;
+    return withVersion(saved, saved.getVersion());
   }
 
   /**
@@ -135,7 +238,9 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
 
-    ucsbDiningCommonsMenuItemRepository.delete(ucsbDiningCommonsMenuItem);
+    changeTable(
+        UCSBDiningCommonsMenuItem.class,
+        () -> ucsbDiningCommonsMenuItemRepository.delete(ucsbDiningCommonsMenuItem));
     return genericMessage("UCSBDiningCommonsMenuItem with id %s deleted".formatted(id));
   }
 }
@@ -2,22 +2,32 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.StaleVersionException;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /** This is a REST controller for UCSBOrganization */
 @Tag(name = "UCSBOrganization")
@@ -29,16 +39,55 @@ public class UCSBOrganizationController extends ApiController {
   @Autowired UCSBOrganizationRepository ucsbOrganizationRepository;
 
   /**
-   * THis method returns a list of all ucsborganization.
+   * This method returns a page of UCSB organizations, in orgCode order. To get the following page,
+   * pass the returned {@code next} back as {@code after}.
    *
-   * @return a list of all ucsborganization
+   * <p>The response is tagged with the version of the table, and is 304 Not Modified if the client
+   * already holds it.
+   *
+   * @param limit page size (at most {@link #MAX_KEYSET_PAGE_SIZE})
+   * @param after next from the previous page
+   * @param request the request, for its conditional headers
+   * @return a page of UCSB organizations (null if not modified)
    */
-  @Operation(summary = "List all UCSB organizations")
+  @Operation(
+      summary = "List UCSB organizations in orgCode order",
+      description =
+          "Returns up to limit items. To get the next page, pass the returned next as after.")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<UCSBOrganization> allOrganizations() {
-    Iterable<UCSBOrganization> orgs = ucsbOrganizationRepository.findAll();
-    return orgs;
+  public CursorPage<UCSBOrganization> allOrganizations(
+      @Parameter(name = "limit", description = "page size (at most 1000)")
+          @RequestParam(defaultValue = "100")
+          int limit,
+      @Parameter(name = "after", description = "next from the previous page")
+          @RequestParam(required = false)
+          String after,
+      WebRequest request) {
+    if (tableNotModified(request, UCSBOrganization.class)) {
+      return null;
+    }
+    return keysetPage(
+        ucsbOrganizationRepository,
+        limit,
+        after,
+        Function.identity(),
+        UCSBOrganization::getOrgCode);
+  }
+
+  /**
+   * This method writes every UCSB organization, in orgCode order, as a JSON array. The UCSB
+   * organizations are streamed from the database to the response as they are read, for clients that
+   * need every row.
+   *
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  @Operation(summary = "Stream all UCSB organizations in orgCode order")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void streamAllOrganizations(HttpServletResponse response) throws IOException {
+    streamAll(ucsbOrganizationRepository, response);
   }
 
   /**
@@ -64,7 +113,8 @@ public class UCSBOrganizationController extends ApiController {
     org.setOrgTranslation(orgTranslation);
     org.setInactive(inactive);
 
-    UCSBOrganization savedOrg = ucsbOrganizationRepository.save(org);
+    UCSBOrganization savedOrg =
+        changeTable(UCSBOrganization.class, () -> ucsbOrganizationRepository.save(org));
     return savedOrg;
   }
 
@@ -77,27 +127,32 @@ public class UCSBOrganizationController extends ApiController {
   @Operation(summary = "Get a single UCSBOrganization by orgCode")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public UCSBOrganization getById(@Parameter(name = "orgCode") @RequestParam String orgCode) {
+  public ResponseEntity<UCSBOrganization> getById(
+      @Parameter(name = "orgCode") @RequestParam String orgCode) {
     UCSBOrganization org =
         ucsbOrganizationRepository
             .findById(orgCode)
             .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
 
-    return org;
+    return withVersion(org, org.getVersion());
   }
 
   /**
    * Update a single ucsborganization. Accessible only to users with the role "ROLE_ADMIN".
    *
    * @param orgCode code of the ucsborganization
+   * @param ifMatch ETag from a previous read (optional); the update fails if it is stale
    * @param incoming the new commons contents
    * @return the updated commons object
    */
   @Operation(summary = "Update a single UCSBOrganization")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PutMapping("")
-  public UCSBOrganization updateOrganization(
+  public ResponseEntity<UCSBOrganization> updateOrganization(
       @Parameter(name = "orgCode") @RequestParam String orgCode,
+      @Parameter(name = "If-Match", description = "ETag of the organization being replaced")
+          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+          String ifMatch,
       @RequestBody @Valid UCSBOrganization incoming) {
 
     UCSBOrganization org =
@@ -105,12 +160,18 @@ public class UCSBOrganizationController extends ApiController {
             .findById(orgCode)
             .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
 
+    Long version = ifMatchVersion(ifMatch);
+    if (version != null && !version.equals(org.getVersion())) {
+      throw new StaleVersionException(UCSBOrganization.class, orgCode);
+    }
+
     org.setOrgTranslationShort(incoming.getOrgTranslationShort());
     org.setOrgTranslation(incoming.getOrgTranslation());
     org.setInactive(incoming.getInactive());
 
-    ucsbOrganizationRepository.save(org);
-    return org;
+    UCSBOrganization saved =
+        changeTable(UCSBOrganization.class, () -> ucsbOrganizationRepository.save(org));
+    return withVersion(saved, saved.getVersion());
   }
 
   /**
@@ -128,7 +189,7 @@ public class UCSBOrganizationController extends ApiController {
             .findById(orgCode)
             .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
 
-    ucsbOrganizationRepository.delete(org);
+    changeTable(UCSBOrganization.class, () -> ucsbOrganizationRepository.delete(org));
     return genericMessage("UCSBOrganization with id %s deleted".formatted(orgCode));
   }
 }
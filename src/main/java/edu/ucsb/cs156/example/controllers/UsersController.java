@@ -1,16 +1,20 @@
 package edu.ucsb.cs156.example.controllers;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.JsonStreamService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.ResponseEntity;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
@@ -24,20 +28,51 @@ import org.springframework.web.bind.annotation.RestController;
 public class UsersController extends ApiController {
   @Autowired UserRepository userRepository;
 
-  @Autowired ObjectMapper mapper;
+  @Autowired JsonStreamService jsonStreamService;
+
+  /** Largest page that {@link #users} will return. */
+  public static final int MAX_PAGE_SIZE = 10000;
 
   /**
-   * This method returns a list of all users. Accessible only to users with the role "ROLE_ADMIN".
+   * This method writes a page of users, in id order, as {@code {"items": [...], "next": ...}}.
+   * The users are streamed from the database to the response as they are read. Accessible only to
+   * users with the role "ROLE_ADMIN".
    *
-   * @return a list of all users
-   * @throws JsonProcessingException if there is an error processing the JSON
+   * @param limit page size (at most {@link #MAX_PAGE_SIZE})
+   * @param after next from the previous page
+   * @param admin only list users with this admin flag
+   * @param hostedDomain only list users with this hosted domain
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
    */
-  @Operation(summary = "Get a list of all users")
+  @Operation(
+      summary = "List users in id order",
+      description =
+          "Returns up to limit users. To get the next page, pass the returned next as after.")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
-  @GetMapping("")
-  public ResponseEntity<String> users() throws JsonProcessingException {
-    Iterable<User> users = userRepository.findAll();
-    String body = mapper.writeValueAsString(users);
-    return ResponseEntity.ok().body(body);
+  @GetMapping(value = "", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void users(
+      @Parameter(name = "limit", description = "page size (at most 10000)")
+          @RequestParam(defaultValue = "1000")
+          int limit,
+      @Parameter(name = "after", description = "next from the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(name = "admin") @RequestParam(required = false) Boolean admin,
+      @Parameter(name = "hostedDomain", description = "e.g. ucsb.edu")
+          @RequestParam(required = false)
+          String hostedDomain,
+      HttpServletResponse response)
+      throws IOException {
+    int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    // Ask for one extra row to find out whether there is a next page
+    jsonStreamService.writeKeysetPage(
+        response.getOutputStream(),
+        pageSize,
+        () ->
+            userRepository.streamPage(
+                after, admin, hostedDomain, PageRequest.of(0, pageSize + 1)),
+        User::getId);
   }
 }
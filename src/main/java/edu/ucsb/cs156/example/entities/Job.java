@@ -41,6 +41,22 @@ public class Job {
 
   private String status;
 
+  // When the job began running on a thread, and when it reached its final status
+  private ZonedDateTime startedAt;
+  private ZonedDateTime finishedAt;
+
+  // Set for jobs that go through the database-backed queue: the registered job type and its
+  // parameters as JSON, so that any node can rebuild and run the job.
+  private String jobType;
+
+  @Column(columnDefinition = "TEXT")
+  private String params;
+
+  // The node currently running a queued job, and when its claim lapses unless renewed
+  private String leaseOwner;
+  private ZonedDateTime leaseExpiresAt;
+  private int attempts;
+
   // 1048576 is 2^20, which is the max size of a mediumtext in MySQL
   @Column(
       columnDefinition = "TEXT",
@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import java.time.ZonedDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that represents a single line of output from a Job. Lines are appended as
+ * the job runs, so writing a line never rewrites the lines that came before it.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "job_log_lines")
+public class JobLogLine {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  private long jobId;
+
+  /** Position of this line within the job's log, starting at 0 */
+  private int seq;
+
+  private ZonedDateTime createdAt;
+
+  @Column(columnDefinition = "TEXT")
+  private String message;
+}
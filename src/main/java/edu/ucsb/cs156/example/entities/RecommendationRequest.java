@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import java.time.LocalDateTime;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -18,7 +20,11 @@ import lombok.NoArgsConstructor;
 public class RecommendationRequest {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recommendationrequests_seq")
+  @SequenceGenerator(
+      name = "recommendationrequests_seq",
+      sequenceName = "RECOMMENDATIONREQUESTS_SEQ",
+      allocationSize = 50)
   private long id;
 
   private String requesterEmail;
@@ -27,4 +33,6 @@ public class RecommendationRequest {
   private LocalDateTime dateRequested;
   private LocalDateTime dateNeeded;
   private boolean done;
+
+  @Version private Long version;
 }
@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that counts the writes made to one of the other tables. Its version goes up
+ * by one with every write made through the API, so it serves as an ETag for the whole table.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "tableversions")
+public class TableVersion {
+  /** The entity name of the table, e.g. "articles". */
+  @Id private String tableName;
+
+  private long version;
+  private ZonedDateTime updatedAt;
+}
@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that an
+ * update was made against a version of an entity (the {@code If-Match} header) that is no longer
+ * current.
+ */
+public class StaleVersionException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param entityType The class of the entity, e.g. Restaurant.class
+   * @param id the id of the entity
+   */
+  public StaleVersionException(Class<?> entityType, Object id) {
+    super(
+        "%s with id %s has been changed since it was read"
+            .formatted(entityType.getSimpleName(), id.toString()));
+  }
+}
@@ -0,0 +1,66 @@
+package edu.ucsb.cs156.example.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Marker;
+
+/**
+ * A logback turbo filter that keeps only a fraction of the log events from chosen loggers, e.g. one
+ * in a hundred from CurrentUserServiceImpl. Each sampled logger is configured with a {@code
+ * <sample>logger.name=rate</sample>} element in logback-spring.xml.
+ *
+ * <p>Turbo filters run before the logging event is created, so dropped events cost neither message
+ * formatting nor the arguments' toString. WARN and ERROR events are never dropped.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+  private final Map<String, Sampler> samplers = new ConcurrentHashMap<>();
+
+  /**
+   * Adds a sampled logger.
+   *
+   * @param spec the logger's name and the fraction of its events to keep, as {@code name=rate}
+   */
+  public void addSample(String spec) {
+    int separator = spec.lastIndexOf('=');
+    if (separator < 0) {
+      throw new IllegalArgumentException("Expected logger.name=rate, got " + spec);
+    }
+    String loggerName = spec.substring(0, separator).trim();
+    double rate = Double.parseDouble(spec.substring(separator + 1).trim());
+    samplers.put(loggerName, new Sampler(rate));
+  }
+
+  @Override
+  public FilterReply decide(
+      Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+    // format is null for isXxxEnabled() checks, which should not use up a sample
+    if (format == null || level.isGreaterOrEqual(Level.WARN)) {
+      return FilterReply.NEUTRAL;
+    }
+    Sampler sampler = samplers.get(logger.getName());
+    if (sampler == null || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+      return FilterReply.NEUTRAL;
+    }
+    return sampler.keep() ? FilterReply.NEUTRAL : FilterReply.DENY;
+  }
+
+  /** Keeps one event in every {@code interval}, or none if the interval is 0. */
+  private static class Sampler {
+    private final long interval;
+    private final AtomicLong count = new AtomicLong();
+
+    Sampler(double rate) {
+      this.interval = rate <= 0 ? 0 : Math.max(1, Math.round(1 / rate));
+    }
+
+    boolean keep() {
+      return interval > 0 && count.getAndIncrement() % interval == 0;
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that represents a snapshot of the executor that runs jobs. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobExecutorStatus {
+  private int maxConcurrency;
+  private int queueCapacity;
+  private int active; // jobs running right now
+  private int queued; // jobs waiting for a free thread
+  private long completed; // jobs finished since startup
+}
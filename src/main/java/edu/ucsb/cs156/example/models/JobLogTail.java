@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents the part of a job's log written since a given line.
+ *
+ * <p>Clients poll with {@code fromLine} set to the {@code nextLine} of the previous response, and
+ * can stop once {@code status} is no longer "pending", "running" or "cancelling".
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogTail {
+  private List<String> lines;
+  private int nextLine; // pass as fromLine on the next request
+  private String status;
+}
@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents a row of the job list. It leaves out the job's log and
+ * parameters, which can be large, so that listing jobs does not read them.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobSummary {
+  private long id;
+  private Long createdById;
+  private ZonedDateTime createdAt;
+  private ZonedDateTime updatedAt;
+  private ZonedDateTime startedAt;
+  private ZonedDateTime finishedAt;
+  private String status;
+  private String jobType;
+  private int attempts;
+}
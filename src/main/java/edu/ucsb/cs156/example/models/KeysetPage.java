@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents one page of a list that is paged by key rather than by
+ * offset.
+ *
+ * <p>To get the following page, pass {@code next} back as the {@code after} parameter. It is null
+ * on the last page.
+ *
+ * @param <T> the type of the items
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class KeysetPage<T> {
+  private List<T> items;
+  private Long next;
+}
@@ -1,9 +1,31 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Articles;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /** The ArticlesRespository is a repository for Articles entities. */
 @Repository
-public interface ArticlesRepository extends CrudRepository<Articles, Long> {}
+public interface ArticlesRepository extends KeysetRepository<Articles, Long> {
+  /**
+   * This method overwrites an article in a single statement, without reading it first, provided it
+   * is still at the given version. The version is incremented.
+   *
+   * @param id id of the article
+   * @param version the version the caller last read
+   * @param incoming the new contents
+   * @return 1 if the article was updated, 0 if there is no such article or it has changed
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE articles a SET a.title = :#{#incoming.title}, a.url = :#{#incoming.url},"
+          + " a.explanation = :#{#incoming.explanation}, a.email = :#{#incoming.email},"
+          + " a.dateAdded = :#{#incoming.dateAdded}, a.version = a.version + 1"
+          + " WHERE a.id = :id AND a.version = :version")
+  int updateIfVersion(
+      @Param("id") long id, @Param("version") long version, @Param("incoming") Articles incoming);
+}
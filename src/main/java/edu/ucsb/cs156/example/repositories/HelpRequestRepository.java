@@ -1,9 +1,51 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /** The UCSBDateRepository is a repository for UCSBDate entities. */
 @Repository
-public interface HelpRequestRepository extends CrudRepository<HelpRequest, Long> {}
+public interface HelpRequestRepository extends KeysetRepository<HelpRequest, Long> {
+  /**
+   * This method sets the solved flag of every help request from a team, in a single statement.
+   * Their versions are incremented, so a stale If-Match update of any of them is refused.
+   *
+   * @param teamId the team
+   * @param solved the new value of the flag
+   * @return the number of help requests updated
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE helprequests h SET h.solved = :solved, h.version = h.version + 1"
+          + " WHERE h.teamId = :teamId")
+  int updateSolvedByTeamId(@Param("teamId") String teamId, @Param("solved") boolean solved);
+
+  /**
+   * This method overwrites a help request in a single statement, without reading it first, provided
+   * it is still at the given version. The version is incremented.
+   *
+   * @param id id of the help request
+   * @param version the version the caller last read
+   * @param incoming the new contents
+   * @return 1 if the help request was updated, 0 if there is no such help request or it has changed
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE helprequests h SET h.requesterEmail = :#{#incoming.requesterEmail},"
+          + " h.teamId = :#{#incoming.teamId},"
+          + " h.tableOrBreakoutRoom = :#{#incoming.tableOrBreakoutRoom},"
+          + " h.requestTime = :#{#incoming.requestTime},"
+          + " h.explanation = :#{#incoming.explanation}, h.solved = :#{#incoming.solved},"
+          + " h.version = h.version + 1"
+          + " WHERE h.id = :id AND h.version = :version")
+  int updateIfVersion(
+      @Param("id") long id,
+      @Param("version") long version,
+      @Param("incoming") HelpRequest incoming);
+}
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+/** The JobLogLinesRepository is a repository for JobLogLine entities. */
+@Repository
+public interface JobLogLinesRepository extends CrudRepository<JobLogLine, Long> {
+  /**
+   * This method returns all of the log lines for a job, in the order they were written.
+   *
+   * @param jobId id of the job
+   * @return the log lines for the job, ordered by seq
+   */
+  List<JobLogLine> findByJobIdOrderBySeqAsc(long jobId);
+
+  /**
+   * This method returns the log lines for a job starting at a given line, in the order they were
+   * written.
+   *
+   * @param jobId id of the job
+   * @param seq first line to return
+   * @return the log lines for the job with seq at least the given value, ordered by seq
+   */
+  List<JobLogLine> findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(long jobId, int seq);
+
+  /**
+   * This method returns the last log line written for a job, e.g. so that a job that is re-run
+   * after its node died can continue numbering its lines.
+   *
+   * @param jobId id of the job
+   * @return Optional of the line with the highest seq (empty if the job has no lines)
+   */
+  Optional<JobLogLine> findFirstByJobIdOrderBySeqDesc(long jobId);
+}
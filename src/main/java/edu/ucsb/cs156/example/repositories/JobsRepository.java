@@ -1,8 +1,281 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobSummary;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
-public interface JobsRepository extends CrudRepository<Job, Long> {}
+public interface JobsRepository extends CrudRepository<Job, Long> {
+  /**
+   * This method returns only the status of a job, without loading the rest of the row.
+   *
+   * @param id id of the job
+   * @return Optional of the status (empty if there is no such job)
+   */
+  @Query("SELECT j.status FROM jobs j WHERE j.id = :id")
+  Optional<String> findStatusById(@Param("id") long id);
+
+  /**
+   * This method returns a page of jobs, newest first, without their logs. Pages are found by key:
+   * pass the id of the last job on the previous page as {@code after}. Every filter is optional;
+   * pass null to leave it out.
+   *
+   * @param after only return jobs with an id lower than this (null for the first page)
+   * @param status only return jobs with this status
+   * @param createdById only return jobs launched by this user
+   * @param createdFrom only return jobs created at or after this time
+   * @param createdTo only return jobs created before this time
+   * @param pageable the page size (the sort is always by descending id)
+   * @return the jobs on the page
+   */
+  @Query(
+      "SELECT new edu.ucsb.cs156.example.models.JobSummary("
+          + "j.id, j.createdBy.id, j.createdAt, j.updatedAt, j.startedAt, j.finishedAt,"
+          + " j.status, j.jobType, j.attempts)"
+          + " FROM jobs j"
+          + " WHERE (:after IS NULL OR j.id < :after)"
+          + " AND (:status IS NULL OR j.status = :status)"
+          + " AND (:createdById IS NULL OR j.createdBy.id = :createdById)"
+          + " AND (:createdFrom IS NULL OR j.createdAt >= :createdFrom)"
+          + " AND (:createdTo IS NULL OR j.createdAt < :createdTo)"
+          + " ORDER BY j.id DESC")
+  List<JobSummary> findSummaries(
+      @Param("after") Long after,
+      @Param("status") String status,
+      @Param("createdById") Long createdById,
+      @Param("createdFrom") ZonedDateTime createdFrom,
+      @Param("createdTo") ZonedDateTime createdTo,
+      Pageable pageable);
+
+  /**
+   * This method locks and returns the oldest pending job. Rows already locked by another node are
+   * skipped rather than waited on, so workers on different nodes never claim the same job. Must be
+   * called inside a transaction.
+   *
+   * @return Optional of the oldest unlocked pending job (empty if there is none)
+   */
+  @Query(
+      value =
+          "SELECT * FROM jobs WHERE status = 'pending' ORDER BY id LIMIT 1 FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  Optional<Job> findNextPendingForUpdate();
+
+  /**
+   * This method records when a job began running. Only the start time is written, so a cancel
+   * requested while the job waited for a thread is kept.
+   *
+   * @param id id of the job
+   * @param startedAt when the job began running
+   * @return 1 if the job exists, 0 otherwise
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE jobs j SET j.startedAt = :startedAt, j.updatedAt = :startedAt WHERE j.id = :id")
+  int markStarted(@Param("id") long id, @Param("startedAt") ZonedDateTime startedAt);
+
+  /**
+   * This method gives a job its final status, as long as the attempt finishing is still the current
+   * one: the job must still be leased by the same node (or by none, for a job that never went
+   * through the queue) and not have been claimed again since. A node whose lease lapsed, and whose
+   * job was handed to another node, therefore cannot overwrite the new attempt.
+   *
+   * @param id id of the job
+   * @param leaseOwner the node the attempt ran on (null for a job run outside the queue)
+   * @param attempts the attempt's number
+   * @param status the final status
+   * @param finishedAt when the job finished
+   * @return 1 if the job was finished, 0 if the attempt had been superseded
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE jobs j SET j.status = :status, j.finishedAt = :finishedAt, j.updatedAt = :finishedAt"
+          + " WHERE j.id = :id AND j.attempts = :attempts"
+          + " AND (j.leaseOwner = :leaseOwner OR (:leaseOwner IS NULL AND j.leaseOwner IS NULL))")
+  int finishAttempt(
+      @Param("id") long id,
+      @Param("leaseOwner") String leaseOwner,
+      @Param("attempts") int attempts,
+      @Param("status") String status,
+      @Param("finishedAt") ZonedDateTime finishedAt);
+
+  /**
+   * This method extends the lease on every job a node is running.
+   *
+   * @param owner the node's id
+   * @param expiresAt new lease expiry
+   * @return the number of jobs renewed
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE jobs j SET j.leaseExpiresAt = :expiresAt"
+          + " WHERE j.leaseOwner = :owner AND j.status IN ('running', 'cancelling')")
+  int renewLeases(@Param("owner") String owner, @Param("expiresAt") ZonedDateTime expiresAt);
+
+  /**
+   * This method puts running jobs whose lease has lapsed (i.e. whose node has died) back in the
+   * queue, as long as they have attempts left.
+   *
+   * @param now the current time
+   * @param maxAttempts number of times a job may be claimed
+   * @return the number of jobs requeued
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE jobs j SET j.status = 'pending', j.leaseOwner = NULL, j.leaseExpiresAt = NULL"
+          + " WHERE j.status = 'running' AND j.leaseExpiresAt < :now"
+          + " AND j.attempts < :maxAttempts")
+  int requeueExpiredLeases(@Param("now") ZonedDateTime now, @Param("maxAttempts") int maxAttempts);
+
+  /**
+   * This method marks running jobs whose lease has lapsed and that have no attempts left as failed,
+   * and jobs whose lease lapsed while they were being cancelled as cancelled.
+   *
+   * @param now the current time
+   * @param maxAttempts number of times a job may be claimed
+   * @return the number of jobs given a final status
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE jobs j SET j.leaseOwner = NULL, j.leaseExpiresAt = NULL,"
+          + " j.status = CASE WHEN j.status = 'cancelling' THEN 'cancelled' ELSE 'error' END"
+          + " WHERE j.leaseExpiresAt < :now"
+          + " AND ((j.status = 'running' AND j.attempts >= :maxAttempts)"
+          + " OR j.status = 'cancelling')")
+  int finishExpiredLeases(@Param("now") ZonedDateTime now, @Param("maxAttempts") int maxAttempts);
+
+  /**
+   * This method asks a job to stop: a pending job is marked "cancelled" straight away, and a
+   * running one is marked "cancelling" for the node running it to pick up. Finished jobs are left
+   * alone.
+   *
+   * @param id id of the job
+   * @param now when the cancel was requested
+   * @return 1 if the job was pending or running, 0 otherwise
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE jobs j"
+          + " SET j.status = CASE WHEN j.status = 'pending' THEN 'cancelled' ELSE 'cancelling' END,"
+          + " j.updatedAt = :now"
+          + " WHERE j.id = :id AND j.status IN ('pending', 'running')")
+  int requestCancel(@Param("id") long id, @Param("now") ZonedDateTime now);
+
+  /**
+   * This method marks as cancelled the jobs that were asked to stop before the cutoff but are still
+   * "cancelling" and have no lease. Such a job ran outside the queue, so no lease expiry will ever
+   * finish it; if it is still "cancelling" this long after the request, the node that was running
+   * it is gone.
+   *
+   * @param cutoff jobs asked to stop before this time are given up on
+   * @param now the current time
+   * @return the number of jobs marked cancelled
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE jobs j SET j.status = 'cancelled', j.finishedAt = :now, j.updatedAt = :now"
+          + " WHERE j.status = 'cancelling' AND j.leaseOwner IS NULL AND j.updatedAt < :cutoff")
+  int finishAbandonedCancels(
+      @Param("cutoff") ZonedDateTime cutoff, @Param("now") ZonedDateTime now);
+
+  /**
+   * This method returns which of the given jobs have been marked "cancelling".
+   *
+   * @param ids ids of jobs running on this node
+   * @return the ids of those jobs that should be stopped
+   */
+  @Query("SELECT j.id FROM jobs j WHERE j.status = 'cancelling' AND j.id IN :ids")
+  List<Long> findCancellingIds(@Param("ids") Collection<Long> ids);
+
+  /**
+   * This method deletes up to {@code limit} finished jobs created before {@code cutoff}, oldest
+   * first. Their log lines go with them (the foreign key cascades). Jobs that are pending or still
+   * running are kept.
+   *
+   * @param cutoff delete jobs created before this time
+   * @param limit most rows to delete in this statement
+   * @return the number of jobs deleted
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      value =
+          "DELETE FROM jobs WHERE id IN (SELECT id FROM jobs WHERE created_at < :cutoff"
+              + " AND status NOT IN ('pending', 'running', 'cancelling') ORDER BY id LIMIT :limit)",
+      nativeQuery = true)
+  int deleteFinishedCreatedBefore(@Param("cutoff") ZonedDateTime cutoff, @Param("limit") int limit);
+
+  /**
+   * This method deletes up to {@code limit} finished jobs with an id no higher than {@code maxId},
+   * oldest first. Jobs that are pending or still running are kept.
+   *
+   * @param maxId delete jobs with an id up to and including this one
+   * @param limit most rows to delete in this statement
+   * @return the number of jobs deleted
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      value =
+          "DELETE FROM jobs WHERE id IN (SELECT id FROM jobs WHERE id <= :maxId"
+              + " AND status NOT IN ('pending', 'running', 'cancelling') ORDER BY id LIMIT :limit)",
+      nativeQuery = true)
+  int deleteFinishedUpTo(@Param("maxId") long maxId, @Param("limit") int limit);
+
+  /**
+   * This method deletes up to {@code limit} finished jobs, oldest first. Jobs that are pending or
+   * still running are kept, since deleting one would take its log lines with it and make every
+   * later write to its log fail.
+   *
+   * @param limit most rows to delete in this statement
+   * @return the number of jobs deleted
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      value =
+          "DELETE FROM jobs WHERE id IN (SELECT id FROM jobs"
+              + " WHERE status NOT IN ('pending', 'running', 'cancelling') ORDER BY id LIMIT :limit)",
+      nativeQuery = true)
+  int deleteFinishedOldest(@Param("limit") int limit);
+
+  /**
+   * This method deletes a job, together with its log lines, provided it has finished.
+   *
+   * @param id id of the job
+   * @return 1 if the job was deleted, 0 if there is no such job or it is pending or still running
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      value =
+          "DELETE FROM jobs WHERE id = :id"
+              + " AND status NOT IN ('pending', 'running', 'cancelling')",
+      nativeQuery = true)
+  int deleteFinishedById(@Param("id") long id);
+
+  /**
+   * This method returns the id of the job that has {@code newer} jobs created after it, i.e. the
+   * newest job that falls outside the {@code newer} most recent ones.
+   *
+   * @param newer number of newer jobs
+   * @return Optional of the job's id (empty if there are no more than {@code newer} jobs)
+   */
+  @Query(value = "SELECT id FROM jobs ORDER BY id DESC LIMIT 1 OFFSET :newer", nativeQuery = true)
+  Optional<Long> findIdWithNewerCount(@Param("newer") int newer);
+}
@@ -0,0 +1,69 @@
+package edu.ucsb.cs156.example.repositories;
+
+import jakarta.persistence.QueryHint;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * The KeysetRepository is a base for repositories whose entities are listed a page at a time, in
+ * primary key order. Pages are found by key (a seek on the primary key index) rather than by
+ * offset, so every page costs the same however deep into the table it is. Its entities must have a
+ * {@code version} attribute.
+ *
+ * @param <T> the type of the entities
+ * @param <ID> the type of their primary key
+ */
+@NoRepositoryBean
+public interface KeysetRepository<T, ID> extends CrudRepository<T, ID> {
+  /**
+   * This method returns the first page of entities in primary key order.
+   *
+   * @param pageable the page size (the sort is always by ascending key)
+   * @return the entities on the page
+   */
+  @Query("SELECT e FROM #{#entityName} e ORDER BY id(e)")
+  List<T> findFirstPage(Pageable pageable);
+
+  /**
+   * This method returns a following page of entities in primary key order. Pass the key of the last
+   * entity on the previous page as {@code after}. Kept apart from {@link #findFirstPage} so that
+   * the condition is a plain range on the primary key, which the planner can seek on.
+   *
+   * @param after only return entities with a key greater than this
+   * @param pageable the page size (the sort is always by ascending key)
+   * @return the entities on the page
+   */
+  @Query("SELECT e FROM #{#entityName} e WHERE id(e) > :after ORDER BY id(e)")
+  List<T> findPageAfter(@Param("after") ID after, Pageable pageable);
+
+  /**
+   * This method streams every entity in primary key order. Rows are fetched from the database 500
+   * at a time and loaded read-only (without the snapshot kept for dirty checking). Must be called
+   * inside a transaction, and the stream must be closed.
+   *
+   * @return all of the entities
+   */
+  @QueryHints({
+    @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+    @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query("SELECT e FROM #{#entityName} e ORDER BY id(e)")
+  Stream<T> streamAll();
+
+  /**
+   * This method returns only the version of an entity, without loading the rest of the row.
+   *
+   * @param id the primary key of the entity
+   * @return Optional of the version (empty if there is no such entity)
+   */
+  @Query("SELECT e.version FROM #{#entityName} e WHERE id(e) = :id")
+  Optional<Long> findVersionById(@Param("id") ID id);
+}
@@ -1,8 +1,45 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
-import org.springframework.data.repository.CrudRepository;
+import java.time.LocalDateTime;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
-public interface MenuItemReviewRepository extends CrudRepository<MenuItemReview, Long> {}
+public interface MenuItemReviewRepository extends KeysetRepository<MenuItemReview, Long> {
+  /**
+   * This method deletes every review written before a given time, in a single statement.
+   *
+   * @param before the cutoff (exclusive)
+   * @return the number of reviews deleted
+   */
+  @Transactional
+  @Modifying
+  @Query("DELETE FROM menuitemreviews r WHERE r.dateReviewed < :before")
+  int deleteByDateReviewedBefore(@Param("before") LocalDateTime before);
+
+  /**
+   * This method overwrites a review in a single statement, without reading it first, provided it is
+   * still at the given version. The version is incremented.
+   *
+   * @param id id of the review
+   * @param version the version the caller last read
+   * @param incoming the new contents
+   * @return 1 if the review was updated, 0 if there is no such review or it has changed
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE menuitemreviews r SET r.itemId = :#{#incoming.itemId},"
+          + " r.reviewerEmail = :#{#incoming.reviewerEmail}, r.stars = :#{#incoming.stars},"
+          + " r.dateReviewed = :#{#incoming.dateReviewed}, r.comments = :#{#incoming.comments},"
+          + " r.version = r.version + 1"
+          + " WHERE r.id = :id AND r.version = :version")
+  int updateIfVersion(
+      @Param("id") long id,
+      @Param("version") long version,
+      @Param("incoming") MenuItemReview incoming);
+}
@@ -1,9 +1,54 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
-import org.springframework.data.repository.CrudRepository;
+import java.util.Collection;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface RecommendationRequestRepository
-    extends CrudRepository<RecommendationRequest, Long> {}
+    extends KeysetRepository<RecommendationRequest, Long> {
+  /**
+   * This method sets the done flag of the recommendation requests with the given ids, in a single
+   * statement. Their versions are incremented, so a stale If-Match update of any of them is
+   * refused.
+   *
+   * @param ids ids of the recommendation requests (must not be empty)
+   * @param done the new value of the flag
+   * @return the number of recommendation requests updated
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE recommendationrequests r SET r.done = :done, r.version = r.version + 1"
+          + " WHERE r.id IN :ids")
+  int updateDoneByIdIn(@Param("ids") Collection<Long> ids, @Param("done") boolean done);
+
+  /**
+   * This method overwrites a recommendation request in a single statement, without reading it
+   * first, provided it is still at the given version. The version is incremented.
+   *
+   * @param id id of the recommendation request
+   * @param version the version the caller last read
+   * @param incoming the new contents
+   * @return 1 if the recommendation request was updated, 0 if there is no such recommendation
+   *     request or it has changed
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE recommendationrequests r SET r.requesterEmail = :#{#incoming.requesterEmail},"
+          + " r.professorEmail = :#{#incoming.professorEmail},"
+          + " r.explanation = :#{#incoming.explanation},"
+          + " r.dateRequested = :#{#incoming.dateRequested},"
+          + " r.dateNeeded = :#{#incoming.dateNeeded}, r.done = :#{#incoming.done},"
+          + " r.version = r.version + 1"
+          + " WHERE r.id = :id AND r.version = :version")
+  int updateIfVersion(
+      @Param("id") long id,
+      @Param("version") long version,
+      @Param("incoming") RecommendationRequest incoming);
+}
@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.TableVersion;
+import java.time.ZonedDateTime;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface TableVersionRepository extends CrudRepository<TableVersion, String> {
+  /**
+   * This method adds one to the version of a table in a single statement, so that concurrent
+   * writers never lose an increment.
+   *
+   * @param tableName the entity name of the table
+   * @param now the time of the write
+   * @return 1 if the table has a version row, 0 otherwise
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE tableversions t SET t.version = t.version + 1, t.updatedAt = :now"
+          + " WHERE t.tableName = :tableName")
+  int bump(@Param("tableName") String tableName, @Param("now") ZonedDateTime now);
+}
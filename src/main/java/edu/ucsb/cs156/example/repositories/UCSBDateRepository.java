@@ -1,12 +1,15 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /** The UCSBDateRepository is a repository for UCSBDate entities. */
 @Repository
-public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
+public interface UCSBDateRepository extends KeysetRepository<UCSBDate, Long> {
   /**
    * This method returns all UCSBDate entities with a given quarterYYYYQ.
    *
@@ -15,4 +18,23 @@ public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
    * @return all UCSBDate entities with a given quarterYYYYQ
    */
   Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);
+
+  /**
+   * This method overwrites a date in a single statement, without reading it first, provided it is
+   * still at the given version. The version is incremented.
+   *
+   * @param id id of the date
+   * @param version the version the caller last read
+   * @param incoming the new contents
+   * @return 1 if the date was updated, 0 if there is no such date or it has changed
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE ucsbdates d SET d.quarterYYYYQ = :#{#incoming.quarterYYYYQ},"
+          + " d.name = :#{#incoming.name}, d.localDateTime = :#{#incoming.localDateTime},"
+          + " d.version = d.version + 1"
+          + " WHERE d.id = :id AND d.version = :version")
+  int updateIfVersion(
+      @Param("id") long id, @Param("version") long version, @Param("incoming") UCSBDate incoming);
 }
@@ -1,12 +1,36 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * The UCSBDiningCommonsMenuItemRepository is a repository for UCSBDiningCommonsMenuItem entities.
  */
 @Repository
 public interface UCSBDiningCommonsMenuItemRepository
-    extends CrudRepository<UCSBDiningCommonsMenuItem, Long> {}
+    extends KeysetRepository<UCSBDiningCommonsMenuItem, Long> {
+  /**
+   * This method overwrites a menu item in a single statement, without reading it first, provided it
+   * is still at the given version. The version is incremented.
+   *
+   * @param id id of the menu item
+   * @param version the version the caller last read
+   * @param incoming the new contents
+   * @return 1 if the menu item was updated, 0 if there is no such menu item or it has changed
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE ucsbdiningcommonsmenuitem m SET"
+          + " m.diningCommonsCode = :#{#incoming.diningCommonsCode}, m.name = :#{#incoming.name},"
+          + " m.station = :#{#incoming.station}, m.version = m.version + 1"
+          + " WHERE m.id = :id AND m.version = :version")
+  int updateIfVersion(
+      @Param("id") long id,
+      @Param("version") long version,
+      @Param("incoming") UCSBDiningCommonsMenuItem incoming);
+}
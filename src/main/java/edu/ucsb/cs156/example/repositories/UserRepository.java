@@ -1,13 +1,22 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.User;
+import jakarta.persistence.QueryHint;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /** The UserRepository is a repository for User entities. */
 @Repository
-public interface UserRepository extends CrudRepository<User, Long> {
+public interface UserRepository extends CrudRepository<User, Long>, UserUpsertRepository {
   /**
    * This method returns a User entity with a given email.
    *
@@ -15,4 +24,44 @@ public interface UserRepository extends CrudRepository<User, Long> {
    * @return Optional of User (empty if not found)
    */
   Optional<User> findByEmail(String email);
+
+  /**
+   * This method sets the admin flag of the user with a given email, if it is not already set.
+   *
+   * @param email email address of the user
+   * @return 1 if the flag was changed, 0 if there is no such user or they are already an admin
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE users u SET u.admin = true WHERE u.email = :email AND u.admin = false")
+  int grantAdmin(@Param("email") String email);
+
+  /**
+   * This method streams a page of users in id order. Pages are found by key: pass the id of the
+   * last user on the previous page as {@code after}. The filters are optional; pass null to leave
+   * them out. The users are built by the query rather than loaded as managed entities, so the
+   * persistence context does not grow with the page. Must be called inside a transaction, and the
+   * stream must be closed.
+   *
+   * @param after only return users with an id greater than this (null for the first page)
+   * @param admin only return users with this admin flag
+   * @param hostedDomain only return users with this hosted domain
+   * @param pageable the page size (the sort is always by ascending id)
+   * @return the users on the page
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+  @Query(
+      "SELECT new edu.ucsb.cs156.example.entities.User("
+          + "u.id, u.email, u.googleSub, u.pictureUrl, u.fullName, u.givenName, u.familyName,"
+          + " u.emailVerified, u.locale, u.hostedDomain, u.admin)"
+          + " FROM users u"
+          + " WHERE (:after IS NULL OR u.id > :after)"
+          + " AND (:admin IS NULL OR u.admin = :admin)"
+          + " AND (:hostedDomain IS NULL OR u.hostedDomain = :hostedDomain)"
+          + " ORDER BY u.id")
+  Stream<User> streamPage(
+      @Param("after") Long after,
+      @Param("admin") Boolean admin,
+      @Param("hostedDomain") String hostedDomain,
+      Pageable pageable);
 }
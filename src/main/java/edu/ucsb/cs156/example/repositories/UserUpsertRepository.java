@@ -0,0 +1,18 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.User;
+
+/** Atomic insert-or-update of users by email, mixed into {@link UserRepository}. */
+public interface UserUpsertRepository {
+  /**
+   * Inserts a user, or updates the existing user with the same email, in a single statement.
+   *
+   * <p>The profile fields of an existing user are overwritten with those given. The admin flag is
+   * only written for a new user; an existing user keeps theirs, which is changed with {@link
+   * UserRepository#grantAdmin} instead.
+   *
+   * @param user the user's email, profile fields and admin flag (the id is ignored)
+   * @return the row as stored, including its id
+   */
+  User upsert(User user);
+}
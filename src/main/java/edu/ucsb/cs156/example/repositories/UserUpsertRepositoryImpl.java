@@ -0,0 +1,100 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.User;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Implements {@link UserUpsertRepository} with one statement per call, relying on the unique index
+ * on users.email: {@code INSERT ... ON CONFLICT ... RETURNING} on PostgreSQL, and {@code MERGE}
+ * wrapped in {@code FINAL TABLE} on H2. Concurrent first logins for the same email therefore end up
+ * with a single row.
+ */
+public class UserUpsertRepositoryImpl implements UserUpsertRepository {
+  static final String COLUMNS =
+      "id, email, google_sub, picture_url, full_name, given_name, family_name, email_verified,"
+          + " locale, hosted_domain, admin";
+
+  static final String POSTGRES_UPSERT_SQL =
+      "INSERT INTO users (email, google_sub, picture_url, full_name, given_name, family_name,"
+          + " email_verified, locale, hosted_domain, admin) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+          + " ON CONFLICT (email) DO UPDATE SET google_sub = EXCLUDED.google_sub,"
+          + " picture_url = EXCLUDED.picture_url, full_name = EXCLUDED.full_name,"
+          + " given_name = EXCLUDED.given_name, family_name = EXCLUDED.family_name,"
+          + " email_verified = EXCLUDED.email_verified, locale = EXCLUDED.locale,"
+          + " hosted_domain = EXCLUDED.hosted_domain"
+          + " RETURNING "
+          + COLUMNS;
+
+  // MERGE ... KEY replaces every listed column, so the admin value keeps an existing admin flag
+  static final String H2_UPSERT_SQL =
+      "SELECT "
+          + COLUMNS
+          + " FROM FINAL TABLE (MERGE INTO users (email, google_sub, picture_url, full_name,"
+          + " given_name, family_name, email_verified, locale, hosted_domain, admin) KEY (email)"
+          + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, COALESCE((SELECT u.admin FROM users u"
+          + " WHERE u.email = ?), ?)))";
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  private volatile Boolean postgres;
+
+  @Override
+  public User upsert(User user) {
+    if (isPostgres()) {
+      return jdbcTemplate.queryForObject(
+          POSTGRES_UPSERT_SQL, this::mapUser, profileValues(user, user.getAdmin()));
+    }
+    Object[] values = profileValues(user, user.getEmail(), user.getAdmin());
+    return jdbcTemplate.queryForObject(H2_UPSERT_SQL, this::mapUser, values);
+  }
+
+  private boolean isPostgres() {
+    if (postgres == null) {
+      postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) this::isPostgresConnection);
+    }
+    return postgres;
+  }
+
+  private boolean isPostgresConnection(Connection connection) throws SQLException {
+    return "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+  }
+
+  private static Object[] profileValues(User user, Object... extra) {
+    Object[] profile = {
+      user.getEmail(),
+      user.getGoogleSub(),
+      user.getPictureUrl(),
+      user.getFullName(),
+      user.getGivenName(),
+      user.getFamilyName(),
+      user.getEmailVerified(),
+      user.getLocale(),
+      user.getHostedDomain()
+    };
+    Object[] values = new Object[profile.length + extra.length];
+    System.arraycopy(profile, 0, values, 0, profile.length);
+    System.arraycopy(extra, 0, values, profile.length, extra.length);
+    return values;
+  }
+
+  private User mapUser(ResultSet rs, int rowNum) throws SQLException {
+    return User.builder()
+        .id(rs.getLong("id"))
+        .email(rs.getString("email"))
+        .googleSub(rs.getString("google_sub"))
+        .pictureUrl(rs.getString("picture_url"))
+        .fullName(rs.getString("full_name"))
+        .givenName(rs.getString("given_name"))
+        .familyName(rs.getString("family_name"))
+        .emailVerified(rs.getBoolean("email_verified"))
+        .locale(rs.getString("locale"))
+        .hostedDomain(rs.getString("hosted_domain"))
+        .admin(rs.getBoolean("admin"))
+        .build();
+  }
+}
@@ -0,0 +1,111 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service decides whether a user is an admin.
+ *
+ * <p>A user is an admin if their email is listed in {@code app.admin.emails}, or if the admin
+ * column of their row in the users table is set. The listed emails are held in a hash set, and the
+ * admin column is cached by email for {@code app.users.cache-ttl-ms}. Whenever the application
+ * changes the admin column it publishes a {@link UserAdminChangedEvent}, which updates the cache at
+ * once; the TTL only bounds how long a change made directly in the database goes unnoticed.
+ */
+@Service("adminService")
+public class AdminService {
+
+  @Autowired private UserRepository userRepository;
+
+  @Autowired private ApplicationEventPublisher eventPublisher;
+
+  @Value("${app.admin.emails}")
+  private final List<String> adminEmailList = new ArrayList<>();
+
+  @Value("${app.users.cache-ttl-ms:60000}")
+  private long cacheTtlMs;
+
+  @Value("${app.users.cache-max-entries:10000}")
+  private int cacheMaxEntries;
+
+  private Set<String> adminEmails;
+
+  /** The admin column of the users table, by email. */
+  private TtlCache<String, Boolean> adminFlags;
+
+  @PostConstruct
+  void init() {
+    adminEmails = new HashSet<>(adminEmailList);
+    adminFlags =
+        new TtlCache<>(Duration.ofMillis(cacheTtlMs), cacheMaxEntries, Clock.systemDefaultZone());
+  }
+
+  /**
+   * Returns whether an email is listed in {@code app.admin.emails}.
+   *
+   * @param email email address of the user
+   * @return whether the email is listed
+   */
+  public boolean isAdminEmail(String email) {
+    return adminEmails.contains(email);
+  }
+
+  /**
+   * Returns whether the user with the given email is an admin, either because their email is listed
+   * in {@code app.admin.emails} or because they are flagged as an admin in the database.
+   *
+   * @param email email address of the user
+   * @return whether the user with the given email is an admin
+   */
+  public boolean isAdmin(String email) {
+    if (isAdminEmail(email)) {
+      return true;
+    }
+    Optional<Boolean> cached = adminFlags.get(email);
+    if (cached.isPresent()) {
+      return cached.get();
+    }
+    Optional<User> u = userRepository.findByEmail(email);
+    boolean admin = u.isPresent() && u.get().getAdmin();
+    adminFlags.put(email, admin);
+    return admin;
+  }
+
+  /**
+   * Sets the admin flag of a user's row, publishing a {@link UserAdminChangedEvent} if this changed
+   * it.
+   *
+   * @param email email address of the user
+   * @return whether the flag was changed
+   */
+  public boolean grantAdmin(String email) {
+    if (userRepository.grantAdmin(email) == 0) {
+      return false;
+    }
+    eventPublisher.publishEvent(new UserAdminChangedEvent(email, true));
+    return true;
+  }
+
+  /**
+   * Records a change to a user's admin flag.
+   *
+   * @param event the change
+   */
+  @EventListener
+  public void onUserAdminChanged(UserAdminChangedEvent event) {
+    adminFlags.put(event.getEmail(), event.getAdmin());
+  }
+}
@@ -0,0 +1,34 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.Collection;
+import java.util.List;
+import org.springframework.security.core.GrantedAuthority;
+
+/** The roles granted to an authentication, computed once as a sorted, immutable list. */
+public final class AuthenticationRoles {
+  private final List<String> sorted;
+
+  private AuthenticationRoles(List<String> sorted) {
+    this.sorted = sorted;
+  }
+
+  /**
+   * Computes the roles for a collection of authorities.
+   *
+   * @param authorities the authorities
+   * @return the roles
+   */
+  public static AuthenticationRoles of(Collection<? extends GrantedAuthority> authorities) {
+    return new AuthenticationRoles(
+        authorities.stream().map(GrantedAuthority::getAuthority).sorted().toList());
+  }
+
+  /**
+   * Returns the roles, sorted.
+   *
+   * @return an immutable, sorted list of roles
+   */
+  public List<String> getSorted() {
+    return sorted;
+  }
+}
@@ -0,0 +1,59 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * Remembers a value computed from each list of granted authorities. Only a handful of distinct
+ * lists exist (one per combination of roles), so each value is computed once, not per request.
+ * Should that not hold, the memo is emptied once it reaches its bound rather than grown.
+ *
+ * @param <V> the type of the values
+ */
+public final class AuthoritiesMemo<V> {
+  private final int maxEntries;
+  private final Map<List<GrantedAuthority>, V> values = new ConcurrentHashMap<>();
+
+  /**
+   * Creates an empty memo.
+   *
+   * @param maxEntries how many authority lists to remember before starting again
+   */
+  public AuthoritiesMemo(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Returns the value for a list of authorities, computing it only the first time the list is seen.
+   *
+   * @param authorities the authorities
+   * @param compute computes the value from the authorities
+   * @return the value
+   */
+  public V get(
+      Collection<? extends GrantedAuthority> authorities,
+      Function<Collection<? extends GrantedAuthority>, V> compute) {
+    V value = values.get(authorities);
+    if (value == null) {
+      if (values.size() >= maxEntries) {
+        values.clear();
+      }
+      value = compute.apply(authorities);
+      values.put(List.copyOf(authorities), value);
+    }
+    return value;
+  }
+
+  /**
+   * Returns how many authority lists are remembered.
+   *
+   * @return the number of entries
+   */
+  int size() {
+    return values.size();
+  }
+}
@@ -3,7 +3,9 @@ package edu.ucsb.cs156.example.services;
 import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.repositories.UserRepository;
-import java.util.ArrayList;
+import jakarta.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -11,6 +13,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
@@ -18,11 +21,15 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 /**
  * This is a service that provides information about the current user.
  *
- * <p>This is the version of the service used in production.
+ * <p>This is the version of the service used in production. The User is looked up at most once per
+ * request, and is then cached by email for {@code app.users.cache-ttl-ms}, so most requests do not
+ * touch the users table at all.
  */
 @Slf4j
 @Service("currentUser")
@@ -32,8 +39,26 @@ public class CurrentUserServiceImpl extends CurrentUserService {
 
   @Autowired GrantedAuthoritiesService grantedAuthoritiesService;
 
-  @Value("${app.admin.emails}")
-  private final List<String> adminEmails = new ArrayList<String>();
+  @Autowired private AdminService adminService;
+
+  @Value("${app.users.cache-ttl-ms:60000}")
+  private long userCacheTtlMs;
+
+  @Value("${app.users.cache-max-entries:10000}")
+  private int userCacheMaxEntries;
+
+  /** Users already looked up, by email, so that most requests do not query the users table. */
+  private TtlCache<String, User> userCache;
+
+  /** Name of the request attribute that holds the user resolved for the current request. */
+  static final String REQUEST_USER_ATTRIBUTE = CurrentUserServiceImpl.class.getName() + ".user";
+
+  @PostConstruct
+  void createUserCache() {
+    userCache =
+        new TtlCache<>(
+            Duration.ofMillis(userCacheTtlMs), userCacheMaxEntries, Clock.systemDefaultZone());
+  }
 
   /**
    * This method returns the current user as a User object.
@@ -42,7 +67,7 @@ public class CurrentUserServiceImpl extends CurrentUserService {
    */
   public CurrentUser getCurrentUser() {
     CurrentUser cu = CurrentUser.builder().user(this.getUser()).roles(this.getRoles()).build();
-    log.info("getCurrentUser returns {}", cu);
+    log.debug("getCurrentUser returns {}", cu);
     return cu;
   }
 
@@ -50,8 +75,10 @@ public class CurrentUserServiceImpl extends CurrentUserService {
    * This method obtains the current user that is logged in with OAuth2, if any. The parameters are
    * automatically injected by Spring.
    *
-   * <p>This method also has a side effect of storing the user in the database if they are not
-   * already there.
+   * <p>This method also has a side effect of storing the user in the database: a new user is
+   * inserted, and an existing user's profile is refreshed, in a single upsert statement. An
+   * existing user whose email is listed in {@code app.admin.emails} is flagged as an admin if not
+   * already.
    *
    * @param securityContext the security context (provided by Spring)
    * @param authentication the authentication token (provided by Spring)
@@ -70,33 +97,34 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     String locale = oAuthUser.getAttribute("locale");
     String hostedDomain = oAuthUser.getAttribute("hd");
 
-    java.util.Map<java.lang.String, java.lang.Object> attrs = oAuthUser.getAttributes();
-    log.info("attrs={}", attrs);
-
-    Optional<User> ou = userRepository.findByEmail(email);
-    if (ou.isPresent()) {
-      User u = ou.get();
-      if (adminEmails.contains(email) && !u.getAdmin()) {
-        u.setAdmin(true);
-        userRepository.save(u);
-      }
-      return u;
+    log.debug("attrs={}", oAuthUser.getAttributes());
+
+    Optional<User> cached = userCache.get(email);
+    if (cached.isPresent()) {
+      return cached.get();
     }
 
+    boolean admin = adminService.isAdminEmail(email);
     User u =
-        User.builder()
-            .googleSub(googleSub)
-            .email(email)
-            .pictureUrl(pictureUrl)
-            .fullName(fullName)
-            .givenName(givenName)
-            .familyName(familyName)
-            .emailVerified(emailVerified)
-            .locale(locale)
-            .hostedDomain(hostedDomain)
-            .admin(adminEmails.contains(email))
-            .build();
-    userRepository.save(u);
+        userRepository.upsert(
+            User.builder()
+                .googleSub(googleSub)
+                .email(email)
+                .pictureUrl(pictureUrl)
+                .fullName(fullName)
+                .givenName(givenName)
+                .familyName(familyName)
+                .emailVerified(emailVerified)
+                .locale(locale)
+                .hostedDomain(hostedDomain)
+                .admin(admin)
+                .build());
+    if (admin && !u.getAdmin()) {
+      // an existing user whose email has since been listed in app.admin.emails
+      adminService.grantAdmin(email);
+      u.setAdmin(true);
+    }
+    userCache.put(email, u);
     return u;
   }
 
@@ -109,10 +137,33 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     SecurityContext securityContext = SecurityContextHolder.getContext();
     Authentication authentication = securityContext.getAuthentication();
 
-    if (authentication instanceof OAuth2AuthenticationToken) {
-      return getOAuth2AuthenticatedUser(securityContext, authentication);
+    if (!(authentication instanceof OAuth2AuthenticationToken)) {
+      return null;
+    }
+
+    // Within a request, resolve the user once however many times this is called
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request != null
+        && request.getAttribute(REQUEST_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+            instanceof User user) {
+      return user;
+    }
+    User user = getOAuth2AuthenticatedUser(securityContext, authentication);
+    if (request != null) {
+      request.setAttribute(REQUEST_USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
     }
-    return null;
+    return user;
+  }
+
+  /**
+   * Drops a user from the cache when their admin flag changes, so that the change is seen on their
+   * next request rather than once the cached copy expires.
+   *
+   * @param event the change
+   */
+  @EventListener
+  public void onUserAdminChanged(UserAdminChangedEvent event) {
+    userCache.evict(event.getEmail());
   }
 
   /**
@@ -123,4 +174,15 @@ public class CurrentUserServiceImpl extends CurrentUserService {
   public Collection<? extends GrantedAuthority> getRoles() {
     return grantedAuthoritiesService.getGrantedAuthorities();
   }
+
+  /**
+   * This method returns the roles of the current user as a sorted list of strings, sorted once per
+   * combination of roles rather than on every call.
+   *
+   * @return an immutable, sorted list of roles
+   */
+  @Override
+  public List<String> getRolesSorted() {
+    return grantedAuthoritiesService.getRoles().getSorted();
+  }
 }
@@ -11,11 +11,20 @@ import org.springframework.stereotype.Service;
 /**
  * The is a service that retrieves and logs the granted authorities for the current user's
  * authentication.
+ *
+ * <p>The roles derived from the authorities are memoized by authority list (see {@link
+ * AuthoritiesMemo}), so each list is sorted once, not per request.
  */
 @Slf4j
 @Service("grantedAuthorities")
 public class GrantedAuthoritiesService {
 
+  /** Above this many distinct authority lists, the memo is emptied rather than grown. */
+  static final int MAX_MEMOIZED = 1000;
+
+  private final AuthoritiesMemo<AuthenticationRoles> rolesByAuthorities =
+      new AuthoritiesMemo<>(MAX_MEMOIZED);
+
   /**
    * The function retrieves and logs the granted authorities from the current security context in a
    * Java application.
@@ -26,7 +35,17 @@ public class GrantedAuthoritiesService {
     SecurityContext securityContext = SecurityContextHolder.getContext();
     Authentication authentication = securityContext.getAuthentication();
     Collection<? extends GrantedAuthority> authorities = authentication.getAuthorities();
-    log.info("authorities={}", authorities);
+    log.debug("authorities={}", authorities);
     return authorities;
   }
+
+  /**
+   * Returns the roles of the current user's authentication, computing them only the first time this
+   * list of authorities is seen.
+   *
+   * @return the roles granted to the currently authenticated user
+   */
+  public AuthenticationRoles getRoles() {
+    return rolesByAuthorities.get(getGrantedAuthorities(), AuthenticationRoles::of);
+  }
 }
@@ -0,0 +1,108 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This service writes query results as JSON straight from a database cursor to a response, one
+ * row at a time, so that memory use does not depend on the number of rows.
+ */
+@Service
+public class JsonStreamService {
+
+  @Autowired private ObjectMapper mapper;
+
+  // Optional so that controller tests, which have no JPA, can still use this service
+  @Autowired private ObjectProvider<EntityManager> entityManagers;
+
+  /**
+   * Writes one keyset page as {@code {"items": [...], "next": ...}}, the same shape as a {@link
+   * edu.ucsb.cs156.example.models.KeysetPage}. The query should return up to {@code pageSize + 1}
+   * rows in key order; if the extra row is there, {@code next} is the key of the last row written,
+   * otherwise it is null.
+   *
+   * <p>The query runs in a read-only transaction that stays open while the rows are written, which
+   * JPA needs to keep the cursor open.
+   *
+   * @param <T> the type of the rows
+   * @param out where to write the JSON
+   * @param pageSize the most rows to write
+   * @param query opens the stream of rows
+   * @param key the key of a row
+   * @throws IOException if the JSON cannot be written
+   */
+  @Transactional(readOnly = true)
+  public <T> void writeKeysetPage(
+      OutputStream out, int pageSize, Supplier<Stream<T>> query, ToLongFunction<T> key)
+      throws IOException {
+    try (Stream<T> rows = query.get();
+        JsonGenerator generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+      generator.writeStartObject();
+      generator.writeArrayFieldStart("items");
+      // rows are flushed as the generator's buffer fills, not one by one
+      ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+      Iterator<T> iterator = rows.iterator();
+      T last = null;
+      int written = 0;
+      while (written < pageSize && iterator.hasNext()) {
+        last = iterator.next();
+        writer.writeValue(generator, last);
+        written++;
+      }
+      generator.writeEndArray();
+      if (iterator.hasNext()) {
+        generator.writeNumberField("next", key.applyAsLong(last));
+      } else {
+        generator.writeNullField("next");
+      }
+      generator.writeEndObject();
+    }
+  }
+
+  /**
+   * Writes every row of a query as a JSON array. Each entity is detached from the persistence
+   * context once it has been written, so neither the heap nor the persistence context grows with
+   * the number of rows.
+   *
+   * <p>The query runs in a read-only transaction that stays open while the rows are written, which
+   * JPA needs to keep the cursor open. It should return managed entities (not, e.g., the results
+   * of a constructor expression, which cannot be detached).
+   *
+   * @param <T> the type of the entities
+   * @param out where to write the JSON
+   * @param query opens the stream of entities
+   * @throws IOException if the JSON cannot be written
+   */
+  @Transactional(readOnly = true)
+  public <T> void writeArray(OutputStream out, Supplier<Stream<T>> query) throws IOException {
+    EntityManager entityManager = entityManagers.getIfAvailable();
+    try (Stream<T> rows = query.get();
+        JsonGenerator generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+      generator.writeStartArray();
+      ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+      Iterator<T> iterator = rows.iterator();
+      while (iterator.hasNext()) {
+        T row = iterator.next();
+        writer.writeValue(generator, row);
+        if (entityManager != null) {
+          entityManager.detach(row);
+        }
+      }
+      generator.writeEndArray();
+    }
+  }
+}
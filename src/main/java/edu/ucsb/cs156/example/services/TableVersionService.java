@@ -0,0 +1,74 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import jakarta.persistence.Entity;
+import java.time.ZonedDateTime;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This service keeps a version for each table, bumped on every write, so that a client can ask
+ * whether a table has changed without any of its rows being read.
+ */
+@Service
+public class TableVersionService {
+
+  @Autowired private TableVersionRepository tableVersionRepository;
+
+  /**
+   * Returns the current version of the table of an entity.
+   *
+   * @param entityType the class of the entity
+   * @return the version (0, with no update time, if the table has never been written)
+   */
+  public TableVersion current(Class<?> entityType) {
+    String tableName = tableName(entityType);
+    return tableVersionRepository
+        .findById(tableName)
+        .orElseGet(() -> TableVersion.builder().tableName(tableName).build());
+  }
+
+  /**
+   * Makes a write to the table of an entity and records it, in one transaction, so that the new
+   * version is never seen without the write, nor the write without the new version.
+   *
+   * @param <T> the type of the result
+   * @param entityType the class of the entity
+   * @param write the write
+   * @return the result of the write
+   */
+  @Transactional
+  public <T> T write(Class<?> entityType, Supplier<T> write) {
+    T result = write.get();
+    bump(entityType);
+    return result;
+  }
+
+  /**
+   * Records a write to the table of an entity. Call it after the write has been made, in the same
+   * transaction, so that a reader never pairs the new version with the old rows.
+   *
+   * @param entityType the class of the entity
+   */
+  public void bump(Class<?> entityType) {
+    String tableName = tableName(entityType);
+    ZonedDateTime now = ZonedDateTime.now();
+    if (tableVersionRepository.bump(tableName, now) == 0) {
+      tableVersionRepository.save(
+          TableVersion.builder().tableName(tableName).version(1).updatedAt(now).build());
+    }
+  }
+
+  /**
+   * Returns the name a table is kept under: the entity name, e.g. "articles".
+   *
+   * @param entityType the class of the entity
+   * @return the name
+   */
+  public static String tableName(Class<?> entityType) {
+    return entityType.getAnnotation(Entity.class).name();
+  }
+}
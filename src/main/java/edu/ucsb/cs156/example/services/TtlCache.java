@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A small thread-safe map whose entries expire a fixed time after they were stored.
+ *
+ * <p>Expired entries are dropped when they are read, and swept whenever the cache is full; if it is
+ * still full after that, it is emptied, so it never holds more than {@code maxEntries} entries.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class TtlCache<K, V> {
+
+  private record Entry<V>(V value, Instant expiresAt) {}
+
+  private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final Duration ttl;
+  private final int maxEntries;
+  private final Clock clock;
+
+  /**
+   * Creates a cache.
+   *
+   * @param ttl how long an entry stays valid after it is stored
+   * @param maxEntries the most entries the cache holds
+   * @param clock the clock used to expire entries
+   */
+  public TtlCache(Duration ttl, int maxEntries, Clock clock) {
+    this.ttl = ttl;
+    this.maxEntries = maxEntries;
+    this.clock = clock;
+  }
+
+  /**
+   * Returns the value stored for a key, if it has not expired.
+   *
+   * @param key the key
+   * @return Optional of the value (empty if absent or expired)
+   */
+  public Optional<V> get(K key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    if (!clock.instant().isBefore(entry.expiresAt())) {
+      entries.remove(key, entry);
+      return Optional.empty();
+    }
+    return Optional.of(entry.value());
+  }
+
+  /**
+   * Stores a value for a key, replacing any previous value.
+   *
+   * @param key the key
+   * @param value the value
+   */
+  public void put(K key, V value) {
+    Instant now = clock.instant();
+    if (entries.size() >= maxEntries) {
+      entries.values().removeIf(entry -> !now.isBefore(entry.expiresAt()));
+      if (entries.size() >= maxEntries) {
+        entries.clear();
+      }
+    }
+    entries.put(key, new Entry<>(value, now.plus(ttl)));
+  }
+
+  /**
+   * Removes the value stored for a key.
+   *
+   * @param key the key
+   */
+  public void evict(K key) {
+    entries.remove(key);
+  }
+
+  /** Removes every entry. */
+  public void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Returns the number of entries held, including any that have expired but not been swept.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return entries.size();
+  }
+}
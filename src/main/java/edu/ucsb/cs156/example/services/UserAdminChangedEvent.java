@@ -0,0 +1,15 @@
+package edu.ucsb.cs156.example.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * This event is published whenever a user's admin flag is changed, so that anything that caches
+ * users or their roles can drop its copy.
+ */
+@Data
+@AllArgsConstructor
+public class UserAdminChangedEvent {
+  private String email;
+  private boolean admin;
+}
@@ -1,20 +1,209 @@
 package edu.ucsb.cs156.example.services.jobs;
 
 import edu.ucsb.cs156.example.entities.Job;
-import edu.ucsb.cs156.example.repositories.JobsRepository;
-import lombok.AllArgsConstructor;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import lombok.extern.slf4j.Slf4j;
 
-@AllArgsConstructor
+/**
+ * The context passed to a running job. Log lines are buffered in memory and written to the database
+ * in batches, either when {@code batchSize} lines have accumulated or when {@link #flushIfStale} is
+ * called after {@code flushIntervalMs} has passed since the last write.
+ *
+ * <p>A job can be cancelled, or time out, while it runs. The thread running it is then interrupted,
+ * which ends blocking calls such as {@link Thread#sleep}; jobs that loop without blocking should
+ * call {@link #checkCancelled} (or {@link #isCancelled}) between steps.
+ */
 @Slf4j
 public class JobContext {
-  private JobsRepository jobsRepository;
-  private Job job;
-
-  public void log(String message) {
-    log.info("Job %s: %s".formatted(job.getId(), message));
-    String previousLog = job.getLog() == null ? "" : (job.getLog() + "\n");
-    job.setLog(previousLog + message);
-    if (jobsRepository != null) jobsRepository.save(job);
+  private final JobLogWriter jobLogWriter;
+  private final Job job;
+  private final int batchSize;
+  private final long flushIntervalMs;
+  private final List<JobLogLine> buffer = new ArrayList<>();
+  private int nextSeq;
+  private long lastFlushMs = System.currentTimeMillis();
+  private Thread thread;
+  private long deadlineMs = Long.MAX_VALUE;
+  private volatile String cancelledStatus;
+
+  /**
+   * Creates an unbuffered context: every line is written as soon as it is logged.
+   *
+   * @param jobLogWriter writer for log lines (may be null, in which case nothing is persisted)
+   * @param job the job being run
+   */
+  public JobContext(JobLogWriter jobLogWriter, Job job) {
+    this(jobLogWriter, job, 1, 0);
+  }
+
+  /**
+   * Creates a context that buffers log lines.
+   *
+   * @param jobLogWriter writer for log lines (may be null, in which case nothing is persisted)
+   * @param job the job being run
+   * @param batchSize number of buffered lines that triggers a write
+   * @param flushIntervalMs age after which buffered lines are written by {@link #flushIfStale}
+   */
+  public JobContext(JobLogWriter jobLogWriter, Job job, int batchSize, long flushIntervalMs) {
+    this(jobLogWriter, job, batchSize, flushIntervalMs, 0);
+  }
+
+  /**
+   * Creates a context that buffers log lines and numbers them from {@code firstSeq}, for a job that
+   * already has lines in its log (e.g. one that is being re-run).
+   *
+   * @param jobLogWriter writer for log lines (may be null, in which case nothing is persisted)
+   * @param job the job being run
+   * @param batchSize number of buffered lines that triggers a write
+   * @param flushIntervalMs age after which buffered lines are written by {@link #flushIfStale}
+   * @param firstSeq seq of the first line this context writes
+   */
+  public JobContext(
+      JobLogWriter jobLogWriter, Job job, int batchSize, long flushIntervalMs, int firstSeq) {
+    this.jobLogWriter = jobLogWriter;
+    this.job = job;
+    this.batchSize = batchSize;
+    this.flushIntervalMs = flushIntervalMs;
+    this.nextSeq = firstSeq;
+  }
+
+  /**
+   * Appends a line to the job's log. Each line is stored as its own row in job_log_lines, so the
+   * cost of a call does not grow with the size of the log.
+   *
+   * @param message the line to append
+   */
+  public synchronized void log(String message) {
+    log.debug("Job {}: {}", job.getId(), message);
+    buffer.add(
+        JobLogLine.builder()
+            .jobId(job.getId())
+            .seq(nextSeq++)
+            .createdAt(ZonedDateTime.now())
+            .message(message)
+            .build());
+    if (buffer.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes any buffered lines to the database. The lines leave the buffer even if the write fails,
+   * so that a write that keeps failing is not retried, and the buffer does not grow, on every later
+   * flush.
+   */
+  public synchronized void flush() {
+    try {
+      if (!buffer.isEmpty() && jobLogWriter != null) {
+        jobLogWriter.write(List.copyOf(buffer));
+      }
+    } finally {
+      buffer.clear();
+      lastFlushMs = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Writes any buffered lines if the last write was at least {@code flushIntervalMs} before {@code
+   * nowMs}.
+   *
+   * @param nowMs the current time in milliseconds
+   */
+  public synchronized void flushIfStale(long nowMs) {
+    if (nowMs - lastFlushMs >= flushIntervalMs) {
+      flush();
+    }
+  }
+
+  /**
+   * Returns the id of the job this context belongs to.
+   *
+   * @return the job's id
+   */
+  public long getJobId() {
+    return job.getId();
+  }
+
+  /**
+   * Returns whether the job has been cancelled or has timed out. Jobs should stop as soon as they
+   * can once this is true.
+   *
+   * @return true if the job should stop
+   */
+  public boolean isCancelled() {
+    return cancelledStatus != null;
+  }
+
+  /**
+   * Throws if the job has been cancelled or has timed out; a convenient check between the steps of
+   * a long job.
+   *
+   * @throws CancellationException if the job should stop
+   */
+  public void checkCancelled() {
+    if (isCancelled()) {
+      throw new CancellationException("Job %s was %s".formatted(job.getId(), cancelledStatus));
+    }
+  }
+
+  /**
+   * Returns the status the job should end with if it was stopped, i.e. "cancelled" or "timed_out".
+   *
+   * @return the final status, or null if the job was not stopped
+   */
+  public String getCancelledStatus() {
+    return cancelledStatus;
+  }
+
+  /**
+   * Records that the job is running on the current thread, so that {@link #cancel} can interrupt
+   * it.
+   *
+   * @param timeoutMs time after which the job should be stopped (0 for no limit)
+   */
+  synchronized void start(long timeoutMs) {
+    thread = Thread.currentThread();
+    if (timeoutMs > 0) {
+      deadlineMs = System.currentTimeMillis() + timeoutMs;
+    }
+  }
+
+  /**
+   * Records that the job has stopped running, and clears any interrupt that was meant for it so
+   * that it does not leak into the next job to use the thread.
+   */
+  synchronized void finish() {
+    thread = null;
+    Thread.interrupted();
+  }
+
+  /**
+   * Returns whether the job has run past its timeout.
+   *
+   * @param nowMs the current time in milliseconds
+   * @return true if the job's deadline has passed
+   */
+  synchronized boolean isPastDeadline(long nowMs) {
+    return nowMs >= deadlineMs;
+  }
+
+  /**
+   * Asks the job to stop, and interrupts it if it is still running. Only the first call has an
+   * effect.
+   *
+   * @param status the status the job should end with
+   */
+  synchronized void cancel(String status) {
+    if (cancelledStatus != null) {
+      return;
+    }
+    cancelledStatus = status;
+    if (thread != null) {
+      thread.interrupt();
+    }
   }
 }
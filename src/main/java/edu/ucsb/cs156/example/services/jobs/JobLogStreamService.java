@@ -0,0 +1,118 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.models.JobLogTail;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * This service pushes new job log lines to clients over Server-Sent Events.
+ *
+ * <p>Each subscriber keeps its own cursor. On every poll, only the job_log_lines rows past that
+ * cursor are read and sent, one "log" event per line with the line number as the event id (so a
+ * reconnecting client can resume with Last-Event-ID). Once the job has finished, a final "status"
+ * event is sent and the stream is closed.
+ */
+@Slf4j
+@Service
+public class JobLogStreamService {
+
+  @Autowired private JobService jobService;
+
+  @Value("${app.jobs.log.stream-timeout-ms:1800000}")
+  private long streamTimeoutMs;
+
+  private static final Set<String> UNFINISHED_STATUSES = Set.of("pending", "running", "cancelling");
+
+  private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Opens a stream of a job's log, starting at {@code fromLine}. Lines already written are sent
+   * right away.
+   *
+   * @param jobId id of the job
+   * @param fromLine first line to send
+   * @return the emitter for the stream
+   */
+  public SseEmitter subscribe(long jobId, int fromLine) {
+    SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+    Subscription subscription = new Subscription(jobId, emitter, fromLine);
+    emitter.onCompletion(subscription::close);
+    emitter.onTimeout(emitter::complete);
+    subscriptions.add(subscription);
+    push(subscription);
+    return emitter;
+  }
+
+  /** Sends any lines written since the last poll to every open stream. */
+  @Scheduled(fixedDelayString = "${app.jobs.log.stream-poll-ms:500}")
+  public void pushNewLines() {
+    subscriptions.forEach(this::push);
+  }
+
+  /**
+   * Sends the lines written since the subscription's cursor, and closes the stream if the job has
+   * finished.
+   *
+   * @param subscription the stream to update
+   */
+  void push(Subscription subscription) {
+    SseEmitter emitter = subscription.getEmitter();
+    synchronized (subscription) {
+      try {
+        JobLogTail tail = jobService.getJobLogTail(subscription.getJobId(), subscription.nextLine);
+        List<String> lines = tail.getLines();
+        for (int i = 0; i < lines.size(); i++) {
+          emitter.send(
+              SseEmitter.event()
+                  .id(String.valueOf(subscription.nextLine + i))
+                  .name("log")
+                  .data(lines.get(i)));
+        }
+        subscription.nextLine = tail.getNextLine();
+        if (!UNFINISHED_STATUSES.contains(tail.getStatus())) {
+          emitter.send(SseEmitter.event().name("status").data(tail.getStatus()));
+          subscription.close();
+          emitter.complete();
+        }
+      } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+        // IOException: the client went away; IllegalStateException: the emitter already completed
+        // (e.g. timed out); IllegalArgumentException: no such job
+        log.debug("closing log stream for job {}: {}", subscription.getJobId(), e.getMessage());
+        subscription.close();
+        emitter.completeWithError(e);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of open streams.
+   *
+   * @return the number of open streams
+   */
+  public int getSubscriptionCount() {
+    return subscriptions.size();
+  }
+
+  /** An open log stream and the next line it should receive. */
+  @AllArgsConstructor
+  class Subscription {
+    @Getter private final long jobId;
+    @Getter private final SseEmitter emitter;
+    private int nextLine;
+
+    /** Stops polling for this stream. */
+    void close() {
+      subscriptions.remove(this);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service writes job log lines to the job_log_lines table. Lines are written with a single
+ * JDBC batch per call rather than one INSERT round trip per line.
+ */
+@Service
+public class JobLogWriter {
+  static final String INSERT_SQL =
+      "INSERT INTO job_log_lines (job_id, seq, created_at, message) VALUES (?, ?, ?, ?)";
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  /**
+   * Inserts the given lines as one JDBC batch.
+   *
+   * @param lines the lines to insert
+   */
+  public void write(List<JobLogLine> lines) {
+    List<Object[]> batchArgs =
+        lines.stream()
+            .map(
+                line ->
+                    new Object[] {
+                      line.getJobId(),
+                      line.getSeq(),
+                      line.getCreatedAt().toOffsetDateTime(),
+                      line.getMessage()
+                    })
+            .toList();
+    jdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
+  }
+}
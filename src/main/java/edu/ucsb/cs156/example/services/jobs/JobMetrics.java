@@ -0,0 +1,81 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service records how jobs are doing, for the actuator metrics endpoint:
+ *
+ * <ul>
+ *   <li>{@code jobs.queue.wait}: time from a job being created to it starting to run;
+ *   <li>{@code jobs.run}: time from a job starting to it reaching its final status;
+ *   <li>{@code jobs.finished}: number of jobs that reached each final status, including those that
+ *       never ran (e.g. "rejected").
+ * </ul>
+ *
+ * <p>Every meter is tagged with the job's {@code type} (its class, e.g. "TestJob", or "other" for
+ * jobs written as lambdas); {@code jobs.run} and {@code jobs.finished} are also tagged with the
+ * {@code outcome}, i.e. the final status. The timers publish histograms, so percentiles can be
+ * computed across nodes.
+ */
+@Service
+public class JobMetrics {
+
+  /** Type tag for jobs without a named class. */
+  public static final String OTHER_TYPE = "other";
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  /**
+   * Records how long a job waited before it started. Call once startedAt has been set.
+   *
+   * @param job the job that has just started
+   */
+  public void recordStarted(Job job) {
+    if (job.getCreatedAt() == null || job.getStartedAt() == null) {
+      return;
+    }
+    Timer.builder("jobs.queue.wait")
+        .description("Time jobs spend waiting to start")
+        .tag("type", typeTag(job))
+        .publishPercentileHistogram()
+        .register(meterRegistry)
+        .record(Duration.between(job.getCreatedAt(), job.getStartedAt()));
+  }
+
+  /**
+   * Records a job's outcome, and how long it ran if it was started. Call once the job's final
+   * status and finishedAt have been set.
+   *
+   * @param job the job that has just finished
+   */
+  public void recordFinished(Job job) {
+    String type = typeTag(job);
+    String outcome = job.getStatus();
+    Counter.builder("jobs.finished")
+        .description("Jobs that reached a final status")
+        .tag("type", type)
+        .tag("outcome", outcome)
+        .register(meterRegistry)
+        .increment();
+    if (job.getStartedAt() == null || job.getFinishedAt() == null) {
+      return;
+    }
+    Timer.builder("jobs.run")
+        .description("Time jobs spend running")
+        .tag("type", type)
+        .tag("outcome", outcome)
+        .publishPercentileHistogram()
+        .register(meterRegistry)
+        .record(Duration.between(job.getStartedAt(), job.getFinishedAt()));
+  }
+
+  private static String typeTag(Job job) {
+    return job.getJobType() != null ? job.getJobType() : OTHER_TYPE;
+  }
+}
@@ -0,0 +1,142 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobExecutorStatus;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * This service runs jobs from the database-backed queue (enabled with {@code
+ * app.jobs.queue.enabled=true}). Every node runs one, and together they:
+ *
+ * <ul>
+ *   <li>claim "pending" jobs while this node's job executor has room, using {@code SELECT ... FOR
+ *       UPDATE SKIP LOCKED} so that two nodes never claim the same row;
+ *   <li>renew the lease on every job this node is running;
+ *   <li>requeue jobs whose lease has lapsed because the node running them died, or mark them as
+ *       failed once they have been claimed {@code app.jobs.queue.max-attempts} times (or as
+ *       cancelled, if they were being cancelled).
+ * </ul>
+ *
+ * <p>Because a job can be re-run after its node stops renewing, queued jobs may run more than once
+ * and should be safe to repeat.
+ */
+@Slf4j
+@Service
+public class JobQueueWorker {
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobService jobService;
+
+  @Autowired private JobRegistry jobRegistry;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Value("${app.jobs.queue.enabled:false}")
+  private boolean queueEnabled;
+
+  @Value("${app.jobs.queue.lease-ms:60000}")
+  private long leaseMs;
+
+  @Value("${app.jobs.queue.max-attempts:3}")
+  private int maxAttempts;
+
+  /** Identifies this node in the lease_owner column. */
+  @Getter private final String nodeId = UUID.randomUUID().toString();
+
+  /** Claims and starts pending jobs until the queue is empty or this node's executor is full. */
+  @Scheduled(fixedDelayString = "${app.jobs.queue.poll-ms:1000}")
+  public void claimPendingJobs() {
+    if (!queueEnabled) {
+      return;
+    }
+    while (hasFreeCapacity()) {
+      Optional<Job> claimed = transactionTemplate.execute(status -> claimNext());
+      if (claimed.isEmpty()) {
+        return;
+      }
+      start(claimed.get());
+    }
+  }
+
+  /** Extends the lease on every job this node is running. */
+  @Scheduled(fixedDelayString = "${app.jobs.queue.heartbeat-ms:20000}")
+  public void renewLeases() {
+    if (!queueEnabled) {
+      return;
+    }
+    jobsRepository.renewLeases(nodeId, ZonedDateTime.now().plus(Duration.ofMillis(leaseMs)));
+  }
+
+  /** Requeues, or fails, jobs whose node has stopped renewing their lease. */
+  @Scheduled(fixedDelayString = "${app.jobs.queue.reclaim-ms:30000}")
+  public void reclaimExpiredLeases() {
+    if (!queueEnabled) {
+      return;
+    }
+    ZonedDateTime now = ZonedDateTime.now();
+    int requeued = jobsRepository.requeueExpiredLeases(now, maxAttempts);
+    int finished = jobsRepository.finishExpiredLeases(now, maxAttempts);
+    if (requeued + finished > 0) {
+      log.warn("Reclaimed expired job leases: {} requeued, {} finished", requeued, finished);
+    }
+  }
+
+  private boolean hasFreeCapacity() {
+    JobExecutorStatus executor = jobService.getExecutorStatus();
+    return executor.getActive() + executor.getQueued() < executor.getMaxConcurrency();
+  }
+
+  /**
+   * Locks the oldest pending job and marks it as running on this node. Must be called inside a
+   * transaction, so that the row stays locked until the claim is committed.
+   *
+   * @return Optional of the claimed job (empty if no job was waiting)
+   */
+  Optional<Job> claimNext() {
+    Optional<Job> next = jobsRepository.findNextPendingForUpdate();
+    next.ifPresent(
+        job -> {
+          job.setStatus("running");
+          job.setLeaseOwner(nodeId);
+          job.setLeaseExpiresAt(ZonedDateTime.now().plus(Duration.ofMillis(leaseMs)));
+          job.setAttempts(job.getAttempts() + 1);
+          jobsRepository.save(job);
+        });
+    return next;
+  }
+
+  private void start(Job job) {
+    JobContextConsumer jobFunction;
+    try {
+      jobFunction = jobRegistry.create(job.getJobType(), job.getParams());
+    } catch (Exception e) {
+      jobService.finishWithoutRunning(
+          job, "error", "Could not start job of type %s: %s".formatted(job.getJobType(), e));
+      return;
+    }
+
+    try {
+      jobService.runJobAsync(job, jobFunction);
+    } catch (TaskRejectedException e) {
+      // Another caller filled the executor after the capacity check; hand the job back
+      job.setStatus("pending");
+      job.setLeaseOwner(null);
+      job.setLeaseExpiresAt(null);
+      job.setAttempts(job.getAttempts() - 1);
+      jobsRepository.save(job);
+    }
+  }
+}
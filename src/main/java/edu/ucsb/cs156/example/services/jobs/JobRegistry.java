@@ -0,0 +1,97 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import jakarta.annotation.PostConstruct;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service maps job type names to factories that build a {@link JobContextConsumer} from its
+ * stored parameters. It is what lets a job be written to the jobs table on one node and run on
+ * another.
+ *
+ * <p>To make a job class runnable from the queue, register it in {@link #registerJobTypes()}. The
+ * class must round-trip through Jackson (e.g. Lombok's {@code @Builder}, {@code @Jacksonized} and
+ * {@code @Getter}, as on {@link TestJob}).
+ */
+@Service
+public class JobRegistry {
+
+  /** Builds a job from the JSON parameters stored in the jobs table. */
+  @FunctionalInterface
+  public interface JobFactory {
+    JobContextConsumer create(String params) throws Exception;
+  }
+
+  @Autowired private ObjectMapper mapper;
+
+  private final Map<String, JobFactory> factories = new ConcurrentHashMap<>();
+  private final Map<Class<?>, String> typesByClass = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  void registerJobTypes() {
+    register(TestJob.class);
+  }
+
+  /**
+   * Registers a job class under its simple name, with Jackson as the factory.
+   *
+   * @param jobClass the job class
+   */
+  public void register(Class<? extends JobContextConsumer> jobClass) {
+    register(jobClass.getSimpleName(), jobClass, params -> mapper.readValue(params, jobClass));
+  }
+
+  /**
+   * Registers a job type with its own factory.
+   *
+   * @param jobType name stored in the job_type column
+   * @param jobClass class of the jobs the factory builds
+   * @param factory builds a job from its parameters
+   */
+  public void register(
+      String jobType, Class<? extends JobContextConsumer> jobClass, JobFactory factory) {
+    factories.put(jobType, factory);
+    typesByClass.put(jobClass, jobType);
+  }
+
+  /**
+   * Returns the registered type name of a job, if its class has been registered.
+   *
+   * @param job the job
+   * @return Optional of the type name (empty for unregistered classes, e.g. lambdas)
+   */
+  public Optional<String> typeOf(JobContextConsumer job) {
+    return Optional.ofNullable(typesByClass.get(job.getClass()));
+  }
+
+  /**
+   * Serializes a job's parameters to JSON.
+   *
+   * @param job the job
+   * @return the job's parameters as JSON
+   */
+  public String paramsOf(JobContextConsumer job) {
+    return mapper.valueToTree(job).toString();
+  }
+
+  /**
+   * Rebuilds a job from its type name and parameters.
+   *
+   * @param jobType the registered type name
+   * @param params the job's parameters as JSON
+   * @return the job
+   * @throws Exception if the type is unknown or the parameters cannot be read
+   */
+  public JobContextConsumer create(String jobType, String params) throws Exception {
+    JobFactory factory = factories.get(jobType);
+    if (factory == null) {
+      throw new IllegalArgumentException("Unknown job type: %s".formatted(jobType));
+    }
+    return factory.create(params);
+  }
+}
@@ -0,0 +1,83 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.function.IntUnaryOperator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service removes old rows from the jobs table.
+ *
+ * <p>All deletes are set-based and bounded: each statement removes at most {@code batchSize} jobs
+ * (and, through the foreign key, their log lines) in its own transaction, and statements are
+ * repeated until nothing is left to delete. No Job entities are loaded, so the cost does not depend
+ * on the size of the logs.
+ */
+@Slf4j
+@Service
+public class JobRetentionService {
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Value("${app.jobs.retention.max-age-days:30}")
+  private int maxAgeDays;
+
+  @Value("${app.jobs.retention.max-rows:10000}")
+  private int maxRows;
+
+  @Value("${app.jobs.retention.batch-size:1000}")
+  private int batchSize;
+
+  /**
+   * Deletes finished jobs older than {@code app.jobs.retention.max-age-days}, then finished jobs
+   * beyond the newest {@code app.jobs.retention.max-rows}. Either limit can be turned off by
+   * setting it to 0. Pending and running jobs are never deleted.
+   *
+   * @return the number of jobs deleted
+   */
+  @Scheduled(cron = "${app.jobs.retention.cron:0 15 3 * * *}")
+  public long applyRetention() {
+    long deleted = 0;
+    if (maxAgeDays > 0) {
+      ZonedDateTime cutoff = ZonedDateTime.now().minusDays(maxAgeDays);
+      deleted +=
+          deleteInBatches(limit -> jobsRepository.deleteFinishedCreatedBefore(cutoff, limit));
+    }
+    if (maxRows > 0) {
+      Optional<Long> newestToDelete = jobsRepository.findIdWithNewerCount(maxRows);
+      if (newestToDelete.isPresent()) {
+        long maxId = newestToDelete.get();
+        deleted += deleteInBatches(limit -> jobsRepository.deleteFinishedUpTo(maxId, limit));
+      }
+    }
+    if (deleted > 0) {
+      log.info("Job retention deleted {} jobs", deleted);
+    }
+    return deleted;
+  }
+
+  /**
+   * Deletes every finished job. Pending and running jobs are kept; cancel them first to have them
+   * deleted too.
+   *
+   * @return the number of jobs deleted
+   */
+  public long deleteAllJobs() {
+    return deleteInBatches(jobsRepository::deleteFinishedOldest);
+  }
+
+  private long deleteInBatches(IntUnaryOperator deleteBatch) {
+    long total = 0;
+    int deleted;
+    do {
+      deleted = deleteBatch.applyAsInt(batchSize);
+      total += deleted;
+    } while (deleted == batchSize);
+    return total;
+  }
+}
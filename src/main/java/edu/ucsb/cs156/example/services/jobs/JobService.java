@@ -1,53 +1,337 @@
 package edu.ucsb.cs156.example.services.jobs;
 
+import edu.ucsb.cs156.example.config.JobExecutorConfig;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.models.JobExecutorStatus;
+import edu.ucsb.cs156.example.models.JobLogTail;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
+@Slf4j
 @Service
 public class JobService {
+  /** Final status of a job that was stopped by {@link #cancelJob}. */
+  public static final String CANCELLED = "cancelled";
+
+  /** Final status of a job that ran past its timeout. */
+  public static final String TIMED_OUT = "timed_out";
+
   @Autowired private JobsRepository jobsRepository;
 
+  @Autowired private JobLogLinesRepository jobLogLinesRepository;
+
+  @Autowired private JobLogWriter jobLogWriter;
+
   @Autowired private CurrentUserService currentUserService;
 
+  @Autowired private JobRegistry jobRegistry;
+
+  @Autowired private Environment environment;
+
+  @Autowired private JobMetrics jobMetrics;
+
   @Lazy @Autowired private JobService self;
 
+  @Autowired
+  @Qualifier(JobExecutorConfig.JOB_EXECUTOR)
+  private ThreadPoolTaskExecutor jobExecutor;
+
+  @Value("${app.jobs.queue.enabled:false}")
+  private boolean queueEnabled;
+
+  @Value("${app.jobs.log.batch-size:500}")
+  private int logBatchSize;
+
+  @Value("${app.jobs.log.flush-interval-ms:250}")
+  private long logFlushIntervalMs;
+
+  @Value("${app.jobs.timeout-ms.default:0}")
+  private long defaultTimeoutMs;
+
+  @Value("${app.jobs.cancel-timeout-ms:60000}")
+  private long cancelTimeoutMs;
+
+  private final Set<JobContext> runningContexts = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Starts a job. When the database-backed queue is enabled and the job's class is registered in
+   * {@link JobRegistry}, the job is stored as a "pending" row for whichever node's {@link
+   * JobQueueWorker} claims it first. Otherwise it runs on this node's job executor.
+   *
+   * @param jobFunction the job to run
+   * @return the job's row
+   */
   public Job runAsJob(JobContextConsumer jobFunction) {
-    Job job = Job.builder().createdBy(currentUserService.getUser()).status("running").build();
+    Job job =
+        Job.builder()
+            .createdBy(currentUserService.getUser())
+            .status("running")
+            .jobType(jobTypeOf(jobFunction))
+            .build();
+
+    Optional<String> jobType = queueEnabled ? jobRegistry.typeOf(jobFunction) : Optional.empty();
+    if (jobType.isPresent()) {
+      job.setStatus("pending");
+      job.setJobType(jobType.get());
+      job.setParams(jobRegistry.paramsOf(jobFunction));
+      jobsRepository.save(job);
+      return job;
+    }
 
     jobsRepository.save(job);
-    self.runJobAsync(job, jobFunction);
+    try {
+      self.runJobAsync(job, jobFunction);
+    } catch (TaskRejectedException e) {
+      // The job executor's threads and queue are all in use
+      finishWithoutRunning(
+          job, "rejected", "Job rejected: too many jobs are already running or waiting to run");
+    }
 
     return job;
   }
 
-  @Async
+  /**
+   * Gives a job a final status without running it, recording the reason in its log.
+   *
+   * @param job the job
+   * @param status the final status
+   * @param message the reason, appended to the job's log
+   */
+  public void finishWithoutRunning(Job job, String status, String message) {
+    job.setStatus(status);
+    job.setFinishedAt(ZonedDateTime.now());
+    JobContext context = new JobContext(jobLogWriter, job, 1, 0, nextLogLine(job));
+    context.log(message);
+    jobsRepository.save(job);
+    jobMetrics.recordFinished(job);
+  }
+
+  @Async(JobExecutorConfig.JOB_EXECUTOR)
   public void runJobAsync(Job job, JobContextConsumer jobFunction) {
-    JobContext context = new JobContext(jobsRepository, job);
+    JobContext context =
+        new JobContext(jobLogWriter, job, logBatchSize, logFlushIntervalMs, nextLogLine(job));
+    context.start(timeoutMsFor(jobFunction));
+    runningContexts.add(context);
+    job.setStartedAt(ZonedDateTime.now());
+    // Not save(job): merging this copy, read when the job was submitted, would overwrite a cancel
+    // requested while the job was queued
+    jobsRepository.markStarted(job.getId(), job.getStartedAt());
+    jobMetrics.recordStarted(job);
 
+    String status;
     try {
       jobFunction.accept(context);
+      status = "complete";
     } catch (Exception e) {
-      job.setStatus("error");
-      context.log(e.getMessage());
+      status = "error";
+      if (!context.isCancelled()) {
+        context.log(e.getMessage());
+      }
+    } finally {
+      runningContexts.remove(context);
+      context.finish();
+    }
+
+    if (context.isCancelled()) {
+      status = context.getCancelledStatus();
+      context.log(TIMED_OUT.equals(status) ? "Job timed out" : "Job cancelled");
+    }
+    try {
+      context.flush();
+    } catch (RuntimeException e) {
+      // the job's status is written whether or not its last lines could be
+      log.warn("Could not write the last log lines of job {}", job.getId(), e);
+    }
+    job.setStatus(status);
+    job.setFinishedAt(ZonedDateTime.now());
+    int finished =
+        jobsRepository.finishAttempt(
+            job.getId(), job.getLeaseOwner(), job.getAttempts(), status, job.getFinishedAt());
+    if (finished == 0) {
+      log.warn("Job {} was claimed by another node before it finished here", job.getId());
+    }
+    jobMetrics.recordFinished(job);
+  }
+
+  /**
+   * Returns the name of a job's type: the simple name of its class, or null for a job written as a
+   * lambda or anonymous class.
+   *
+   * @param jobFunction the job
+   * @return the job's type, or null if it has none
+   */
+  static String jobTypeOf(JobContextConsumer jobFunction) {
+    Class<?> jobClass = jobFunction.getClass();
+    return jobClass.isSynthetic() || jobClass.isAnonymousClass() ? null : jobClass.getSimpleName();
+  }
+
+  /**
+   * Returns how long a job may run before it is stopped: {@code app.jobs.timeout-ms.<JobClass>} if
+   * set for the job's class, otherwise {@code app.jobs.timeout-ms.default}.
+   *
+   * @param jobFunction the job
+   * @return the timeout in milliseconds (0 for no limit)
+   */
+  long timeoutMsFor(JobContextConsumer jobFunction) {
+    String jobType = jobTypeOf(jobFunction);
+    if (jobType == null) {
+      return defaultTimeoutMs;
+    }
+    return environment.getProperty("app.jobs.timeout-ms." + jobType, Long.class, defaultTimeoutMs);
+  }
+
+  /**
+   * Asks a job to stop. A job running on this node is interrupted right away. Otherwise, a pending
+   * job is marked "cancelled", and a running one is marked "cancelling" so that the node running it
+   * stops it on its next {@link #checkRunningJobs}.
+   *
+   * @param jobId id of the job
+   * @return true if the job was pending or running, false if it had already finished
+   */
+  public boolean cancelJob(long jobId) {
+    for (JobContext context : runningContexts) {
+      if (context.getJobId() == jobId) {
+        context.cancel(CANCELLED);
+        return true;
+      }
+    }
+    return jobsRepository.requestCancel(jobId, ZonedDateTime.now()) > 0;
+  }
+
+  /**
+   * Stops jobs running on this node that have passed their timeout, or that were marked
+   * "cancelling" by a request handled on another node. Jobs without a lease that are still
+   * "cancelling" {@code app.jobs.cancel-timeout-ms} after the request are marked "cancelled", since
+   * the node that was running them is gone.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.cancel-check-ms:1000}")
+  public void checkRunningJobs() {
+    ZonedDateTime checkedAt = ZonedDateTime.now();
+    jobsRepository.finishAbandonedCancels(
+        checkedAt.minus(Duration.ofMillis(cancelTimeoutMs)), checkedAt);
+    if (runningContexts.isEmpty()) {
       return;
     }
+    long now = System.currentTimeMillis();
+    List<Long> ids = runningContexts.stream().map(JobContext::getJobId).toList();
+    Set<Long> cancelling = Set.copyOf(jobsRepository.findCancellingIds(ids));
+    for (JobContext context : runningContexts) {
+      if (cancelling.contains(context.getJobId())) {
+        context.cancel(CANCELLED);
+      } else if (context.isPastDeadline(now)) {
+        context.cancel(TIMED_OUT);
+      }
+    }
+  }
 
-    job.setStatus("complete");
-    jobsRepository.save(job);
+  private int nextLogLine(Job job) {
+    return jobLogLinesRepository
+        .findFirstByJobIdOrderBySeqDesc(job.getId())
+        .map(line -> line.getSeq() + 1)
+        .orElse(0);
   }
 
+  /**
+   * Writes out log lines that running jobs have buffered for longer than the flush interval, so
+   * that a job that logs a line and then goes quiet still has its output visible.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.log.flush-interval-ms:250}")
+  public void flushBufferedLogs() {
+    long now = System.currentTimeMillis();
+    for (JobContext context : runningContexts) {
+      try {
+        context.flushIfStale(now);
+      } catch (RuntimeException e) {
+        // the lines that could not be written are dropped, so other jobs are flushed as usual
+        log.warn("Could not write log lines of job {}", context.getJobId(), e);
+      }
+    }
+  }
+
+  /**
+   * Returns a snapshot of how busy the job executor is.
+   *
+   * @return active, queued and completed job counts, along with the executor's limits
+   */
+  public JobExecutorStatus getExecutorStatus() {
+    ThreadPoolExecutor pool = jobExecutor.getThreadPoolExecutor();
+    return JobExecutorStatus.builder()
+        .maxConcurrency(jobExecutor.getMaxPoolSize())
+        .queueCapacity(jobExecutor.getQueueCapacity())
+        .active(pool.getActiveCount())
+        .queued(pool.getQueue().size())
+        .completed(pool.getCompletedTaskCount())
+        .build();
+  }
+
+  /**
+   * Returns the full log for a job. Jobs written before logs moved to job_log_lines keep their
+   * output in the log column of jobs; that text, if any, comes first.
+   *
+   * @param jobId id of the job
+   * @return the log, one line per log entry
+   */
   public String getJobLogs(Long jobId) {
     Job job =
         jobsRepository
             .findById(jobId)
             .orElseThrow(() -> new IllegalArgumentException("Job not found"));
 
-    String log = job.getLog();
-    return log != null ? log : "";
+    StringJoiner joiner = new StringJoiner("\n");
+    if (job.getLog() != null) {
+      joiner.add(job.getLog());
+    }
+    for (JobLogLine line : jobLogLinesRepository.findByJobIdOrderBySeqAsc(jobId)) {
+      joiner.add(line.getMessage());
+    }
+    return joiner.toString();
+  }
+
+  /**
+   * Returns the lines of a job's log starting at {@code fromLine}, along with the cursor to use for
+   * the next call. Only the new rows of job_log_lines are read; the job's log column is not.
+   *
+   * @param jobId id of the job
+   * @param fromLine first line to return (0 for the whole log)
+   * @return the new lines, the next cursor, and the job's current status
+   */
+  public JobLogTail getJobLogTail(Long jobId, int fromLine) {
+    // Read the status before the lines: a job flushes its last lines before it saves its final
+    // status, so a terminal status here means no lines can be missed below.
+    String status =
+        jobsRepository
+            .findStatusById(jobId)
+            .orElseThrow(() -> new IllegalArgumentException("Job not found"));
+
+    List<JobLogLine> lines =
+        jobLogLinesRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(jobId, fromLine);
+    int nextLine = lines.isEmpty() ? fromLine : lines.get(lines.size() - 1).getSeq() + 1;
+
+    return JobLogTail.builder()
+        .lines(lines.stream().map(JobLogLine::getMessage).toList())
+        .nextLine(nextLine)
+        .status(status)
+        .build();
   }
 }
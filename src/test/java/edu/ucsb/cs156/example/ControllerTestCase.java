@@ -2,6 +2,7 @@ package edu.ucsb.cs156.example;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
 import edu.ucsb.cs156.example.services.wiremock.WiremockService;
@@ -28,6 +29,8 @@ public abstract class ControllerTestCase {
 
   @MockBean WiremockService mockWiremockService;
 
+  @MockBean public TableVersionRepository tableVersionRepository;
+
   protected Map<String, Object> responseToJson(MvcResult result)
       throws UnsupportedEncodingException, JsonProcessingException {
     String responseString = result.getResponse().getContentAsString();
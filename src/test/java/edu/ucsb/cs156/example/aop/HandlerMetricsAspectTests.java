@@ -0,0 +1,95 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.controllers.FrontendProxyController;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Method;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class HandlerMetricsAspectTests {
+
+  static class SampleController {
+    public String allSamples() {
+      return "samples";
+    }
+  }
+
+  private SimpleMeterRegistry meterRegistry;
+  private HandlerMetricsAspect aspect;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    aspect = new HandlerMetricsAspect();
+    ReflectionTestUtils.setField(aspect, "meterRegistry", meterRegistry);
+  }
+
+  private static ProceedingJoinPoint joinPoint(Method method) {
+    ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+    MethodSignature signature = mock(MethodSignature.class);
+    when(joinPoint.getSignature()).thenReturn(signature);
+    when(signature.getMethod()).thenReturn(method);
+    return joinPoint;
+  }
+
+  private Timer timer() {
+    return meterRegistry
+        .find(HandlerMetricsAspect.METRIC_NAME)
+        .tags("controller", "SampleController", "method", "allSamples")
+        .timer();
+  }
+
+  @Test
+  public void timeControllers_records_one_timer_per_handler() throws Throwable {
+    // arrange
+    ProceedingJoinPoint joinPoint = joinPoint(SampleController.class.getMethod("allSamples"));
+    when(joinPoint.proceed()).thenReturn("samples");
+
+    // act
+    Object first = aspect.timeControllers(joinPoint);
+    Object second = aspect.timeControllers(joinPoint);
+
+    // assert
+    assertEquals("samples", first);
+    assertEquals("samples", second);
+    assertEquals(2, timer().count());
+    assertEquals(1, meterRegistry.find(HandlerMetricsAspect.METRIC_NAME).timers().size());
+  }
+
+  @Test
+  public void timeControllers_records_handlers_that_throw() throws Throwable {
+    // arrange
+    ProceedingJoinPoint joinPoint = joinPoint(SampleController.class.getMethod("allSamples"));
+    when(joinPoint.proceed()).thenThrow(new IllegalStateException("boom"));
+
+    // act
+    assertThrows(IllegalStateException.class, () -> aspect.timeControllers(joinPoint));
+
+    // assert
+    assertEquals(1, timer().count());
+  }
+
+  @Test
+  public void timeControllers_skips_stoplisted_controllers() throws Throwable {
+    // arrange
+    ProceedingJoinPoint joinPoint = joinPoint(FrontendProxyController.class.getMethod("proxy"));
+    when(joinPoint.proceed()).thenReturn("frontend");
+
+    // act
+    Object result = aspect.timeControllers(joinPoint);
+
+    // assert
+    assertEquals("frontend", result);
+    assertTrue(meterRegistry.find(HandlerMetricsAspect.METRIC_NAME).timers().isEmpty());
+  }
+}
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+public class JobExecutorConfigTests {
+
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(TaskExecutionAutoConfiguration.class))
+          .withUserConfiguration(JobExecutorConfig.class);
+
+  @Test
+  public void defines_both_the_job_executor_and_the_application_task_executor() {
+    contextRunner
+        .withPropertyValues(
+            "app.jobs.executor.max-concurrency=2", "spring.task.execution.pool.max-size=16")
+        .run(
+            context -> {
+              // assert
+              ThreadPoolTaskExecutor jobExecutor =
+                  context.getBean(JobExecutorConfig.JOB_EXECUTOR, ThreadPoolTaskExecutor.class);
+              ThreadPoolTaskExecutor applicationTaskExecutor =
+                  context.getBean(
+                      TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+                      ThreadPoolTaskExecutor.class);
+              assertThat(jobExecutor).isNotSameAs(applicationTaskExecutor);
+              assertThat(jobExecutor.getMaxPoolSize()).isEqualTo(2);
+              assertThat(applicationTaskExecutor.getMaxPoolSize()).isEqualTo(16);
+              assertThat(context.getBean("taskExecutor")).isSameAs(applicationTaskExecutor);
+            });
+  }
+}
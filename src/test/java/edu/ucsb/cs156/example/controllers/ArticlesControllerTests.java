@@ -1,8 +1,11 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -15,19 +18,27 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -156,7 +167,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
     ArrayList<Articles> expectedArticles = new ArrayList<>();
     expectedArticles.addAll(Arrays.asList(article1, article2));
 
-    when(articlesRepository.findAll()).thenReturn(expectedArticles);
+    when(articlesRepository.findFirstPage(PageRequest.of(0, 101))).thenReturn(expectedArticles);
 
     // act
     MvcResult response =
@@ -164,12 +175,80 @@ public class ArticlesControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(articlesRepository, times(1)).findAll();
-    String expectedJson = mapper.writeValueAsString(expectedArticles);
+    verify(articlesRepository, times(1)).findFirstPage(PageRequest.of(0, 101));
+    CursorPage<Articles> expectedPage =
+        CursorPage.<Articles>builder().items(expectedArticles).next(null).build();
+    String expectedJson = mapper.writeValueAsString(expectedPage);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_page_through_articles() throws Exception {
+
+    // arrange
+    Articles article8 = Articles.builder().id(8L).title("Eighth").build();
+    Articles article9 = Articles.builder().id(9L).title("Ninth").build();
+    Articles article10 = Articles.builder().id(10L).title("Tenth").build();
+
+    when(articlesRepository.findPageAfter(7L, PageRequest.of(0, 3)))
+        .thenReturn(new ArrayList<>(Arrays.asList(article8, article9, article10)));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                get("/api/articles/all")
+                    .param("limit", "2")
+                    .param("after", ApiController.encodeCursor(7L)))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(articlesRepository, times(1)).findPageAfter(7L, PageRequest.of(0, 3));
+    CursorPage<Articles> expectedPage =
+        CursorPage.<Articles>builder()
+            .items(Arrays.asList(article8, article9))
+            .next(ApiController.encodeCursor(9L))
+            .build();
+    String expectedJson = mapper.writeValueAsString(expectedPage);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void article_page_size_is_capped() throws Exception {
+
+    // act
+    mockMvc.perform(get("/api/articles/all").param("limit", "100000")).andExpect(status().isOk());
+    mockMvc.perform(get("/api/articles/all").param("limit", "0")).andExpect(status().isOk());
+
+    // assert
+    verify(articlesRepository, times(1)).findFirstPage(PageRequest.of(0, 1001));
+    verify(articlesRepository, times(1)).findFirstPage(PageRequest.of(0, 2));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void article_page_rejects_a_cursor_it_did_not_hand_out() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/articles/all").param("after", "not-a-cursor"))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    verify(articlesRepository, never()).findPageAfter(any(), any());
+    verify(articlesRepository, never()).findFirstPage(any());
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("InvalidCursorException", json.get("type"));
+    assertEquals("Invalid cursor not-a-cursor", json.get("message"));
+  }
+
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void an_admin_user_can_post_a_new_article() throws Exception {
@@ -199,6 +278,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
 
     // assert
     verify(articlesRepository, times(1)).save(article1);
+    verify(tableVersionRepository, times(1)).bump(eq("articles"), any());
     String expectedJson = mapper.writeValueAsString(article1);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -232,6 +312,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
     // assert
     verify(articlesRepository, times(1)).findById(15L);
     verify(articlesRepository, times(1)).delete(any());
+    verify(tableVersionRepository, times(1)).bump(eq("articles"), any());
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("Articles with id 15 deleted", json.get("message"));
@@ -254,6 +335,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
 
     // assert
     verify(articlesRepository, times(1)).findById(15L);
+    verify(tableVersionRepository, never()).bump(any(), any());
     Map<String, Object> json = responseToJson(response);
     assertEquals("Articles with id 15 not found", json.get("message"));
   }
@@ -287,6 +369,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
     String requestBody = mapper.writeValueAsString(articlesEdited);
 
     when(articlesRepository.findById(eq(67L))).thenReturn(Optional.of(articlesOrig));
+    when(articlesRepository.save(articlesEdited)).thenReturn(articlesEdited);
 
     // act
     MvcResult response =
@@ -303,6 +386,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
     // assert
     verify(articlesRepository, times(1)).findById(67L);
     verify(articlesRepository, times(1)).save(articlesEdited); // should be saved with correct user
+    verify(tableVersionRepository, times(1)).bump(eq("articles"), any());
     String responseString = response.getResponse().getContentAsString();
     assertEquals(requestBody, responseString);
   }
@@ -344,4 +428,362 @@ public class ArticlesControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("Articles with id 67 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_stream_all_articles() throws Exception {
+
+    // arrange
+    Articles first = Articles.builder().id(1L).title("First").build();
+    Articles second = Articles.builder().id(2L).title("Second").build();
+
+    when(articlesRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/articles/all/stream")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(List.of(first, second));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_post_a_batch() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/articles/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]")
+                .with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch_of_articles() throws Exception {
+    // arrange
+    Articles first = Articles.builder().title("First").build();
+    Articles firstWithId = Articles.builder().id(17L).title("First").build();
+    Articles second = Articles.builder().title("Second").build();
+    Articles firstSaved = Articles.builder().id(1L).title("First").build();
+    Articles secondSaved = Articles.builder().id(2L).title("Second").build();
+
+    when(articlesRepository.saveAll(List.of(first, second)))
+        .thenReturn(List.of(firstSaved, secondSaved));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/articles/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(List.of(firstWithId, second)))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    // the id given for the first one is ignored
+    verify(articlesRepository, times(1)).saveAll(List.of(first, second));
+    String expectedJson = mapper.writeValueAsString(List.of(firstSaved, secondSaved));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void get_by_id_sends_the_version_as_the_etag() throws Exception {
+    // arrange
+    Articles article = Articles.builder().id(7L).title("First").version(2L).build();
+    when(articlesRepository.findById(eq(7L))).thenReturn(Optional.of(article));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/articles?id=7")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals("\"2\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+    String expectedJson = mapper.writeValueAsString(article);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_an_article_at_the_version_it_read() throws Exception {
+    // arrange
+    Articles incoming = Articles.builder().title("New title").build();
+    Articles updated = Articles.builder().id(67L).title("New title").version(4L).build();
+
+    when(articlesRepository.updateIfVersion(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/articles?id=67")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(articlesRepository, times(1)).updateIfVersion(eq(67L), eq(3L), any());
+    verify(articlesRepository, never()).findById(any());
+    assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+    String expectedJson = mapper.writeValueAsString(updated);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_cannot_edit_an_article_changed_since_it_was_read() throws Exception {
+    // arrange
+    Articles incoming = Articles.builder().title("New title").build();
+
+    when(articlesRepository.updateIfVersion(eq(67L), eq(3L), any())).thenReturn(0);
+    when(articlesRepository.existsById(67L)).thenReturn(true);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/articles?id=67")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isPreconditionFailed())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("StaleVersionException", json.get("type"));
+    assertEquals("Articles with id 67 has been changed since it was read", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_cannot_edit_a_missing_article_at_a_version() throws Exception {
+    // arrange
+    Articles incoming = Articles.builder().title("New title").build();
+
+    when(articlesRepository.updateIfVersion(eq(67L), eq(3L), any())).thenReturn(0);
+    when(articlesRepository.existsById(67L)).thenReturn(false);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/articles?id=67")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("EntityNotFoundException", json.get("type"));
+    assertEquals("Articles with id 67 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_etag_that_was_not_handed_out_matches_no_version() throws Exception {
+    // arrange
+    Articles incoming = Articles.builder().title("New title").build();
+
+    when(articlesRepository.updateIfVersion(eq(67L), eq(-1L), any())).thenReturn(0);
+    when(articlesRepository.existsById(67L)).thenReturn(true);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/articles?id=67")
+                    .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isPreconditionFailed())
+            .andReturn();
+
+    // assert
+    verify(articlesRepository, times(1)).updateIfVersion(eq(67L), eq(-1L), any());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void if_match_star_edits_whatever_version_is_current() throws Exception {
+    // arrange
+    Articles orig = Articles.builder().id(67L).title("Old title").version(4L).build();
+    Articles incoming = Articles.builder().title("New title").build();
+    Articles edited = Articles.builder().id(67L).title("New title").version(4L).build();
+    Articles saved = Articles.builder().id(67L).title("New title").version(5L).build();
+
+    when(articlesRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+    when(articlesRepository.save(edited)).thenReturn(saved);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/articles?id=67")
+                    .header(HttpHeaders.IF_MATCH, "*")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(articlesRepository, never()).updateIfVersion(anyLong(), anyLong(), any());
+    verify(articlesRepository, times(1)).save(edited);
+    assertEquals("\"5\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_unconditional_edit_that_loses_a_race_is_a_conflict() throws Exception {
+    // arrange
+    Articles orig = Articles.builder().id(67L).title("Old title").version(4L).build();
+    Articles incoming = Articles.builder().title("New title").build();
+
+    when(articlesRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+    when(articlesRepository.save(any()))
+        .thenThrow(new ObjectOptimisticLockingFailureException(Articles.class, 67L));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/articles?id=67")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isConflict())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("ObjectOptimisticLockingFailureException", json.get("type"));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void article_list_is_tagged_with_the_table_version() throws Exception {
+    // arrange
+    ZonedDateTime updatedAt = ZonedDateTime.parse("2025-10-01T12:00:00Z");
+    when(tableVersionRepository.findById("articles"))
+        .thenReturn(
+            Optional.of(
+                TableVersion.builder()
+                    .tableName("articles")
+                    .version(5)
+                    .updatedAt(updatedAt)
+                    .build()));
+    when(articlesRepository.findFirstPage(PageRequest.of(0, 101))).thenReturn(new ArrayList<>());
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/articles/all").header(HttpHeaders.IF_NONE_MATCH, "\"4\""))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals("\"5\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+    assertNull(response.getResponse().getHeader(HttpHeaders.LAST_MODIFIED));
+    verify(articlesRepository, times(1)).findFirstPage(PageRequest.of(0, 101));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void article_list_is_not_modified_when_the_table_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionRepository.findById("articles"))
+        .thenReturn(Optional.of(TableVersion.builder().tableName("articles").version(5).build()));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/articles/all").header(HttpHeaders.IF_NONE_MATCH, "\"5\""))
+            .andExpect(status().isNotModified())
+            .andReturn();
+
+    // assert
+    assertEquals("", response.getResponse().getContentAsString());
+    verify(articlesRepository, never()).findPageAfter(any(), any());
+    verify(articlesRepository, never()).findFirstPage(any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void get_by_id_is_not_modified_when_the_version_matches() throws Exception {
+    // arrange
+    when(articlesRepository.findVersionById(7L)).thenReturn(Optional.of(2L));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/articles?id=7").header(HttpHeaders.IF_NONE_MATCH, "\"1\", \"2\""))
+            .andExpect(status().isNotModified())
+            .andReturn();
+
+    // assert
+    assertEquals("\"2\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+    verify(articlesRepository, never()).findById(any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void get_by_id_sends_the_article_when_the_version_has_changed() throws Exception {
+    // arrange
+    Articles article = Articles.builder().id(7L).title("First").version(3L).build();
+    when(articlesRepository.findVersionById(7L)).thenReturn(Optional.of(3L));
+    when(articlesRepository.findById(eq(7L))).thenReturn(Optional.of(article));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/articles?id=7").header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(List.of("\"3\""), response.getResponse().getHeaders(HttpHeaders.ETAG));
+    String expectedJson = mapper.writeValueAsString(article);
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void conditional_get_of_a_missing_article_is_not_found() throws Exception {
+    // arrange
+    when(articlesRepository.findVersionById(7L)).thenReturn(Optional.empty());
+    when(articlesRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+    // act
+    mockMvc
+        .perform(get("/api/articles?id=7").header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+        .andExpect(status().isNotFound());
+
+    // assert
+    verify(articlesRepository, times(1)).findById(7L);
+  }
 }
@@ -0,0 +1,9 @@
+package edu.ucsb.cs156.example.controllers;
+
+/** This class is used to test that HandlerMetricsAspect skips the stoplisted frontend proxy */
+public class FrontendProxyController {
+
+  public String proxy() {
+    return "frontend";
+  }
+}
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example.controllers;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -15,18 +16,25 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.models.CursorPage;
+import edu.ucsb.cs156.example.models.RowCount;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -161,7 +169,7 @@ public class HelpRequestControllerTests extends ControllerTestCase {
     ArrayList<HelpRequest> expectedRequests = new ArrayList<>();
     expectedRequests.addAll(Arrays.asList(helpRequest1, helpRequest2));
 
-    when(helpRequestRepository.findAll()).thenReturn(expectedRequests);
+    when(helpRequestRepository.findFirstPage(PageRequest.of(0, 101))).thenReturn(expectedRequests);
 
     // act
     MvcResult response =
@@ -169,8 +177,10 @@ public class HelpRequestControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(helpRequestRepository, times(1)).findAll();
-    String expectedJson = mapper.writeValueAsString(expectedRequests);
+    verify(helpRequestRepository, times(1)).findFirstPage(PageRequest.of(0, 101));
+    CursorPage<HelpRequest> expectedPage =
+        CursorPage.<HelpRequest>builder().items(expectedRequests).next(null).build();
+    String expectedJson = mapper.writeValueAsString(expectedPage);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
@@ -205,6 +215,7 @@ public class HelpRequestControllerTests extends ControllerTestCase {
 
     // assert
     verify(helpRequestRepository, times(1)).save(helpRequest1);
+    verify(tableVersionRepository, times(1)).bump(eq("helprequests"), any());
     String expectedJson = mapper.writeValueAsString(helpRequest1);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -276,6 +287,7 @@ public class HelpRequestControllerTests extends ControllerTestCase {
     String requestBody = mapper.writeValueAsString(helpRequestEdited);
 
     when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.of(helpRequestOrig));
+    when(helpRequestRepository.save(helpRequestEdited)).thenReturn(helpRequestEdited);
 
     // act
     MvcResult response =
@@ -390,4 +402,149 @@ public class HelpRequestControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("HelpRequest with id 15 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_stream_all_help_requests() throws Exception {
+
+    // arrange
+    HelpRequest first = HelpRequest.builder().id(1L).teamId("team01").build();
+    HelpRequest second = HelpRequest.builder().id(2L).teamId("team02").build();
+
+    when(helpRequestRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/HelpRequest/all/stream")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(List.of(first, second));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch_of_help_requests() throws Exception {
+    // arrange
+    HelpRequest first = HelpRequest.builder().teamId("team01").build();
+    HelpRequest firstWithId = HelpRequest.builder().id(17L).teamId("team01").build();
+    HelpRequest second = HelpRequest.builder().teamId("team02").build();
+    HelpRequest firstSaved = HelpRequest.builder().id(1L).teamId("team01").build();
+    HelpRequest secondSaved = HelpRequest.builder().id(2L).teamId("team02").build();
+
+    when(helpRequestRepository.saveAll(List.of(first, second)))
+        .thenReturn(List.of(firstSaved, secondSaved));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/HelpRequest/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(List.of(firstWithId, second)))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    // the id given for the first one is ignored
+    verify(helpRequestRepository, times(1)).saveAll(List.of(first, second));
+    String expectedJson = mapper.writeValueAsString(List.of(firstSaved, secondSaved));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_mark_a_team_solved() throws Exception {
+    mockMvc
+        .perform(put("/api/HelpRequest/solved?teamId=team01").with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_mark_every_help_request_from_a_team_solved() throws Exception {
+    // arrange
+    when(helpRequestRepository.updateSolvedByTeamId("team01", true)).thenReturn(3);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(put("/api/HelpRequest/solved?teamId=team01").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(helpRequestRepository, times(1)).updateSolvedByTeamId("team01", true);
+    String expectedJson = mapper.writeValueAsString(RowCount.builder().count(3).build());
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_help_request_at_the_version_it_read() throws Exception {
+    // arrange
+    HelpRequest incoming = HelpRequest.builder().teamId("team01").build();
+    HelpRequest updated = HelpRequest.builder().id(67L).teamId("team01").version(4L).build();
+
+    when(helpRequestRepository.updateIfVersion(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/HelpRequest?id=67")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(helpRequestRepository, times(1)).updateIfVersion(eq(67L), eq(3L), any());
+    verify(helpRequestRepository, never()).findById(any());
+    assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+    String expectedJson = mapper.writeValueAsString(updated);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void help_request_list_is_not_modified_when_the_table_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionRepository.findById("helprequests"))
+        .thenReturn(
+            Optional.of(TableVersion.builder().tableName("helprequests").version(5).build()));
+
+    // act
+    mockMvc
+        .perform(get("/api/HelpRequest/all").header(HttpHeaders.IF_NONE_MATCH, "\"5\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(helpRequestRepository, never()).findPageAfter(any(), any());
+    verify(helpRequestRepository, never()).findFirstPage(any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void help_request_get_by_id_is_not_modified_when_the_version_matches() throws Exception {
+    // arrange
+    when(helpRequestRepository.findVersionById(7L)).thenReturn(Optional.of(2L));
+
+    // act
+    mockMvc
+        .perform(get("/api/HelpRequest?id=7").header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(helpRequestRepository, never()).findById(any());
+  }
 }
@@ -3,10 +3,14 @@ package edu.ucsb.cs156.example.controllers;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -15,69 +19,182 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.config.JobExecutorConfig;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
 import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobLogStreamService;
+import edu.ucsb.cs156.example.services.jobs.JobLogWriter;
+import edu.ucsb.cs156.example.services.jobs.JobMetrics;
+import edu.ucsb.cs156.example.services.jobs.JobRegistry;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionService;
 import edu.ucsb.cs156.example.services.jobs.JobService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Slf4j
 @WebMvcTest(controllers = JobsController.class)
-@Import(JobService.class)
+@Import({
+  JobService.class,
+  JobRegistry.class,
+  JobRetentionService.class,
+  JobMetrics.class,
+  JobExecutorConfig.class,
+  SimpleMeterRegistry.class
+})
 @AutoConfigureDataJpa
 public class JobsControllerTests extends ControllerTestCase {
 
   @MockitoBean JobsRepository jobsRepository;
 
+  @MockitoBean JobLogLinesRepository jobLogLinesRepository;
+
+  @MockitoBean JobLogWriter jobLogWriter;
+
+  @MockitoBean JobLogStreamService jobLogStreamService;
+
   @MockitoBean UserRepository userRepository;
 
   @Autowired JobService jobService;
 
   @Autowired ObjectMapper objectMapper;
 
+  @Autowired MeterRegistry meterRegistry;
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
-  public void admin_can_get_all_jobs() throws Exception {
+  public void admin_can_get_last_page_of_jobs() throws Exception {
 
     // arrange
 
-    Job job1 = Job.builder().log("this is job 1").build();
-    Job job2 = Job.builder().log("this is job 2").build();
-
-    ArrayList<Job> expectedJobs = new ArrayList<>();
-    expectedJobs.addAll(Arrays.asList(job1, job2));
+    JobSummary job2 = JobSummary.builder().id(2L).status("complete").build();
+    JobSummary job1 = JobSummary.builder().id(1L).status("error").build();
 
-    when(jobsRepository.findAll()).thenReturn(expectedJobs);
+    when(jobsRepository.findSummaries(null, null, null, null, null, PageRequest.of(0, 51)))
+        .thenReturn(new ArrayList<>(List.of(job2, job1)));
 
     // act
+
     MvcResult response =
         mockMvc.perform(get("/api/jobs/all")).andExpect(status().isOk()).andReturn();
 
     // assert
 
-    verify(jobsRepository, atLeastOnce()).findAll();
-    String expectedJson = mapper.writeValueAsString(expectedJobs);
+    KeysetPage<JobSummary> expected =
+        KeysetPage.<JobSummary>builder().items(List.of(job2, job1)).next(null).build();
+    String expectedJson = mapper.writeValueAsString(expected);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_page_and_filter_jobs() throws Exception {
+
+    // arrange
+
+    ZonedDateTime from = ZonedDateTime.parse("2025-10-01T00:00:00Z");
+    ZonedDateTime to = ZonedDateTime.parse("2025-11-01T00:00:00Z");
+    JobSummary job9 = JobSummary.builder().id(9L).createdById(3L).status("complete").build();
+    JobSummary job8 = JobSummary.builder().id(8L).createdById(3L).status("complete").build();
+    JobSummary job7 = JobSummary.builder().id(7L).createdById(3L).status("complete").build();
+
+    when(jobsRepository.findSummaries(
+            eq(10L), eq("complete"), eq(3L), any(), any(), eq(PageRequest.of(0, 3))))
+        .thenReturn(new ArrayList<>(List.of(job9, job8, job7)));
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(
+                get("/api/jobs/all")
+                    .param("limit", "2")
+                    .param("after", "10")
+                    .param("status", "complete")
+                    .param("createdById", "3")
+                    .param("createdFrom", "2025-10-01T00:00:00Z")
+                    .param("createdTo", "2025-11-01T00:00:00Z"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    ArgumentCaptor<ZonedDateTime> fromCaptor = ArgumentCaptor.forClass(ZonedDateTime.class);
+    ArgumentCaptor<ZonedDateTime> toCaptor = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository, times(1))
+        .findSummaries(
+            eq(10L),
+            eq("complete"),
+            eq(3L),
+            fromCaptor.capture(),
+            toCaptor.capture(),
+            eq(PageRequest.of(0, 3)));
+    assertTrue(from.isEqual(fromCaptor.getValue()));
+    assertTrue(to.isEqual(toCaptor.getValue()));
+
+    KeysetPage<JobSummary> expected =
+        KeysetPage.<JobSummary>builder().items(List.of(job9, job8)).next(8L).build();
+    String expectedJson = mapper.writeValueAsString(expected);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void job_page_size_is_capped() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.findSummaries(any(), any(), any(), any(), any(), any()))
+        .thenReturn(new ArrayList<>());
+
+    // act
+
+    mockMvc.perform(get("/api/jobs/all").param("limit", "100000")).andExpect(status().isOk());
+    mockMvc.perform(get("/api/jobs/all").param("limit", "0")).andExpect(status().isOk());
+
+    // assert
+
+    verify(jobsRepository, times(1))
+        .findSummaries(null, null, null, null, null, PageRequest.of(0, 501));
+    verify(jobsRepository, times(1))
+        .findSummaries(null, null, null, null, null, PageRequest.of(0, 2));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_user_cannot_get_all_jobs() throws Exception {
+    mockMvc.perform(get("/api/jobs/all")).andExpect(status().is(403));
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void api_getJobLogById__admin_logged_in__returns_job_by_id() throws Exception {
@@ -123,11 +240,108 @@ public class JobsControllerTests extends ControllerTestCase {
     assertEquals("Job with id 2 not found", json.get("message"));
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_cancel_job() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.existsById(3L)).thenReturn(true);
+    when(jobsRepository.requestCancel(eq(3L), any())).thenReturn(1);
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/3/cancel").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(jobsRepository, times(1)).requestCancel(eq(3L), any());
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job with id 3 is being cancelled", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void cancelling_finished_job_does_nothing() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.existsById(3L)).thenReturn(true);
+    when(jobsRepository.requestCancel(eq(3L), any())).thenReturn(0);
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/3/cancel").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job with id 3 has already finished", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void cancelling_missing_job_returns_not_found() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.existsById(4L)).thenReturn(false);
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/4/cancel").with(csrf()))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
+
+    verify(jobsRepository, never()).requestCancel(eq(4L), any());
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job with id 4 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_user_cannot_cancel_job() throws Exception {
+    mockMvc.perform(post("/api/jobs/3/cancel").with(csrf())).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_executor_status() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/executor")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(4, json.get("maxConcurrency"));
+    assertEquals(100, json.get("queueCapacity"));
+    assertEquals(0, json.get("queued"));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_user_cannot_get_executor_status() throws Exception {
+    mockMvc.perform(get("/api/jobs/executor")).andExpect(status().is(403));
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void admin_can_delete_all_jobs() throws Exception {
 
-    doNothing().when(jobsRepository).deleteAll();
+    when(jobsRepository.deleteFinishedOldest(1000)).thenReturn(1000).thenReturn(3);
 
     // act
     MvcResult response =
@@ -138,8 +352,11 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, times(1)).deleteAll();
-    String expectedJson = mapper.writeValueAsString(Map.of("message", "All jobs deleted"));
+    verify(jobsRepository, times(2)).deleteFinishedOldest(1000);
+    verify(jobsRepository, never()).deleteAll();
+    verify(jobsRepository, never()).findAll();
+    String expectedJson =
+        mapper.writeValueAsString(Map.of("message", "All finished jobs deleted (1003)"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
@@ -177,6 +394,71 @@ public class JobsControllerTests extends ControllerTestCase {
         .andExpect(content().string(""));
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_tail_job_log_from_a_line() throws Exception {
+    // Arrange
+    when(jobsRepository.findStatusById(1L)).thenReturn(Optional.of("running"));
+    when(jobLogLinesRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(1L, 3))
+        .thenReturn(List.of(JobLogLine.builder().jobId(1L).seq(3).message("line 3").build()));
+
+    // Act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}/tail?fromLine=3", 1L))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // Assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(List.of("line 3"), json.get("lines"));
+    assertEquals(4, json.get("nextLine"));
+    assertEquals("running", json.get("status"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_tail_job_log_from_start_by_default() throws Exception {
+    // Arrange
+    when(jobsRepository.findStatusById(1L)).thenReturn(Optional.of("complete"));
+
+    // Act & Assert
+    mockMvc.perform(get("/api/jobs/logs/{id}/tail", 1L)).andExpect(status().isOk());
+    verify(jobLogLinesRepository, times(1)).findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(1L, 0);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_stream_job_log() throws Exception {
+    // Arrange
+    when(jobLogStreamService.subscribe(1L, 2)).thenReturn(new SseEmitter());
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}/stream?fromLine=2", 1L))
+        .andExpect(request().asyncStarted());
+    verify(jobLogStreamService, times(1)).subscribe(1L, 2);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void stream_resumes_after_last_event_id() throws Exception {
+    // Arrange
+    when(jobLogStreamService.subscribe(1L, 5)).thenReturn(new SseEmitter());
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}/stream", 1L).header("Last-Event-ID", "4"))
+        .andExpect(request().asyncStarted());
+    verify(jobLogStreamService, times(1)).subscribe(1L, 5);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_user_cannot_stream_job_log() throws Exception {
+    mockMvc.perform(get("/api/jobs/logs/{id}/stream", 1L)).andExpect(status().is(403));
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void admin_can_delete_specific_job() throws Exception {
@@ -184,7 +466,7 @@ public class JobsControllerTests extends ControllerTestCase {
     // arrange
 
     when(jobsRepository.existsById(eq(1L))).thenReturn(true);
-    doNothing().when(jobsRepository).deleteById(eq(1L));
+    when(jobsRepository.deleteFinishedById(1L)).thenReturn(1);
 
     // act
     MvcResult response =
@@ -195,12 +477,39 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, times(1)).deleteById(eq(1L));
+    verify(jobsRepository, times(1)).deleteFinishedById(1L);
+    verify(jobsRepository, never()).deleteById(anyLong());
     String expectedJson = mapper.writeValueAsString(Map.of("message", "Job with id 1 deleted"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_cannot_delete_a_job_that_has_not_finished() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.existsById(eq(1L))).thenReturn(true);
+    when(jobsRepository.deleteFinishedById(1L)).thenReturn(0);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(delete("/api/jobs?id=1").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(jobsRepository, never()).deleteById(anyLong());
+    String expectedJson =
+        mapper.writeValueAsString(
+            Map.of("message", "Job with id 1 has not finished; cancel it first"));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void admin_gets_reasonable_error_when_deleting_non_existing_job() throws Exception {
@@ -239,7 +548,6 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdAt(null)
             .updatedAt(null)
             .status("running")
-            .log("Hello World! from test job!")
             .build();
 
     Job jobCompleted =
@@ -249,7 +557,6 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdAt(null)
             .updatedAt(null)
             .status("complete")
-            .log("Hello World! from test job!\nGoodbye from test job!")
             .build();
 
     when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobCompleted);
@@ -267,12 +574,38 @@ public class JobsControllerTests extends ControllerTestCase {
 
     assertEquals("running", jobReturned.getStatus());
 
-    await()
-        .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+    // timing the run is the last thing the job does
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(4)).save(eq(jobCompleted)));
+        .until(() -> meterRegistry.find("jobs.run").tag("outcome", "complete").timer() != null);
+
+    // saved when launched; the start time and the final status are written on their own
+    ArgumentCaptor<Job> saved = ArgumentCaptor.forClass(Job.class);
+    verify(jobsRepository, times(1)).save(saved.capture());
+    verify(jobsRepository, times(1)).markStarted(eq(0L), any());
+    verify(jobsRepository, times(1)).finishAttempt(eq(0L), any(), anyInt(), eq("complete"), any());
+    assertEquals("TestJob", saved.getValue().getJobType());
+    assertNotNull(saved.getValue().getStartedAt());
+    assertNotNull(saved.getValue().getFinishedAt());
+    assertEquals(
+        1.0,
+        meterRegistry
+            .get("jobs.finished")
+            .tag("type", "TestJob")
+            .tag("outcome", "complete")
+            .counter()
+            .count());
+    assertEquals(
+        1L,
+        meterRegistry
+            .get("jobs.run")
+            .tag("type", "TestJob")
+            .tag("outcome", "complete")
+            .timer()
+            .count());
+
+    assertEquals(
+        List.of("Hello World! from test job!", "Goodbye from test job!"), writtenLogMessages());
   }
 
   @WithMockUser(roles = {"ADMIN"})
@@ -290,7 +623,6 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdAt(null)
             .updatedAt(null)
             .status("running")
-            .log("Hello World! from test job!")
             .build();
 
     Job jobFailed =
@@ -300,7 +632,6 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdAt(null)
             .updatedAt(null)
             .status("error")
-            .log("Hello World! from test job!\nFail!")
             .build();
 
     when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobFailed);
@@ -317,12 +648,50 @@ public class JobsControllerTests extends ControllerTestCase {
 
     assertEquals("running", jobReturned.getStatus());
 
-    await()
-        .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
-
+    // timing the run is the last thing the job does
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(3)).save(eq(jobFailed)));
+        .until(() -> meterRegistry.find("jobs.run").tag("outcome", "error").timer() != null);
+
+    // saved when launched; the start time and the final status are written on their own
+    ArgumentCaptor<Job> saved = ArgumentCaptor.forClass(Job.class);
+    verify(jobsRepository, times(1)).save(saved.capture());
+    verify(jobsRepository, times(1)).markStarted(eq(0L), any());
+    verify(jobsRepository, times(1)).finishAttempt(eq(0L), any(), anyInt(), eq("error"), any());
+    assertEquals("TestJob", saved.getValue().getJobType());
+    assertNotNull(saved.getValue().getStartedAt());
+    assertNotNull(saved.getValue().getFinishedAt());
+    assertEquals(
+        1.0,
+        meterRegistry
+            .get("jobs.finished")
+            .tag("type", "TestJob")
+            .tag("outcome", "error")
+            .counter()
+            .count());
+    assertEquals(
+        1L,
+        meterRegistry
+            .get("jobs.run")
+            .tag("type", "TestJob")
+            .tag("outcome", "error")
+            .timer()
+            .count());
+
+    assertEquals(List.of("Hello World! from test job!", "Fail!"), writtenLogMessages());
+  }
+
+  /**
+   * Collects the messages of every line handed to the log writer, across however many batches the
+   * job's lines were flushed in.
+   */
+  @SuppressWarnings("unchecked")
+  private List<String> writtenLogMessages() {
+    ArgumentCaptor<List<JobLogLine>> captor = ArgumentCaptor.forClass(List.class);
+    verify(jobLogWriter, atLeastOnce()).write(captor.capture());
+    return captor.getAllValues().stream()
+        .flatMap(List::stream)
+        .map(JobLogLine::getMessage)
+        .toList();
   }
 }
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example.controllers;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -15,18 +16,25 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.models.CursorPage;
+import edu.ucsb.cs156.example.models.RowCount;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -86,13 +94,16 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
             .comments("Good")
             .build();
 
-    when(menuItemReviewRepository.findAll()).thenReturn(new ArrayList<>(Arrays.asList(r1, r2)));
+    when(menuItemReviewRepository.findFirstPage(PageRequest.of(0, 101)))
+        .thenReturn(new ArrayList<>(Arrays.asList(r1, r2)));
 
     MvcResult response =
         mockMvc.perform(get("/api/menuitemreview/all")).andExpect(status().isOk()).andReturn();
 
-    verify(menuItemReviewRepository, times(1)).findAll();
-    String expectedJson = mapper.writeValueAsString(Arrays.asList(r1, r2));
+    verify(menuItemReviewRepository, times(1)).findFirstPage(PageRequest.of(0, 101));
+    CursorPage<MenuItemReview> expectedPage =
+        CursorPage.<MenuItemReview>builder().items(Arrays.asList(r1, r2)).next(null).build();
+    String expectedJson = mapper.writeValueAsString(expectedPage);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
@@ -124,6 +135,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
     ArgumentCaptor<MenuItemReview> captor = ArgumentCaptor.forClass(MenuItemReview.class);
     verify(menuItemReviewRepository, times(1)).save(captor.capture());
+    verify(tableVersionRepository, times(1)).bump(eq("menuitemreviews"), any());
     MenuItemReview saved = captor.getValue();
 
     assertEquals(99L, saved.getItemId());
@@ -206,6 +218,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
     String requestBody = mapper.writeValueAsString(edited);
     when(menuItemReviewRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+    when(menuItemReviewRepository.save(edited)).thenReturn(edited);
 
     MvcResult response =
         mockMvc
@@ -315,4 +328,153 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
     var json = responseToJson(response);
     assertEquals("record 15 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_stream_all_menu_item_reviews() throws Exception {
+
+    // arrange
+    MenuItemReview first = MenuItemReview.builder().id(1L).stars(4).build();
+    MenuItemReview second = MenuItemReview.builder().id(2L).stars(5).build();
+
+    when(menuItemReviewRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/menuitemreview/all/stream"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(List.of(first, second));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch_of_menu_item_reviews() throws Exception {
+    // arrange
+    MenuItemReview first = MenuItemReview.builder().stars(4).build();
+    MenuItemReview firstWithId = MenuItemReview.builder().id(17L).stars(4).build();
+    MenuItemReview second = MenuItemReview.builder().stars(5).build();
+    MenuItemReview firstSaved = MenuItemReview.builder().id(1L).stars(4).build();
+    MenuItemReview secondSaved = MenuItemReview.builder().id(2L).stars(5).build();
+
+    when(menuItemReviewRepository.saveAll(List.of(first, second)))
+        .thenReturn(List.of(firstSaved, secondSaved));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/menuitemreview/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(List.of(firstWithId, second)))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    // the id given for the first one is ignored
+    verify(menuItemReviewRepository, times(1)).saveAll(List.of(first, second));
+    String expectedJson = mapper.writeValueAsString(List.of(firstSaved, secondSaved));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_delete_old_reviews() throws Exception {
+    mockMvc
+        .perform(delete("/api/menuitemreview/before?before=2022-01-01T00:00:00").with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_delete_reviews_written_before_a_date() throws Exception {
+    // arrange
+    LocalDateTime before = LocalDateTime.parse("2022-01-01T00:00:00");
+    when(menuItemReviewRepository.deleteByDateReviewedBefore(before)).thenReturn(12);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(delete("/api/menuitemreview/before?before=2022-01-01T00:00:00").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(menuItemReviewRepository, times(1)).deleteByDateReviewedBefore(before);
+    String expectedJson = mapper.writeValueAsString(RowCount.builder().count(12).build());
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_review_at_the_version_it_read() throws Exception {
+    // arrange
+    MenuItemReview incoming = MenuItemReview.builder().stars(5).build();
+    MenuItemReview updated = MenuItemReview.builder().id(67L).stars(5).version(4L).build();
+
+    when(menuItemReviewRepository.updateIfVersion(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/menuitemreview?id=67")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(menuItemReviewRepository, times(1)).updateIfVersion(eq(67L), eq(3L), any());
+    verify(menuItemReviewRepository, never()).findById(any());
+    assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+    String expectedJson = mapper.writeValueAsString(updated);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void review_list_is_not_modified_when_the_table_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionRepository.findById("menuitemreviews"))
+        .thenReturn(
+            Optional.of(TableVersion.builder().tableName("menuitemreviews").version(5).build()));
+
+    // act
+    mockMvc
+        .perform(get("/api/menuitemreview/all").header(HttpHeaders.IF_NONE_MATCH, "\"5\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(menuItemReviewRepository, never()).findPageAfter(any(), any());
+    verify(menuItemReviewRepository, never()).findFirstPage(any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void review_get_by_id_is_not_modified_when_the_version_matches() throws Exception {
+    // arrange
+    when(menuItemReviewRepository.findVersionById(7L)).thenReturn(Optional.of(2L));
+
+    // act
+    mockMvc
+        .perform(get("/api/menuitemreview?id=7").header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(menuItemReviewRepository, never()).findById(any());
+  }
 }
@@ -2,7 +2,9 @@ package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -15,19 +17,26 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.models.CursorPage;
+import edu.ucsb.cs156.example.models.RowCount;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -102,7 +111,8 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
     var expected = new ArrayList<RecommendationRequest>();
     expected.addAll(Arrays.asList(rr1, rr2));
 
-    when(recommendationRequestRepository.findAll()).thenReturn(expected);
+    when(recommendationRequestRepository.findFirstPage(PageRequest.of(0, 101)))
+        .thenReturn(expected);
 
     // act
     MvcResult response =
@@ -112,8 +122,10 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(recommendationRequestRepository, times(1)).findAll();
-    String expectedJson = mapper.writeValueAsString(expected);
+    verify(recommendationRequestRepository, times(1)).findFirstPage(PageRequest.of(0, 101));
+    CursorPage<RecommendationRequest> expectedPage =
+        CursorPage.<RecommendationRequest>builder().items(expected).next(null).build();
+    String expectedJson = mapper.writeValueAsString(expectedPage);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
@@ -152,6 +164,7 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
 
     // assert
     verify(recommendationRequestRepository, times(1)).save(eq(toSave));
+    verify(tableVersionRepository, times(1)).bump(eq("recommendationrequests"), any());
     String expectedJson = mapper.writeValueAsString(toSave);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -371,4 +384,175 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("RecommendationRequest with id 15 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_stream_all_recommendation_requests() throws Exception {
+
+    // arrange
+    RecommendationRequest first = RecommendationRequest.builder().id(1L).done(false).build();
+    RecommendationRequest second = RecommendationRequest.builder().id(2L).done(true).build();
+
+    when(recommendationRequestRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/recommendationrequests/all/stream"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(List.of(first, second));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch_of_recommendation_requests() throws Exception {
+    // arrange
+    RecommendationRequest first = RecommendationRequest.builder().done(false).build();
+    RecommendationRequest firstWithId = RecommendationRequest.builder().id(17L).done(false).build();
+    RecommendationRequest second = RecommendationRequest.builder().done(true).build();
+    RecommendationRequest firstSaved = RecommendationRequest.builder().id(1L).done(false).build();
+    RecommendationRequest secondSaved = RecommendationRequest.builder().id(2L).done(true).build();
+
+    when(recommendationRequestRepository.saveAll(List.of(first, second)))
+        .thenReturn(List.of(firstSaved, secondSaved));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/recommendationrequests/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(List.of(firstWithId, second)))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    // the id given for the first one is ignored
+    verify(recommendationRequestRepository, times(1)).saveAll(List.of(first, second));
+    String expectedJson = mapper.writeValueAsString(List.of(firstSaved, secondSaved));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_mark_many_recommendation_requests_done() throws Exception {
+    // arrange
+    when(recommendationRequestRepository.updateDoneByIdIn(List.of(1L, 2L, 5L), true)).thenReturn(2);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/recommendationrequests/done")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content("[1, 2, 5]")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(recommendationRequestRepository, times(1)).updateDoneByIdIn(List.of(1L, 2L, 5L), true);
+    String expectedJson = mapper.writeValueAsString(RowCount.builder().count(2).build());
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void marking_no_recommendation_requests_done_does_not_query() throws Exception {
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/recommendationrequests/done?done=false")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content("[]")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(recommendationRequestRepository, never()).updateDoneByIdIn(any(), anyBoolean());
+    String expectedJson = mapper.writeValueAsString(RowCount.builder().count(0).build());
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_recommendation_request_at_the_version_it_read() throws Exception {
+    // arrange
+    RecommendationRequest incoming = RecommendationRequest.builder().done(true).build();
+    RecommendationRequest updated =
+        RecommendationRequest.builder().id(67L).done(true).version(4L).build();
+
+    when(recommendationRequestRepository.updateIfVersion(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/recommendationrequests?id=67")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(recommendationRequestRepository, times(1)).updateIfVersion(eq(67L), eq(3L), any());
+    verify(recommendationRequestRepository, never()).findById(any());
+    assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+    String expectedJson = mapper.writeValueAsString(updated);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void recommendation_request_list_is_not_modified_when_the_table_has_not_changed()
+      throws Exception {
+    // arrange
+    when(tableVersionRepository.findById("recommendationrequests"))
+        .thenReturn(
+            Optional.of(
+                TableVersion.builder().tableName("recommendationrequests").version(5).build()));
+
+    // act
+    mockMvc
+        .perform(get("/api/recommendationrequests/all").header(HttpHeaders.IF_NONE_MATCH, "\"5\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(recommendationRequestRepository, never()).findPageAfter(any(), any());
+    verify(recommendationRequestRepository, never()).findFirstPage(any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void recommendation_request_get_by_id_is_not_modified_when_the_version_matches()
+      throws Exception {
+    // arrange
+    when(recommendationRequestRepository.findVersionById(7L)).thenReturn(Optional.of(2L));
+
+    // act
+    mockMvc
+        .perform(get("/api/recommendationrequests?id=7").header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(recommendationRequestRepository, never()).findById(any());
+  }
 }
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example.controllers;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -15,17 +16,23 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -134,7 +141,8 @@ public class RestaurantsControllerTests extends ControllerTestCase {
     ArrayList<Restaurant> expectedRestaurants = new ArrayList<>();
     expectedRestaurants.addAll(Arrays.asList(restaurant1, restaurant2));
 
-    when(restaurantRepository.findAll()).thenReturn(expectedRestaurants);
+    when(restaurantRepository.findFirstPage(PageRequest.of(0, 101)))
+        .thenReturn(expectedRestaurants);
 
     // act
     MvcResult response =
@@ -142,8 +150,10 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(restaurantRepository, times(1)).findAll();
-    String expectedJson = mapper.writeValueAsString(expectedRestaurants);
+    verify(restaurantRepository, times(1)).findFirstPage(PageRequest.of(0, 101));
+    CursorPage<Restaurant> expectedPage =
+        CursorPage.<Restaurant>builder().items(expectedRestaurants).next(null).build();
+    String expectedJson = mapper.writeValueAsString(expectedPage);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
@@ -166,6 +176,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
     // assert
     verify(restaurantRepository, times(1)).save(restaurant1);
+    verify(tableVersionRepository, times(1)).bump(eq("restaurants"), any());
     String expectedJson = mapper.writeValueAsString(restaurant1);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -230,6 +241,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
     String requestBody = mapper.writeValueAsString(restaurantEdited);
 
     when(restaurantRepository.findById(eq(67L))).thenReturn(Optional.of(restaurantOrig));
+    when(restaurantRepository.save(restaurantEdited)).thenReturn(restaurantEdited);
 
     // act
     MvcResult response =
@@ -280,4 +292,135 @@ public class RestaurantsControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("Restaurant with id 67 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_stream_all_restaurants() throws Exception {
+
+    // arrange
+    Restaurant first = Restaurant.builder().id(1L).name("Chipotle").build();
+    Restaurant second = Restaurant.builder().id(2L).name("Freebirds").build();
+
+    when(restaurantRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/restaurants/all/stream")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(List.of(first, second));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch_of_restaurants() throws Exception {
+    // arrange
+    Restaurant first = Restaurant.builder().name("Chipotle").build();
+    Restaurant firstWithId = Restaurant.builder().id(17L).name("Chipotle").build();
+    Restaurant second = Restaurant.builder().name("Freebirds").build();
+    Restaurant firstSaved = Restaurant.builder().id(1L).name("Chipotle").build();
+    Restaurant secondSaved = Restaurant.builder().id(2L).name("Freebirds").build();
+
+    when(restaurantRepository.saveAll(List.of(first, second)))
+        .thenReturn(List.of(firstSaved, secondSaved));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/restaurants/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(List.of(firstWithId, second)))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    // the id given for the first one is ignored
+    verify(restaurantRepository, times(1)).saveAll(List.of(first, second));
+    String expectedJson = mapper.writeValueAsString(List.of(firstSaved, secondSaved));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_restaurant_at_the_version_it_read() throws Exception {
+    // arrange
+    Restaurant orig = Restaurant.builder().id(67L).name("Chipotle").version(3L).build();
+    Restaurant edited = Restaurant.builder().id(67L).name("Freebirds").version(3L).build();
+    Restaurant saved = Restaurant.builder().id(67L).name("Freebirds").version(4L).build();
+
+    when(restaurantRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+    when(restaurantRepository.save(edited)).thenReturn(saved);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/restaurants?id=67")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(restaurantRepository, times(1)).save(edited);
+    assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+    String expectedJson = mapper.writeValueAsString(saved);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_cannot_edit_a_restaurant_changed_since_it_was_read() throws Exception {
+    // arrange
+    Restaurant orig = Restaurant.builder().id(67L).name("Chipotle").version(4L).build();
+    Restaurant edited = Restaurant.builder().id(67L).name("Freebirds").version(3L).build();
+
+    when(restaurantRepository.findById(eq(67L))).thenReturn(Optional.of(orig));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/restaurants?id=67")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isPreconditionFailed())
+            .andReturn();
+
+    // assert
+    verify(restaurantRepository, never()).save(any());
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("StaleVersionException", json.get("type"));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void restaurant_list_is_not_modified_when_the_table_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionRepository.findById("restaurants"))
+        .thenReturn(
+            Optional.of(TableVersion.builder().tableName("restaurants").version(5).build()));
+
+    // act
+    mockMvc
+        .perform(get("/api/restaurants/all").header(HttpHeaders.IF_NONE_MATCH, "\"5\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(restaurantRepository, never()).findPageAfter(any(), any());
+    verify(restaurantRepository, never()).findFirstPage(any());
+  }
 }
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example.controllers;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -14,19 +15,25 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.TableVersion;
 import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -153,7 +160,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
     ArrayList<UCSBDate> expectedDates = new ArrayList<>();
     expectedDates.addAll(Arrays.asList(ucsbDate1, ucsbDate2));
 
-    when(ucsbDateRepository.findAll()).thenReturn(expectedDates);
+    when(ucsbDateRepository.findFirstPage(PageRequest.of(0, 101))).thenReturn(expectedDates);
 
     // act
     MvcResult response =
@@ -161,8 +168,10 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(ucsbDateRepository, times(1)).findAll();
-    String expectedJson = mapper.writeValueAsString(expectedDates);
+    verify(ucsbDateRepository, times(1)).findFirstPage(PageRequest.of(0, 101));
+    CursorPage<UCSBDate> expectedPage =
+        CursorPage.<UCSBDate>builder().items(expectedDates).next(null).build();
+    String expectedJson = mapper.writeValueAsString(expectedPage);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
@@ -194,6 +203,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
     // assert
     verify(ucsbDateRepository, times(1)).save(ucsbDate1);
+    verify(tableVersionRepository, times(1)).bump(eq("ucsbdates"), any());
     String expectedJson = mapper.writeValueAsString(ucsbDate1);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -276,6 +286,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
     String requestBody = mapper.writeValueAsString(ucsbDateEdited);
 
     when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDateOrig));
+    when(ucsbDateRepository.save(ucsbDateEdited)).thenReturn(ucsbDateEdited);
 
     // act
     MvcResult response =
@@ -331,4 +342,120 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDate with id 67 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_stream_all_ucsb_dates() throws Exception {
+
+    // arrange
+    UCSBDate first = UCSBDate.builder().id(1L).name("firstDayOfClasses").build();
+    UCSBDate second = UCSBDate.builder().id(2L).name("lastDayOfClasses").build();
+
+    when(ucsbDateRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/ucsbdates/all/stream")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(List.of(first, second));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch_of_ucsb_dates() throws Exception {
+    // arrange
+    UCSBDate first = UCSBDate.builder().name("firstDayOfClasses").build();
+    UCSBDate firstWithId = UCSBDate.builder().id(17L).name("firstDayOfClasses").build();
+    UCSBDate second = UCSBDate.builder().name("lastDayOfClasses").build();
+    UCSBDate firstSaved = UCSBDate.builder().id(1L).name("firstDayOfClasses").build();
+    UCSBDate secondSaved = UCSBDate.builder().id(2L).name("lastDayOfClasses").build();
+
+    when(ucsbDateRepository.saveAll(List.of(first, second)))
+        .thenReturn(List.of(firstSaved, secondSaved));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/ucsbdates/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(List.of(firstWithId, second)))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    // the id given for the first one is ignored
+    verify(ucsbDateRepository, times(1)).saveAll(List.of(first, second));
+    String expectedJson = mapper.writeValueAsString(List.of(firstSaved, secondSaved));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_date_at_the_version_it_read() throws Exception {
+    // arrange
+    UCSBDate incoming = UCSBDate.builder().name("firstDayOfClasses").build();
+    UCSBDate updated = UCSBDate.builder().id(67L).name("firstDayOfClasses").version(4L).build();
+
+    when(ucsbDateRepository.updateIfVersion(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/ucsbdates?id=67")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDateRepository, times(1)).updateIfVersion(eq(67L), eq(3L), any());
+    verify(ucsbDateRepository, never()).findById(any());
+    assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+    String expectedJson = mapper.writeValueAsString(updated);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void ucsb_date_list_is_not_modified_when_the_table_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionRepository.findById("ucsbdates"))
+        .thenReturn(Optional.of(TableVersion.builder().tableName("ucsbdates").version(5).build()));
+
+    // act
+    mockMvc
+        .perform(get("/api/ucsbdates/all").header(HttpHeaders.IF_NONE_MATCH, "\"5\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(ucsbDateRepository, never()).findPageAfter(any(), any());
+    verify(ucsbDateRepository, never()).findFirstPage(any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void ucsb_date_get_by_id_is_not_modified_when_the_version_matches() throws Exception {
+    // arrange
+    when(ucsbDateRepository.findVersionById(7L)).thenReturn(Optional.of(2L));
+
+    // act
+    mockMvc
+        .perform(get("/api/ucsbdates?id=7").header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(ucsbDateRepository, never()).findById(any());
+  }
 }
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example.controllers;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -14,18 +15,25 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.TableVersion;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -166,7 +174,8 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
     ArrayList<UCSBDiningCommons> expectedCommons = new ArrayList<>();
     expectedCommons.addAll(Arrays.asList(carrillo, dlg));
 
-    when(ucsbDiningCommonsRepository.findAll()).thenReturn(expectedCommons);
+    when(ucsbDiningCommonsRepository.findFirstPage(PageRequest.of(0, 101)))
+        .thenReturn(expectedCommons);
 
     // act
     MvcResult response =
@@ -174,8 +183,10 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(ucsbDiningCommonsRepository, times(1)).findAll();
-    String expectedJson = mapper.writeValueAsString(expectedCommons);
+    verify(ucsbDiningCommonsRepository, times(1)).findFirstPage(PageRequest.of(0, 101));
+    CursorPage<UCSBDiningCommons> expectedPage =
+        CursorPage.<UCSBDiningCommons>builder().items(expectedCommons).next(null).build();
+    String expectedJson = mapper.writeValueAsString(expectedPage);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
@@ -209,11 +220,37 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
     // assert
     verify(ucsbDiningCommonsRepository, times(1)).save(ortega);
+    verify(tableVersionRepository, times(1)).bump(eq("ucsbdiningcommons"), any());
     String expectedJson = mapper.writeValueAsString(ortega);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_cannot_post_a_commons_code_that_already_exists() throws Exception {
+    // arrange
+
+    when(ucsbDiningCommonsRepository.save(any()))
+        .thenThrow(
+            new DataIntegrityViolationException(
+                "could not execute statement", new RuntimeException("duplicate key: ortega")));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/ucsbdiningcommons/post?name=Ortega&code=ortega&hasSackMeal=true&hasTakeOutMeal=true&hasDiningCam=true&latitude=34.410987&longitude=-119.84709")
+                    .with(csrf()))
+            .andExpect(status().isConflict())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("DataIntegrityViolationException", json.get("type"));
+    assertEquals("The request conflicts with a record that already exists", json.get("message"));
+  }
+
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void admin_can_delete_a_date() throws Exception {
@@ -299,6 +336,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
     when(ucsbDiningCommonsRepository.findById(eq("carrillo")))
         .thenReturn(Optional.of(carrilloOrig));
+    when(ucsbDiningCommonsRepository.save(carrilloEdited)).thenReturn(carrilloEdited);
 
     // act
     MvcResult response =
@@ -357,4 +395,111 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_stream_all_ucsb_dining_commons() throws Exception {
+
+    // arrange
+    UCSBDiningCommons first = UCSBDiningCommons.builder().code("carrillo").build();
+    UCSBDiningCommons second = UCSBDiningCommons.builder().code("ortega").build();
+
+    when(ucsbDiningCommonsRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/ucsbdiningcommons/all/stream"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(List.of(first, second));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_dining_commons_at_the_version_it_read() throws Exception {
+    // arrange
+    UCSBDiningCommons orig =
+        UCSBDiningCommons.builder().code("carrillo").name("Carrillo").version(3L).build();
+    UCSBDiningCommons edited =
+        UCSBDiningCommons.builder().code("carrillo").name("Carrillo Dining").version(3L).build();
+    UCSBDiningCommons saved =
+        UCSBDiningCommons.builder().code("carrillo").name("Carrillo Dining").version(4L).build();
+
+    when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(orig));
+    when(ucsbDiningCommonsRepository.save(edited)).thenReturn(saved);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/ucsbdiningcommons?code=carrillo")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDiningCommonsRepository, times(1)).save(edited);
+    assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+    String expectedJson = mapper.writeValueAsString(saved);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_cannot_edit_a_dining_commons_changed_since_it_was_read() throws Exception {
+    // arrange
+    UCSBDiningCommons orig =
+        UCSBDiningCommons.builder().code("carrillo").name("Carrillo").version(4L).build();
+    UCSBDiningCommons edited =
+        UCSBDiningCommons.builder().code("carrillo").name("Carrillo Dining").version(3L).build();
+
+    when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(orig));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/ucsbdiningcommons?code=carrillo")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isPreconditionFailed())
+            .andReturn();
+
+    // assert
+    verify(ucsbDiningCommonsRepository, never()).save(any());
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("StaleVersionException", json.get("type"));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void dining_commons_list_is_not_modified_when_the_table_has_not_changed()
+      throws Exception {
+    // arrange
+    when(tableVersionRepository.findById("ucsbdiningcommons"))
+        .thenReturn(
+            Optional.of(TableVersion.builder().tableName("ucsbdiningcommons").version(5).build()));
+
+    // act
+    mockMvc
+        .perform(get("/api/ucsbdiningcommons/all").header(HttpHeaders.IF_NONE_MATCH, "\"5\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(ucsbDiningCommonsRepository, never()).findPageAfter(any(), any());
+    verify(ucsbDiningCommonsRepository, never()).findFirstPage(any());
+  }
 }
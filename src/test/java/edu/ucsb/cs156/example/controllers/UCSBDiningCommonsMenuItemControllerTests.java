@@ -1,7 +1,9 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -13,17 +15,23 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.TableVersion;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -80,7 +88,8 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
     ArrayList<UCSBDiningCommonsMenuItem> expectedDiningCommonsMenuItems = new ArrayList<>();
     expectedDiningCommonsMenuItems.add(ucsbDiningCommonsMenuItem1);
 
-    when(ucsbDiningCommonsMenuItemRepository.findAll()).thenReturn(expectedDiningCommonsMenuItems);
+    when(ucsbDiningCommonsMenuItemRepository.findFirstPage(PageRequest.of(0, 101)))
+        .thenReturn(expectedDiningCommonsMenuItems);
 
     // act
     MvcResult response =
@@ -91,8 +100,13 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
     // assert
 
-    verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAll();
-    String expectedJson = mapper.writeValueAsString(expectedDiningCommonsMenuItems);
+    verify(ucsbDiningCommonsMenuItemRepository, times(1)).findFirstPage(PageRequest.of(0, 101));
+    CursorPage<UCSBDiningCommonsMenuItem> expectedPage =
+        CursorPage.<UCSBDiningCommonsMenuItem>builder()
+            .items(expectedDiningCommonsMenuItems)
+            .next(null)
+            .build();
+    String expectedJson = mapper.writeValueAsString(expectedPage);
 
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -124,6 +138,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
     // assert
     verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(ucsbDiningCommonsMenuItem1);
+    verify(tableVersionRepository, times(1)).bump(eq("ucsbdiningcommonsmenuitem"), any());
     String expectedJson = mapper.writeValueAsString(ucsbDiningCommonsMenuItem1);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -212,6 +227,8 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
     when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L)))
         .thenReturn(Optional.of(ucsbDiningCommonsMenuItemOrig));
+    when(ucsbDiningCommonsMenuItemRepository.save(ucsbDiningCommonsMenuItemEdited))
+        .thenReturn(ucsbDiningCommonsMenuItemEdited);
 
     // act
     MvcResult response =
@@ -317,4 +334,133 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommonsMenuItem with id 15 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_stream_all_ucsb_dining_commons_menu_items() throws Exception {
+
+    // arrange
+    UCSBDiningCommonsMenuItem first =
+        UCSBDiningCommonsMenuItem.builder().id(1L).name("Pizza").build();
+    UCSBDiningCommonsMenuItem second =
+        UCSBDiningCommonsMenuItem.builder().id(2L).name("Salad").build();
+
+    when(ucsbDiningCommonsMenuItemRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/ucsbdiningcommonsmenuitem/all/stream"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(List.of(first, second));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_a_batch_of_ucsb_dining_commons_menu_items() throws Exception {
+    // arrange
+    UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder().name("Pizza").build();
+    UCSBDiningCommonsMenuItem firstWithId =
+        UCSBDiningCommonsMenuItem.builder().id(17L).name("Pizza").build();
+    UCSBDiningCommonsMenuItem second = UCSBDiningCommonsMenuItem.builder().name("Salad").build();
+    UCSBDiningCommonsMenuItem firstSaved =
+        UCSBDiningCommonsMenuItem.builder().id(1L).name("Pizza").build();
+    UCSBDiningCommonsMenuItem secondSaved =
+        UCSBDiningCommonsMenuItem.builder().id(2L).name("Salad").build();
+
+    when(ucsbDiningCommonsMenuItemRepository.saveAll(List.of(first, second)))
+        .thenReturn(List.of(firstSaved, secondSaved));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/ucsbdiningcommonsmenuitem/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(List.of(firstWithId, second)))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    // the id given for the first one is ignored
+    verify(ucsbDiningCommonsMenuItemRepository, times(1)).saveAll(List.of(first, second));
+    String expectedJson = mapper.writeValueAsString(List.of(firstSaved, secondSaved));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_menu_item_at_the_version_it_read() throws Exception {
+    // arrange
+    UCSBDiningCommonsMenuItem incoming = UCSBDiningCommonsMenuItem.builder().name("Pizza").build();
+    UCSBDiningCommonsMenuItem updated =
+        UCSBDiningCommonsMenuItem.builder().id(67L).name("Pizza").version(4L).build();
+
+    when(ucsbDiningCommonsMenuItemRepository.updateIfVersion(eq(67L), eq(3L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/ucsbdiningcommonsmenuitem?id=67")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDiningCommonsMenuItemRepository, times(1)).updateIfVersion(eq(67L), eq(3L), any());
+    verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any());
+    assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+    String expectedJson = mapper.writeValueAsString(updated);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void menu_item_list_is_not_modified_when_the_table_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionRepository.findById("ucsbdiningcommonsmenuitem"))
+        .thenReturn(
+            Optional.of(
+                TableVersion.builder().tableName("ucsbdiningcommonsmenuitem").version(5).build()));
+
+    // act
+    mockMvc
+        .perform(
+            get("/api/ucsbdiningcommonsmenuitem/all").header(HttpHeaders.IF_NONE_MATCH, "\"5\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(ucsbDiningCommonsMenuItemRepository, never()).findPageAfter(any(), any());
+    verify(ucsbDiningCommonsMenuItemRepository, never()).findFirstPage(any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void menu_item_get_by_id_is_not_modified_when_the_version_matches() throws Exception {
+    // arrange
+    when(ucsbDiningCommonsMenuItemRepository.findVersionById(7L)).thenReturn(Optional.of(2L));
+
+    // act
+    mockMvc
+        .perform(
+            get("/api/ucsbdiningcommonsmenuitem?id=7").header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any());
+  }
 }
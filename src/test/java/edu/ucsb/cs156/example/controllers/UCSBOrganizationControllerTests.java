@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example.controllers;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -14,18 +15,25 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.TableVersion;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -63,6 +71,38 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
         .andExpect(status().is(403)); // only admins can post
   }
 
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_page_through_ucsborganizations_by_org_code() throws Exception {
+
+    // arrange
+    UCSBOrganization chess = UCSBOrganization.builder().orgCode("CHESS").build();
+    UCSBOrganization skiing = UCSBOrganization.builder().orgCode("SKI").build();
+
+    when(ucsbOrganizationRepository.findPageAfter("BADMINTON", PageRequest.of(0, 2)))
+        .thenReturn(new ArrayList<>(Arrays.asList(chess, skiing)));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                get("/api/UCSBOrganization/all")
+                    .param("limit", "1")
+                    .param("after", ApiController.encodeCursor("BADMINTON")))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    CursorPage<UCSBOrganization> expectedPage =
+        CursorPage.<UCSBOrganization>builder()
+            .items(Arrays.asList(chess))
+            .next(ApiController.encodeCursor("CHESS"))
+            .build();
+    String expectedJson = mapper.writeValueAsString(expectedPage);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
   @WithMockUser(roles = {"USER"})
   @Test
   public void logged_in_user_can_get_all_ucsborganization() throws Exception {
@@ -79,7 +119,8 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
     ArrayList<UCSBOrganization> expectedUCSBOrganization = new ArrayList<>();
     expectedUCSBOrganization.addAll(Arrays.asList(ucsborganization1));
 
-    when(ucsbOrganizationRepository.findAll()).thenReturn(expectedUCSBOrganization);
+    when(ucsbOrganizationRepository.findFirstPage(PageRequest.of(0, 101)))
+        .thenReturn(expectedUCSBOrganization);
 
     // act
     MvcResult response =
@@ -87,8 +128,10 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(ucsbOrganizationRepository, times(1)).findAll();
-    String expectedJson = mapper.writeValueAsString(expectedUCSBOrganization);
+    verify(ucsbOrganizationRepository, times(1)).findFirstPage(PageRequest.of(0, 101));
+    CursorPage<UCSBOrganization> expectedPage =
+        CursorPage.<UCSBOrganization>builder().items(expectedUCSBOrganization).next(null).build();
+    String expectedJson = mapper.writeValueAsString(expectedPage);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
@@ -119,11 +162,38 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
     // assert
     verify(ucsbOrganizationRepository, times(1)).save(eq(ucsborganization1));
+    verify(tableVersionRepository, times(1)).bump(eq("ucsborganization"), any());
     String expectedJson = mapper.writeValueAsString(ucsborganization1);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_cannot_post_an_org_code_that_already_exists() throws Exception {
+    // arrange
+
+    when(ucsbOrganizationRepository.save(any()))
+        .thenThrow(
+            new DataIntegrityViolationException(
+                "could not execute statement",
+                new RuntimeException("duplicate key: UCSBbadminton")));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/UCSBOrganization/post?orgCode=UCSBbadminton&orgTranslationShort=Single&orgTranslation=Mix&inactive=true")
+                    .with(csrf()))
+            .andExpect(status().isConflict())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("DataIntegrityViolationException", json.get("type"));
+    assertEquals("The request conflicts with a record that already exists", json.get("message"));
+  }
+
   @Test
   public void logged_out_users_cannot_get_by_id() throws Exception {
     mockMvc
@@ -291,6 +361,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
     String requestBody = mapper.writeValueAsString(orgEdited);
 
     when(ucsbOrganizationRepository.findById(eq("UCSB"))).thenReturn(Optional.of(orgOrig));
+    when(ucsbOrganizationRepository.save(orgEdited)).thenReturn(orgEdited);
 
     // act
     MvcResult response =
@@ -397,4 +468,110 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBOrganization with id Yuchao not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_stream_all_ucsb_organizations() throws Exception {
+
+    // arrange
+    UCSBOrganization first = UCSBOrganization.builder().orgCode("CHESS").build();
+    UCSBOrganization second = UCSBOrganization.builder().orgCode("SKI").build();
+
+    when(ucsbOrganizationRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/UCSBOrganization/all/stream"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(List.of(first, second));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_an_organization_at_the_version_it_read() throws Exception {
+    // arrange
+    UCSBOrganization orig =
+        UCSBOrganization.builder().orgCode("UCSB").orgTranslationShort("UCSB").version(3L).build();
+    UCSBOrganization edited =
+        UCSBOrganization.builder().orgCode("UCSB").orgTranslationShort("UC SB").version(3L).build();
+    UCSBOrganization saved =
+        UCSBOrganization.builder().orgCode("UCSB").orgTranslationShort("UC SB").version(4L).build();
+
+    when(ucsbOrganizationRepository.findById(eq("UCSB"))).thenReturn(Optional.of(orig));
+    when(ucsbOrganizationRepository.save(edited)).thenReturn(saved);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/UCSBOrganization?orgCode=UCSB")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbOrganizationRepository, times(1)).save(edited);
+    assertEquals("\"4\"", response.getResponse().getHeader(HttpHeaders.ETAG));
+    String expectedJson = mapper.writeValueAsString(saved);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_cannot_edit_an_organization_changed_since_it_was_read() throws Exception {
+    // arrange
+    UCSBOrganization orig =
+        UCSBOrganization.builder().orgCode("UCSB").orgTranslationShort("UCSB").version(4L).build();
+    UCSBOrganization edited =
+        UCSBOrganization.builder().orgCode("UCSB").orgTranslationShort("UC SB").version(3L).build();
+
+    when(ucsbOrganizationRepository.findById(eq("UCSB"))).thenReturn(Optional.of(orig));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/UCSBOrganization?orgCode=UCSB")
+                    .header(HttpHeaders.IF_MATCH, "\"3\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+            .andExpect(status().isPreconditionFailed())
+            .andReturn();
+
+    // assert
+    verify(ucsbOrganizationRepository, never()).save(any());
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("StaleVersionException", json.get("type"));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void organization_list_is_not_modified_when_the_table_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionRepository.findById("ucsborganization"))
+        .thenReturn(
+            Optional.of(TableVersion.builder().tableName("ucsborganization").version(5).build()));
+
+    // act
+    mockMvc
+        .perform(get("/api/UCSBOrganization/all").header(HttpHeaders.IF_NONE_MATCH, "\"5\""))
+        .andExpect(status().isNotModified());
+
+    // assert
+    verify(ucsbOrganizationRepository, never()).findPageAfter(any(), any());
+    verify(ucsbOrganizationRepository, never()).findFirstPage(any());
+  }
 }
@@ -1,6 +1,7 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -13,10 +14,13 @@ import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -50,8 +54,10 @@ public class UsersControllerTests extends ControllerTestCase {
     ArrayList<User> expectedUsers = new ArrayList<>();
     expectedUsers.addAll(Arrays.asList(u1, u2, u));
 
-    when(userRepository.findAll()).thenReturn(expectedUsers);
-    String expectedJson = mapper.writeValueAsString(expectedUsers);
+    when(userRepository.streamPage(null, null, null, PageRequest.of(0, 1001)))
+        .thenReturn(expectedUsers.stream());
+    String expectedJson =
+        "{\"items\":" + mapper.writeValueAsString(expectedUsers) + ",\"next\":null}";
 
     // act
 
@@ -60,8 +66,68 @@ public class UsersControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(userRepository, times(1)).findAll();
+    verify(userRepository, times(1)).streamPage(null, null, null, PageRequest.of(0, 1001));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
+    assertEquals("application/json", response.getResponse().getContentType());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void users__admin_gets_filtered_page_with_next() throws Exception {
+
+    // arrange
+
+    User u5 = User.builder().id(5L).email("a@ucsb.edu").hostedDomain("ucsb.edu").build();
+    User u7 = User.builder().id(7L).email("b@ucsb.edu").hostedDomain("ucsb.edu").build();
+    User u9 = User.builder().id(9L).email("c@ucsb.edu").hostedDomain("ucsb.edu").build();
+
+    when(userRepository.streamPage(4L, false, "ucsb.edu", PageRequest.of(0, 3)))
+        .thenReturn(Stream.of(u5, u7, u9));
+    String expectedJson =
+        "{\"items\":" + mapper.writeValueAsString(List.of(u5, u7)) + ",\"next\":7}";
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(
+                get("/api/admin/users")
+                    .param("limit", "2")
+                    .param("after", "4")
+                    .param("admin", "false")
+                    .param("hostedDomain", "ucsb.edu"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void users__limit_is_clamped() throws Exception {
+
+    // arrange
+
+    when(userRepository.streamPage(any(), any(), any(), any()))
+        .thenAnswer(invocation -> Stream.empty());
+
+    // act
+
+    mockMvc.perform(get("/api/admin/users").param("limit", "1000000")).andExpect(status().isOk());
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/admin/users").param("limit", "0"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(userRepository)
+        .streamPage(null, null, null, PageRequest.of(0, UsersController.MAX_PAGE_SIZE + 1));
+    verify(userRepository).streamPage(null, null, null, PageRequest.of(0, 2));
+    assertEquals("{\"items\":[],\"next\":null}", response.getResponse().getContentAsString());
   }
 }
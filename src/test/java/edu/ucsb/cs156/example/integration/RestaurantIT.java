@@ -1,18 +1,25 @@
 package edu.ucsb.cs156.example.integration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +27,8 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
@@ -45,6 +54,8 @@ public class RestaurantIT {
 
   @Autowired public ObjectMapper mapper;
 
+  @Autowired EntityManagerFactory entityManagerFactory;
+
   @MockBean UserRepository userRepository;
 
   @WithMockUser(roles = {"USER"})
@@ -72,7 +83,7 @@ public class RestaurantIT {
     // arrange
 
     Restaurant restaurant1 =
-        Restaurant.builder().id(1L).name("Chipotle").description("Mexican").build();
+        Restaurant.builder().id(1L).name("Chipotle").description("Mexican").version(0L).build();
 
     // act
     MvcResult response =
@@ -86,4 +97,165 @@ public class RestaurantIT {
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void test_that_logged_in_user_can_page_through_all_restaurants() throws Exception {
+    // arrange
+
+    Restaurant tacoBell =
+        restaurantRepository.save(
+            Restaurant.builder().name("Taco Bell").description("Mexican").build());
+    Restaurant freebirds =
+        restaurantRepository.save(
+            Restaurant.builder().name("Freebirds").description("Burritos").build());
+    Restaurant woodstocks =
+        restaurantRepository.save(
+            Restaurant.builder().name("Woodstock's").description("Pizza").build());
+
+    // act
+    MvcResult firstPage =
+        mockMvc
+            .perform(get("/api/restaurants/all").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andReturn();
+    String next =
+        mapper.readTree(firstPage.getResponse().getContentAsString()).get("next").asText();
+    MvcResult secondPage =
+        mockMvc
+            .perform(get("/api/restaurants/all").param("limit", "2").param("after", next))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedFirstPage =
+        mapper.writeValueAsString(
+            CursorPage.<Restaurant>builder()
+                .items(List.of(tacoBell, freebirds))
+                .next(next)
+                .build());
+    String expectedSecondPage =
+        mapper.writeValueAsString(
+            CursorPage.<Restaurant>builder().items(List.of(woodstocks)).next(null).build());
+    assertEquals(expectedFirstPage, firstPage.getResponse().getContentAsString());
+    assertEquals(expectedSecondPage, secondPage.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void test_that_logged_in_user_can_stream_all_restaurants() throws Exception {
+    // arrange
+
+    Restaurant tacoBell =
+        restaurantRepository.save(
+            Restaurant.builder().name("Taco Bell").description("Mexican").build());
+    Restaurant freebirds =
+        restaurantRepository.save(
+            Restaurant.builder().name("Freebirds").description("Burritos").build());
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/restaurants/all/stream")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(List.of(tacoBell, freebirds));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void test_that_restaurants_are_served_from_the_second_level_cache_until_deleted()
+      throws Exception {
+    // arrange
+
+    Restaurant restaurant =
+        restaurantRepository.save(
+            Restaurant.builder().name("Taco Bell").description("Mexican").build());
+    entityManagerFactory.getCache().evictAll();
+
+    // act
+    mockMvc.perform(get("/api/restaurants?id=1")).andExpect(status().isOk());
+    boolean cachedAfterGet = entityManagerFactory.getCache().contains(Restaurant.class, 1L);
+    mockMvc.perform(delete("/api/restaurants?id=1").with(csrf())).andExpect(status().isOk());
+
+    // assert
+    assertEquals(1L, restaurant.getId());
+    assertTrue(cachedAfterGet);
+    // the deleted entry is left as a soft lock, not removed, so check that it is no longer served
+    mockMvc.perform(get("/api/restaurants?id=1")).andExpect(status().isNotFound());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_edit_made_against_an_old_version_is_refused() throws Exception {
+    // arrange
+    restaurantRepository.save(
+        Restaurant.builder().name("Taco Bell").description("Mexican").build());
+    String etag =
+        mockMvc
+            .perform(get("/api/restaurants?id=1"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+    String requestBody =
+        mapper.writeValueAsString(
+            Restaurant.builder().name("Taco Bell").description("Tex-Mex").build());
+
+    // act
+    MvcResult first =
+        mockMvc
+            .perform(
+                put("/api/restaurants?id=1")
+                    .header(HttpHeaders.IF_MATCH, etag)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(requestBody)
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    mockMvc
+        .perform(
+            put("/api/restaurants?id=1")
+                .header(HttpHeaders.IF_MATCH, etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(requestBody)
+                .with(csrf()))
+        .andExpect(status().isPreconditionFailed());
+
+    // assert
+    assertEquals("\"0\"", etag);
+    assertEquals("\"1\"", first.getResponse().getHeader(HttpHeaders.ETAG));
+    assertEquals(Long.valueOf(1), restaurantRepository.findById(1L).get().getVersion());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void restaurant_list_is_not_modified_until_a_restaurant_is_added() throws Exception {
+    // arrange
+    String etag =
+        mockMvc
+            .perform(get("/api/restaurants/all"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+    // act
+    mockMvc
+        .perform(get("/api/restaurants/all").header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isNotModified());
+    mockMvc
+        .perform(post("/api/restaurants/post?name=Chipotle&description=Mexican").with(csrf()))
+        .andExpect(status().isOk());
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/restaurants/all").header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertNotEquals(etag, response.getResponse().getHeader(HttpHeaders.ETAG));
+    assertTrue(response.getResponse().getContentAsString().contains("Chipotle"));
+  }
 }
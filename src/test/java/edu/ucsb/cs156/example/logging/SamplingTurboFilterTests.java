@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SamplingTurboFilterTests {
+
+  private final LoggerContext context = new LoggerContext();
+  private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+  private final SamplingTurboFilter filter = new SamplingTurboFilter();
+
+  @BeforeEach
+  public void setup() {
+    filter.addSample("sampled = 0.01");
+    filter.addSample("half=0.5");
+    filter.addSample("none=0");
+    filter.setContext(context);
+    filter.start();
+    context.addTurboFilter(filter);
+
+    appender.setContext(context);
+    appender.start();
+    Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+    root.setLevel(Level.INFO);
+    root.addAppender(appender);
+  }
+
+  private int count(String loggerName) {
+    return (int)
+        appender.list.stream().filter(e -> e.getLoggerName().equals(loggerName)).count();
+  }
+
+  @Test
+  public void keeps_the_configured_fraction_of_info_events() {
+    // act
+    for (int i = 0; i < 200; i++) {
+      context.getLogger("sampled").info("event {}", i);
+      context.getLogger("half").info("event {}", i);
+      context.getLogger("none").info("event {}", i);
+      context.getLogger("other").info("event {}", i);
+    }
+
+    // assert
+    assertEquals(2, count("sampled"));
+    assertEquals("event 0", appender.list.get(0).getFormattedMessage());
+    assertEquals(100, count("half"));
+    assertEquals(0, count("none"));
+    assertEquals(200, count("other"));
+  }
+
+  @Test
+  public void never_drops_warnings_and_errors() {
+    // act
+    for (int i = 0; i < 10; i++) {
+      context.getLogger("none").warn("warning");
+      context.getLogger("none").error("error");
+    }
+
+    // assert
+    assertEquals(20, count("none"));
+  }
+
+  @Test
+  public void disabled_events_and_level_checks_do_not_use_up_samples() {
+    // arrange
+    Logger sampled = context.getLogger("sampled");
+
+    // act
+    for (int i = 0; i < 50; i++) {
+      sampled.debug("not enabled");
+      assertTrue(sampled.isInfoEnabled());
+    }
+    sampled.info("first enabled event");
+
+    // assert
+    assertEquals(1, count("sampled"));
+  }
+
+  @Test
+  public void addSample_rejects_specs_without_rate() {
+    assertThrows(IllegalArgumentException.class, () -> filter.addSample("sampled"));
+  }
+}
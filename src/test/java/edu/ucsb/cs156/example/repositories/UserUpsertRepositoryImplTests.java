@@ -0,0 +1,108 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.User;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class UserUpsertRepositoryImplTests {
+
+  private Connection connection;
+  private DatabaseMetaData metaData;
+  private PreparedStatement preparedStatement;
+  private ResultSet resultSet;
+  private UserUpsertRepositoryImpl repository;
+
+  private final User user = userWithId(0L);
+
+  private static User userWithId(long id) {
+    return User.builder()
+        .id(id)
+        .email("cgaucho@ucsb.edu")
+        .googleSub("sub")
+        .pictureUrl("https://example.org/cgaucho.jpg")
+        .fullName("Chris Gaucho")
+        .givenName("Chris")
+        .familyName("Gaucho")
+        .emailVerified(true)
+        .locale("en")
+        .hostedDomain("ucsb.edu")
+        .admin(true)
+        .build();
+  }
+
+  @BeforeEach
+  public void setup() throws Exception {
+    DataSource dataSource = mock(DataSource.class);
+    connection = mock(Connection.class);
+    metaData = mock(DatabaseMetaData.class);
+    preparedStatement = mock(PreparedStatement.class);
+    resultSet = mock(ResultSet.class);
+
+    when(dataSource.getConnection()).thenReturn(connection);
+    when(connection.getMetaData()).thenReturn(metaData);
+    when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(resultSet.next()).thenReturn(true, false);
+    when(resultSet.getLong("id")).thenReturn(42L);
+    when(resultSet.getString("email")).thenReturn("cgaucho@ucsb.edu");
+    when(resultSet.getString("google_sub")).thenReturn("sub");
+    when(resultSet.getString("picture_url")).thenReturn("https://example.org/cgaucho.jpg");
+    when(resultSet.getString("full_name")).thenReturn("Chris Gaucho");
+    when(resultSet.getString("given_name")).thenReturn("Chris");
+    when(resultSet.getString("family_name")).thenReturn("Gaucho");
+    when(resultSet.getBoolean("email_verified")).thenReturn(true);
+    when(resultSet.getString("locale")).thenReturn("en");
+    when(resultSet.getString("hosted_domain")).thenReturn("ucsb.edu");
+    when(resultSet.getBoolean("admin")).thenReturn(true);
+
+    repository = new UserUpsertRepositoryImpl();
+    ReflectionTestUtils.setField(repository, "jdbcTemplate", new JdbcTemplate(dataSource));
+  }
+
+  @Test
+  public void upsert_uses_on_conflict_on_postgres_and_returns_row() throws Exception {
+    // arrange
+    when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+
+    // act
+    User stored = repository.upsert(user);
+
+    // assert
+    assertEquals(userWithId(42L), stored);
+    verify(connection).prepareStatement(UserUpsertRepositoryImpl.POSTGRES_UPSERT_SQL);
+    verify(preparedStatement).setString(1, "cgaucho@ucsb.edu");
+    verify(preparedStatement).setObject(10, true);
+  }
+
+  @Test
+  public void upsert_uses_merge_on_h2_and_checks_database_once() throws Exception {
+    // arrange
+    when(metaData.getDatabaseProductName()).thenReturn("H2");
+
+    // act
+    User stored = repository.upsert(user);
+    when(resultSet.next()).thenReturn(true, false);
+    repository.upsert(user);
+
+    // assert
+    assertEquals(42L, stored.getId());
+    verify(connection, times(2)).prepareStatement(UserUpsertRepositoryImpl.H2_UPSERT_SQL);
+    verify(preparedStatement, times(2)).setString(10, "cgaucho@ucsb.edu");
+    verify(preparedStatement, times(2)).setObject(11, true);
+    verify(metaData, times(1)).getDatabaseProductName();
+  }
+}
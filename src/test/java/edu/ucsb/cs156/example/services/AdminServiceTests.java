@@ -0,0 +1,116 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class AdminServiceTests {
+
+  @Mock private UserRepository userRepository;
+
+  @Mock private ApplicationEventPublisher eventPublisher;
+
+  @InjectMocks private AdminService adminService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(
+        adminService, "adminEmailList", List.of("admin@ucsb.edu", "other@ucsb.edu"));
+    ReflectionTestUtils.setField(adminService, "cacheTtlMs", 60000L);
+    ReflectionTestUtils.setField(adminService, "cacheMaxEntries", 100);
+    adminService.init();
+  }
+
+  @Test
+  public void isAdmin_is_true_for_listed_emails_without_querying() {
+    // act and assert
+    assertTrue(adminService.isAdminEmail("other@ucsb.edu"));
+    assertTrue(adminService.isAdmin("admin@ucsb.edu"));
+    verify(userRepository, never()).findByEmail(any());
+  }
+
+  @Test
+  public void isAdmin_caches_database_flag() {
+    // arrange
+    User user = User.builder().email("cgaucho@ucsb.edu").admin(true).build();
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(user));
+
+    // act and assert
+    assertFalse(adminService.isAdminEmail("cgaucho@ucsb.edu"));
+    assertTrue(adminService.isAdmin("cgaucho@ucsb.edu"));
+    assertTrue(adminService.isAdmin("cgaucho@ucsb.edu"));
+    verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+  }
+
+  @Test
+  public void isAdmin_is_false_for_unknown_and_non_admin_users() {
+    // arrange
+    User user = User.builder().email("ldelplaya@ucsb.edu").admin(false).build();
+    when(userRepository.findByEmail("ldelplaya@ucsb.edu")).thenReturn(Optional.of(user));
+    when(userRepository.findByEmail("nobody@ucsb.edu")).thenReturn(Optional.empty());
+
+    // act and assert
+    assertFalse(adminService.isAdmin("ldelplaya@ucsb.edu"));
+    assertFalse(adminService.isAdmin("nobody@ucsb.edu"));
+    assertFalse(adminService.isAdmin("nobody@ucsb.edu"));
+    verify(userRepository, times(1)).findByEmail("nobody@ucsb.edu");
+  }
+
+  @Test
+  public void onUserAdminChanged_updates_cached_flag() {
+    // arrange
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.empty());
+    assertFalse(adminService.isAdmin("cgaucho@ucsb.edu"));
+
+    // act
+    adminService.onUserAdminChanged(new UserAdminChangedEvent("cgaucho@ucsb.edu", true));
+
+    // assert
+    assertTrue(adminService.isAdmin("cgaucho@ucsb.edu"));
+    verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+  }
+
+  @Test
+  public void grantAdmin_publishes_the_change_when_the_flag_was_set() {
+    // arrange
+    when(userRepository.grantAdmin("cgaucho@ucsb.edu")).thenReturn(1);
+
+    // act
+    boolean changed = adminService.grantAdmin("cgaucho@ucsb.edu");
+
+    // assert
+    assertTrue(changed);
+    verify(eventPublisher, times(1))
+        .publishEvent(new UserAdminChangedEvent("cgaucho@ucsb.edu", true));
+  }
+
+  @Test
+  public void grantAdmin_publishes_nothing_for_a_user_already_an_admin() {
+    // arrange
+    when(userRepository.grantAdmin("cgaucho@ucsb.edu")).thenReturn(0);
+
+    // act
+    boolean changed = adminService.grantAdmin("cgaucho@ucsb.edu");
+
+    // assert
+    assertFalse(changed);
+    verify(eventPublisher, never()).publishEvent(any());
+  }
+}
@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+public class AuthenticationRolesTests {
+
+  private final AuthenticationRoles roles =
+      AuthenticationRoles.of(
+          List.of(
+              new SimpleGrantedAuthority("ROLE_USER"),
+              new SimpleGrantedAuthority("ROLE_ADMIN"),
+              new SimpleGrantedAuthority("OAUTH2_USER")));
+
+  @Test
+  public void getSorted_returns_immutable_sorted_roles() {
+    // act
+    List<String> sorted = roles.getSorted();
+
+    // assert
+    assertEquals(List.of("OAUTH2_USER", "ROLE_ADMIN", "ROLE_USER"), sorted);
+    assertThrows(UnsupportedOperationException.class, () -> sorted.add("ROLE_MEMBER"));
+  }
+}
@@ -0,0 +1,56 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+public class AuthoritiesMemoTests {
+
+  private final AtomicInteger computed = new AtomicInteger();
+
+  private final AuthoritiesMemo<String> memo = new AuthoritiesMemo<>(2);
+
+  private String join(Collection<? extends GrantedAuthority> authorities) {
+    computed.incrementAndGet();
+    return String.join(",", authorities.stream().map(GrantedAuthority::getAuthority).toList());
+  }
+
+  private static List<GrantedAuthority> roles(String... roles) {
+    return List.of(roles).stream().<GrantedAuthority>map(SimpleGrantedAuthority::new).toList();
+  }
+
+  @Test
+  public void get_computes_each_list_once() {
+    // act
+    String first = memo.get(roles("ROLE_USER", "ROLE_ADMIN"), this::join);
+    String second = memo.get(roles("ROLE_USER", "ROLE_ADMIN"), this::join);
+
+    // assert
+    assertEquals("ROLE_USER,ROLE_ADMIN", first);
+    assertSame(first, second);
+    assertEquals(1, computed.get());
+    assertEquals(1, memo.size());
+  }
+
+  @Test
+  public void get_starts_again_once_full() {
+    // arrange
+    memo.get(roles("ROLE_USER"), this::join);
+    memo.get(roles("ROLE_ADMIN"), this::join);
+
+    // act
+    String value = memo.get(roles("ROLE_MEMBER"), this::join);
+
+    // assert
+    assertEquals("ROLE_MEMBER", value);
+    assertEquals(1, memo.size());
+    memo.get(roles("ROLE_USER"), this::join);
+    assertEquals(4, computed.get());
+  }
+}
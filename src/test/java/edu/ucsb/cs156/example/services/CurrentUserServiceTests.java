@@ -1,14 +1,18 @@
 package edu.ucsb.cs156.example.services;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.User;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.mockito.Answers;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 class CurrentUserServiceTests extends ControllerTestCase {
 
@@ -27,4 +31,16 @@ class CurrentUserServiceTests extends ControllerTestCase {
     when(currentUserService.getUser()).thenReturn(User.builder().build());
     assertTrue(currentUserService.isLoggedIn());
   }
+
+  @Test
+  void test_getRolesSorted_sorts_roles() {
+    CurrentUserService currentUserService =
+        mock(CurrentUserService.class, Answers.CALLS_REAL_METHODS);
+    doReturn(
+            List.of(
+                new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN")))
+        .when(currentUserService)
+        .getRoles();
+    assertEquals(List.of("ROLE_ADMIN", "ROLE_USER"), currentUserService.getRolesSorted());
+  }
 }
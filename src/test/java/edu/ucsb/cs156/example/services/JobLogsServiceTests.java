@@ -2,27 +2,168 @@ package edu.ucsb.cs156.example.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.models.JobLogTail;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobLogWriter;
+import edu.ucsb.cs156.example.services.jobs.JobMetrics;
 import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
 
 public class JobLogsServiceTests {
 
   @Mock private JobsRepository jobRepository;
 
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private JobLogWriter jobLogWriter;
+
+  @Mock private JobMetrics jobMetrics;
+
   @InjectMocks private JobService jobService;
 
   @BeforeEach
   public void setup() {
     MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobService, "logBatchSize", 500);
+    ReflectionTestUtils.setField(jobService, "logFlushIntervalMs", 0L);
+    ReflectionTestUtils.setField(jobService, "environment", new MockEnvironment());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void test_runJobAsync_flushes_buffered_lines_before_marking_complete() {
+    // Arrange
+    Job job = Job.builder().id(1L).status("running").build();
+
+    // Act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          ctx.log("one");
+          ctx.log("two");
+        });
+
+    // Assert
+    assertEquals("complete", job.getStatus());
+    ArgumentCaptor<List<JobLogLine>> captor = ArgumentCaptor.forClass(List.class);
+    InOrder inOrder = inOrder(jobLogWriter, jobRepository);
+    inOrder.verify(jobLogWriter, times(1)).write(captor.capture());
+    inOrder
+        .verify(jobRepository, times(1))
+        .finishAttempt(1L, null, 0, "complete", job.getFinishedAt());
+    assertEquals(
+        List.of("one", "two"), captor.getValue().stream().map(JobLogLine::getMessage).toList());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void test_runJobAsync_flushes_error_message_before_marking_error() {
+    // Arrange
+    Job job = Job.builder().id(1L).status("running").build();
+
+    // Act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          ctx.log("starting");
+          throw new Exception("boom");
+        });
+
+    // Assert
+    assertEquals("error", job.getStatus());
+    ArgumentCaptor<List<JobLogLine>> captor = ArgumentCaptor.forClass(List.class);
+    InOrder inOrder = inOrder(jobLogWriter, jobRepository);
+    inOrder.verify(jobLogWriter, times(1)).write(captor.capture());
+    inOrder
+        .verify(jobRepository, times(1))
+        .finishAttempt(1L, null, 0, "error", job.getFinishedAt());
+    assertEquals(
+        List.of("starting", "boom"),
+        captor.getValue().stream().map(JobLogLine::getMessage).toList());
+  }
+
+  @Test
+  void test_flushBufferedLogs_writes_lines_of_running_jobs() {
+    // Arrange
+    Job job = Job.builder().id(1L).status("running").build();
+
+    // Act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          ctx.log("quiet job");
+          verify(jobLogWriter, never()).write(anyList());
+          jobService.flushBufferedLogs();
+          verify(jobLogWriter, times(1)).write(anyList());
+        });
+
+    // Assert: nothing left to write once the job finishes
+    verify(jobLogWriter, times(1)).write(anyList());
+    jobService.flushBufferedLogs();
+    verify(jobLogWriter, times(1)).write(anyList());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void test_flushBufferedLogs_carries_on_past_a_job_whose_write_fails() {
+    // Arrange
+    JobLogWriter failingWriter = mock(JobLogWriter.class);
+    doThrow(new RuntimeException("insert failed")).when(failingWriter).write(anyList());
+    JobContext failing = new JobContext(failingWriter, Job.builder().id(1L).build(), 10, 0);
+    JobContext healthy = new JobContext(jobLogWriter, Job.builder().id(2L).build(), 10, 0);
+    failing.log("lost");
+    healthy.log("kept");
+    Set<JobContext> running =
+        (Set<JobContext>) ReflectionTestUtils.getField(jobService, "runningContexts");
+    running.add(failing);
+    running.add(healthy);
+
+    // Act
+    jobService.flushBufferedLogs();
+    jobService.flushBufferedLogs();
+
+    // Assert
+    verify(failingWriter, times(1)).write(anyList());
+    verify(jobLogWriter, times(1)).write(anyList());
+  }
+
+  @Test
+  void test_runJobAsync_records_final_status_when_last_flush_fails() {
+    // Arrange
+    Job job = Job.builder().id(1L).status("running").build();
+    doThrow(new RuntimeException("insert failed")).when(jobLogWriter).write(anyList());
+
+    // Act
+    jobService.runJobAsync(job, ctx -> ctx.log("one"));
+
+    // Assert
+    assertEquals("complete", job.getStatus());
+    verify(jobRepository, times(1)).finishAttempt(1L, null, 0, "complete", job.getFinishedAt());
+    verify(jobMetrics, times(1)).recordFinished(job);
   }
 
   @Test
@@ -55,6 +196,87 @@ public class JobLogsServiceTests {
     assertEquals("", result);
   }
 
+  @Test
+  void test_getJobLogs_reassembles_log_lines_in_order() {
+    // Arrange
+    Long jobId = 4L;
+    Job job = Job.builder().id(jobId).build();
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLinesRepository.findByJobIdOrderBySeqAsc(jobId))
+        .thenReturn(
+            List.of(
+                JobLogLine.builder().jobId(jobId).seq(0).message("line one").build(),
+                JobLogLine.builder().jobId(jobId).seq(1).message("line two").build()));
+
+    // Act
+    String result = jobService.getJobLogs(jobId);
+
+    // Assert
+    assertEquals("line one\nline two", result);
+  }
+
+  @Test
+  void test_getJobLogs_legacy_log_comes_before_log_lines() {
+    // Arrange
+    Long jobId = 5L;
+    Job job = Job.builder().id(jobId).log("old output").build();
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLinesRepository.findByJobIdOrderBySeqAsc(jobId))
+        .thenReturn(List.of(JobLogLine.builder().jobId(jobId).seq(0).message("new").build()));
+
+    // Act
+    String result = jobService.getJobLogs(jobId);
+
+    // Assert
+    assertEquals("old output\nnew", result);
+  }
+
+  @Test
+  void test_getJobLogTail_returns_new_lines_and_next_cursor() {
+    // Arrange
+    Long jobId = 6L;
+    when(jobRepository.findStatusById(jobId)).thenReturn(Optional.of("running"));
+    when(jobLogLinesRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(jobId, 2))
+        .thenReturn(
+            List.of(
+                JobLogLine.builder().jobId(jobId).seq(2).message("third").build(),
+                JobLogLine.builder().jobId(jobId).seq(3).message("fourth").build()));
+
+    // Act
+    JobLogTail result = jobService.getJobLogTail(jobId, 2);
+
+    // Assert
+    assertEquals(List.of("third", "fourth"), result.getLines());
+    assertEquals(4, result.getNextLine());
+    assertEquals("running", result.getStatus());
+  }
+
+  @Test
+  void test_getJobLogTail_with_no_new_lines_keeps_cursor() {
+    // Arrange
+    Long jobId = 7L;
+    when(jobRepository.findStatusById(jobId)).thenReturn(Optional.of("complete"));
+    when(jobLogLinesRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(jobId, 10))
+        .thenReturn(List.of());
+
+    // Act
+    JobLogTail result = jobService.getJobLogTail(jobId, 10);
+
+    // Assert
+    assertEquals(List.of(), result.getLines());
+    assertEquals(10, result.getNextLine());
+    assertEquals("complete", result.getStatus());
+  }
+
+  @Test
+  void test_getJobLogTail_job_not_found() {
+    // Arrange
+    when(jobRepository.findStatusById(8L)).thenReturn(Optional.empty());
+
+    // Act & Assert
+    assertThrows(IllegalArgumentException.class, () -> jobService.getJobLogTail(8L, 0));
+  }
+
   @Test
   void test_getJobLogs_job_not_found() {
     // Arrange
@@ -0,0 +1,83 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JsonStreamServiceTests {
+
+  private final JsonStreamService jsonStreamService = new JsonStreamService();
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+  @SuppressWarnings("unchecked")
+  private final ObjectProvider<EntityManager> entityManagers = mock(ObjectProvider.class);
+
+  @BeforeEach
+  public void setup() {
+    ReflectionTestUtils.setField(jsonStreamService, "mapper", new ObjectMapper());
+    ReflectionTestUtils.setField(jsonStreamService, "entityManagers", entityManagers);
+  }
+
+  @Test
+  public void writeKeysetPage_writes_page_size_rows_and_next_key() throws Exception {
+    // arrange
+    AtomicBoolean closed = new AtomicBoolean();
+
+    // act
+    jsonStreamService.writeKeysetPage(
+        out, 2, () -> Stream.of(3L, 5L, 8L).onClose(() -> closed.set(true)), Long::longValue);
+
+    // assert
+    assertEquals("{\"items\":[3,5],\"next\":5}", out.toString(StandardCharsets.UTF_8));
+    assertTrue(closed.get());
+  }
+
+  @Test
+  public void writeKeysetPage_writes_null_next_on_last_page() throws Exception {
+    // act
+    jsonStreamService.writeKeysetPage(out, 2, () -> Stream.of(3L, 5L), Long::longValue);
+
+    // assert
+    assertEquals("{\"items\":[3,5],\"next\":null}", out.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void writeArray_writes_every_row_and_detaches_it() throws Exception {
+    // arrange
+    EntityManager entityManager = mock(EntityManager.class);
+    when(entityManagers.getIfAvailable()).thenReturn(entityManager);
+    AtomicBoolean closed = new AtomicBoolean();
+
+    // act
+    jsonStreamService.writeArray(out, () -> Stream.of(3L, 5L).onClose(() -> closed.set(true)));
+
+    // assert
+    assertEquals("[3,5]", out.toString(StandardCharsets.UTF_8));
+    verify(entityManager).detach(3L);
+    verify(entityManager).detach(5L);
+    assertTrue(closed.get());
+  }
+
+  @Test
+  public void writeArray_writes_rows_without_an_entity_manager() throws Exception {
+    // act
+    jsonStreamService.writeArray(out, () -> Stream.of(3L, 5L));
+
+    // assert
+    assertEquals("[3,5]", out.toString(StandardCharsets.UTF_8));
+  }
+}
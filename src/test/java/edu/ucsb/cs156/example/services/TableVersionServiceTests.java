@@ -0,0 +1,125 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class TableVersionServiceTests {
+
+  @Mock private TableVersionRepository tableVersionRepository;
+
+  @InjectMocks private TableVersionService tableVersionService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  public void tables_are_kept_under_their_entity_names() {
+    assertEquals("articles", TableVersionService.tableName(Articles.class));
+    assertEquals("ucsborganization", TableVersionService.tableName(UCSBOrganization.class));
+  }
+
+  @Test
+  public void current_returns_the_stored_version() {
+    // arrange
+    ZonedDateTime updatedAt = ZonedDateTime.parse("2025-10-01T12:00:00Z");
+    TableVersion stored =
+        TableVersion.builder().tableName("articles").version(5).updatedAt(updatedAt).build();
+    when(tableVersionRepository.findById("articles")).thenReturn(Optional.of(stored));
+
+    // act
+    TableVersion current = tableVersionService.current(Articles.class);
+
+    // assert
+    assertEquals(stored, current);
+  }
+
+  @Test
+  public void current_is_zero_for_a_table_never_written() {
+    // arrange
+    when(tableVersionRepository.findById("articles")).thenReturn(Optional.empty());
+
+    // act
+    TableVersion current = tableVersionService.current(Articles.class);
+
+    // assert
+    assertEquals("articles", current.getTableName());
+    assertEquals(0, current.getVersion());
+    assertNull(current.getUpdatedAt());
+  }
+
+  @Test
+  public void bump_increments_the_version_in_place() {
+    // arrange
+    when(tableVersionRepository.bump(eq("articles"), any())).thenReturn(1);
+
+    // act
+    tableVersionService.bump(Articles.class);
+
+    // assert
+    verify(tableVersionRepository, times(1)).bump(eq("articles"), any());
+    verify(tableVersionRepository, never()).save(any());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void write_makes_the_write_then_bumps_the_version() {
+    // arrange
+    Supplier<String> write = mock(Supplier.class);
+    when(write.get()).thenReturn("written");
+    when(tableVersionRepository.bump(eq("articles"), any())).thenReturn(1);
+
+    // act
+    String result = tableVersionService.write(Articles.class, write);
+
+    // assert
+    assertEquals("written", result);
+    InOrder inOrder = inOrder(write, tableVersionRepository);
+    inOrder.verify(write).get();
+    inOrder.verify(tableVersionRepository).bump(eq("articles"), any());
+  }
+
+  @Test
+  public void bump_starts_a_table_with_no_version_row_at_one() {
+    // arrange
+    when(tableVersionRepository.bump(eq("articles"), any())).thenReturn(0);
+
+    // act
+    tableVersionService.bump(Articles.class);
+
+    // assert
+    ArgumentCaptor<ZonedDateTime> now = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(tableVersionRepository, times(1)).bump(eq("articles"), now.capture());
+    verify(tableVersionRepository, times(1))
+        .save(
+            TableVersion.builder()
+                .tableName("articles")
+                .version(1)
+                .updatedAt(now.getValue())
+                .build());
+  }
+}
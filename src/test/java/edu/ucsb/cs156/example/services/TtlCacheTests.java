@@ -0,0 +1,121 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+public class TtlCacheTests {
+
+  /** A clock that only moves when told to. */
+  private static class MutableClock extends Clock {
+    private Instant now = Instant.parse("2025-10-01T12:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+  }
+
+  private final MutableClock clock = new MutableClock();
+
+  private final TtlCache<String, String> cache = new TtlCache<>(Duration.ofSeconds(60), 3, clock);
+
+  @Test
+  public void get_returns_value_until_it_expires() {
+    // arrange
+    cache.put("a", "1");
+
+    // act and assert
+    clock.advance(Duration.ofSeconds(59));
+    assertEquals(Optional.of("1"), cache.get("a"));
+    clock.advance(Duration.ofSeconds(1));
+    assertEquals(Optional.empty(), cache.get("a"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void get_returns_empty_for_missing_key() {
+    assertEquals(Optional.empty(), cache.get("missing"));
+  }
+
+  @Test
+  public void put_replaces_value_and_restarts_ttl() {
+    // arrange
+    cache.put("a", "1");
+    clock.advance(Duration.ofSeconds(30));
+
+    // act
+    cache.put("a", "2");
+    clock.advance(Duration.ofSeconds(45));
+
+    // assert
+    assertEquals(Optional.of("2"), cache.get("a"));
+  }
+
+  @Test
+  public void put_sweeps_expired_entries_when_full() {
+    // arrange
+    cache.put("a", "1");
+    cache.put("b", "2");
+    clock.advance(Duration.ofSeconds(30));
+    cache.put("c", "3");
+    clock.advance(Duration.ofSeconds(30));
+
+    // act
+    cache.put("d", "4");
+
+    // assert
+    assertEquals(2, cache.size());
+    assertEquals(Optional.of("3"), cache.get("c"));
+    assertEquals(Optional.of("4"), cache.get("d"));
+  }
+
+  @Test
+  public void put_empties_cache_when_full_of_live_entries() {
+    // arrange
+    cache.put("a", "1");
+    cache.put("b", "2");
+    cache.put("c", "3");
+
+    // act
+    cache.put("d", "4");
+
+    // assert
+    assertEquals(1, cache.size());
+    assertEquals(Optional.of("4"), cache.get("d"));
+  }
+
+  @Test
+  public void evict_and_clear_remove_entries() {
+    // arrange
+    cache.put("a", "1");
+    cache.put("b", "2");
+
+    // act and assert
+    cache.evict("a");
+    assertEquals(Optional.empty(), cache.get("a"));
+    assertEquals(1, cache.size());
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+}
@@ -1,13 +1,27 @@
 package edu.ucsb.cs156.example.services.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 public class JobContextTests {
   @Test
-  public void when_jobs_repository_is_null_does_not_save() throws Exception {
+  public void when_log_writer_is_null_does_not_save() throws Exception {
 
     // arrange
 
@@ -18,6 +32,209 @@ public class JobContextTests {
     ctx.log("This is a log message");
 
     // assert
-    assertEquals("This is a log message", job1.getLog());
+    assertNull(job1.getLog());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void unbuffered_log_writes_one_row_per_line_with_increasing_seq() throws Exception {
+
+    // arrange
+
+    JobLogWriter jobLogWriter = mock(JobLogWriter.class);
+    Job job1 = Job.builder().id(17L).build();
+    JobContext ctx = new JobContext(jobLogWriter, job1);
+
+    // act
+    ctx.log("first line");
+    ctx.log("second line");
+
+    // assert
+    ArgumentCaptor<List<JobLogLine>> captor = ArgumentCaptor.forClass(List.class);
+    verify(jobLogWriter, times(2)).write(captor.capture());
+    List<List<JobLogLine>> batches = captor.getAllValues();
+
+    assertEquals(1, batches.get(0).size());
+    assertEquals(17L, batches.get(0).get(0).getJobId());
+    assertEquals(0, batches.get(0).get(0).getSeq());
+    assertEquals("first line", batches.get(0).get(0).getMessage());
+    assertEquals(1, batches.get(1).size());
+    assertEquals(17L, batches.get(1).get(0).getJobId());
+    assertEquals(1, batches.get(1).get(0).getSeq());
+    assertEquals("second line", batches.get(1).get(0).getMessage());
+    assertNull(job1.getLog());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void buffered_log_writes_when_batch_is_full() throws Exception {
+
+    // arrange
+
+    JobLogWriter jobLogWriter = mock(JobLogWriter.class);
+    Job job1 = Job.builder().id(3L).build();
+    JobContext ctx = new JobContext(jobLogWriter, job1, 3, 60_000);
+
+    // act
+    ctx.log("a");
+    ctx.log("b");
+
+    // assert
+    verify(jobLogWriter, never()).write(anyList());
+
+    ctx.log("c");
+    ctx.log("d");
+
+    ArgumentCaptor<List<JobLogLine>> captor = ArgumentCaptor.forClass(List.class);
+    verify(jobLogWriter, times(1)).write(captor.capture());
+    assertEquals(
+        List.of("a", "b", "c"), captor.getValue().stream().map(JobLogLine::getMessage).toList());
+
+    ctx.flush();
+
+    verify(jobLogWriter, times(2)).write(captor.capture());
+    assertEquals(1, captor.getValue().size());
+    assertEquals("d", captor.getValue().get(0).getMessage());
+    assertEquals(3, captor.getValue().get(0).getSeq());
+  }
+
+  @Test
+  public void flush_with_empty_buffer_does_not_write() throws Exception {
+
+    // arrange
+
+    JobLogWriter jobLogWriter = mock(JobLogWriter.class);
+    JobContext ctx = new JobContext(jobLogWriter, Job.builder().build(), 10, 0);
+
+    // act
+    ctx.flush();
+
+    // assert
+    verify(jobLogWriter, never()).write(anyList());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void flush_drops_lines_that_could_not_be_written() throws Exception {
+
+    // arrange
+
+    JobLogWriter jobLogWriter = mock(JobLogWriter.class);
+    doThrow(new RuntimeException("insert failed")).doNothing().when(jobLogWriter).write(anyList());
+    JobContext ctx = new JobContext(jobLogWriter, Job.builder().id(3L).build(), 10, 0);
+    ctx.log("lost");
+
+    // act
+    assertThrows(RuntimeException.class, ctx::flush);
+    ctx.log("kept");
+    ctx.flush();
+
+    // assert
+    ArgumentCaptor<List<JobLogLine>> captor = ArgumentCaptor.forClass(List.class);
+    verify(jobLogWriter, times(2)).write(captor.capture());
+    assertEquals(List.of("kept"), captor.getValue().stream().map(JobLogLine::getMessage).toList());
+  }
+
+  @Test
+  public void flushIfStale_writes_only_after_interval_has_passed() throws Exception {
+
+    // arrange
+
+    JobLogWriter jobLogWriter = mock(JobLogWriter.class);
+    JobContext ctx = new JobContext(jobLogWriter, Job.builder().build(), 10, 1000);
+    long start = System.currentTimeMillis();
+    ctx.log("a");
+
+    // act
+    ctx.flushIfStale(start - 1);
+
+    // assert
+    verify(jobLogWriter, never()).write(anyList());
+
+    // act
+    ctx.flushIfStale(System.currentTimeMillis() + 1000);
+
+    // assert
+    verify(jobLogWriter, times(1)).write(anyList());
+  }
+
+  @Test
+  public void cancel_interrupts_running_job_and_first_status_wins() {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().id(3L).build());
+    ctx.start(0);
+
+    // act
+    ctx.cancel("timed_out");
+    ctx.cancel("cancelled");
+
+    // assert
+    assertEquals(3L, ctx.getJobId());
+    assertTrue(ctx.isCancelled());
+    assertEquals("timed_out", ctx.getCancelledStatus());
+    assertTrue(Thread.currentThread().isInterrupted());
+    CancellationException e = assertThrows(CancellationException.class, ctx::checkCancelled);
+    assertEquals("Job 3 was timed_out", e.getMessage());
+
+    // act
+    ctx.finish();
+
+    // assert
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  public void cancel_after_finish_does_not_interrupt() {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().build());
+    ctx.start(0);
+    ctx.finish();
+
+    // act
+    ctx.cancel("cancelled");
+
+    // assert
+    assertTrue(ctx.isCancelled());
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  public void job_that_is_not_cancelled_can_continue() {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().build());
+
+    // act
+    ctx.checkCancelled();
+
+    // assert
+    assertFalse(ctx.isCancelled());
+    assertNull(ctx.getCancelledStatus());
+  }
+
+  @Test
+  public void deadline_is_only_set_when_there_is_a_timeout() {
+
+    // arrange
+
+    JobContext noLimit = new JobContext(null, Job.builder().build());
+    JobContext limited = new JobContext(null, Job.builder().build());
+    long before = System.currentTimeMillis();
+
+    // act
+    noLimit.start(0);
+    limited.start(1000);
+
+    // assert
+    assertFalse(noLimit.isPastDeadline(Long.MAX_VALUE - 1));
+    assertFalse(limited.isPastDeadline(before + 999));
+    assertTrue(limited.isPastDeadline(System.currentTimeMillis() + 1000));
+    noLimit.finish();
+    limited.finish();
   }
 }
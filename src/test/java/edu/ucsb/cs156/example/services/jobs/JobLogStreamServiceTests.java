@@ -0,0 +1,164 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.models.JobLogTail;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+public class JobLogStreamServiceTests {
+
+  @Mock private JobService jobService;
+
+  @InjectMocks private JobLogStreamService jobLogStreamService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  private static JobLogTail tail(List<String> lines, int nextLine, String status) {
+    return JobLogTail.builder().lines(lines).nextLine(nextLine).status(status).build();
+  }
+
+  private static String render(SseEventBuilder event) {
+    return event.build().stream().map(d -> d.getData().toString()).collect(Collectors.joining());
+  }
+
+  @Test
+  public void subscribe_keeps_stream_open_until_job_finishes() {
+    // arrange
+    when(jobService.getJobLogTail(1L, 0)).thenReturn(tail(List.of("a", "b"), 2, "running"));
+    when(jobService.getJobLogTail(1L, 2)).thenReturn(tail(List.of(), 2, "complete"));
+
+    // act
+    jobLogStreamService.subscribe(1L, 0);
+
+    // assert
+    assertEquals(1, jobLogStreamService.getSubscriptionCount());
+
+    // act
+    jobLogStreamService.pushNewLines();
+
+    // assert
+    verify(jobService, times(1)).getJobLogTail(1L, 2);
+    assertEquals(0, jobLogStreamService.getSubscriptionCount());
+  }
+
+  @Test
+  public void push_sends_each_new_line_with_its_line_number() throws Exception {
+    // arrange
+    SseEmitter emitter = mock(SseEmitter.class);
+    JobLogStreamService.Subscription subscription =
+        jobLogStreamService.new Subscription(1L, emitter, 5);
+    when(jobService.getJobLogTail(1L, 5)).thenReturn(tail(List.of("x", "y"), 7, "running"));
+    when(jobService.getJobLogTail(1L, 7)).thenReturn(tail(List.of("z"), 8, "running"));
+
+    // act
+    jobLogStreamService.push(subscription);
+    jobLogStreamService.push(subscription);
+
+    // assert
+    ArgumentCaptor<SseEventBuilder> captor = ArgumentCaptor.forClass(SseEventBuilder.class);
+    verify(emitter, times(3)).send(captor.capture());
+    assertEquals("id:5\nevent:log\ndata:x\n\n", render(captor.getAllValues().get(0)));
+    assertEquals("id:6\nevent:log\ndata:y\n\n", render(captor.getAllValues().get(1)));
+    assertEquals("id:7\nevent:log\ndata:z\n\n", render(captor.getAllValues().get(2)));
+    verify(emitter, never()).complete();
+  }
+
+  @Test
+  public void push_sends_status_and_completes_when_job_is_done() throws Exception {
+    // arrange
+    SseEmitter emitter = mock(SseEmitter.class);
+    JobLogStreamService.Subscription subscription =
+        jobLogStreamService.new Subscription(1L, emitter, 0);
+    when(jobService.getJobLogTail(1L, 0)).thenReturn(tail(List.of(), 0, "error"));
+
+    // act
+    jobLogStreamService.push(subscription);
+
+    // assert
+    ArgumentCaptor<SseEventBuilder> captor = ArgumentCaptor.forClass(SseEventBuilder.class);
+    verify(emitter, times(1)).send(captor.capture());
+    assertEquals("event:status\ndata:error\n\n", render(captor.getValue()));
+    verify(emitter, times(1)).complete();
+  }
+
+  @Test
+  public void push_keeps_stream_open_while_job_is_pending() throws Exception {
+    // arrange
+    SseEmitter emitter = mock(SseEmitter.class);
+    JobLogStreamService.Subscription subscription =
+        jobLogStreamService.new Subscription(1L, emitter, 0);
+    when(jobService.getJobLogTail(1L, 0)).thenReturn(tail(List.of(), 0, "pending"));
+
+    // act
+    jobLogStreamService.push(subscription);
+
+    // assert
+    verify(emitter, never()).send(any(SseEventBuilder.class));
+    verify(emitter, never()).complete();
+  }
+
+  @Test
+  public void push_keeps_stream_open_while_job_is_cancelling() throws Exception {
+    // arrange
+    SseEmitter emitter = mock(SseEmitter.class);
+    JobLogStreamService.Subscription subscription =
+        jobLogStreamService.new Subscription(1L, emitter, 0);
+    when(jobService.getJobLogTail(1L, 0)).thenReturn(tail(List.of(), 0, "cancelling"));
+
+    // act
+    jobLogStreamService.push(subscription);
+
+    // assert
+    verify(emitter, never()).send(any(SseEventBuilder.class));
+    verify(emitter, never()).complete();
+  }
+
+  @Test
+  public void push_closes_stream_when_client_has_gone_away() throws Exception {
+    // arrange
+    SseEmitter emitter = mock(SseEmitter.class);
+    when(jobService.getJobLogTail(1L, 0)).thenReturn(tail(List.of("a"), 1, "running"));
+    IOException broken = new IOException("Broken pipe");
+    doThrow(broken).when(emitter).send(any(SseEventBuilder.class));
+    JobLogStreamService.Subscription subscription =
+        jobLogStreamService.new Subscription(1L, emitter, 0);
+
+    // act
+    jobLogStreamService.push(subscription);
+
+    // assert
+    verify(emitter, times(1)).completeWithError(broken);
+  }
+
+  @Test
+  public void subscribe_to_missing_job_closes_stream() {
+    // arrange
+    when(jobService.getJobLogTail(9L, 0)).thenThrow(new IllegalArgumentException("Job not found"));
+
+    // act
+    jobLogStreamService.subscribe(9L, 0);
+
+    // assert
+    assertEquals(0, jobLogStreamService.getSubscriptionCount());
+  }
+}
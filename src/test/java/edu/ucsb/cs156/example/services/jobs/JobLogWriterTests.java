@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.time.ZonedDateTime;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobLogWriterTests {
+
+  private Connection connection;
+  private PreparedStatement preparedStatement;
+  private JobLogWriter jobLogWriter;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    DataSource dataSource = mock(DataSource.class);
+    connection = mock(Connection.class);
+    preparedStatement = mock(PreparedStatement.class);
+    DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+
+    when(dataSource.getConnection()).thenReturn(connection);
+    when(connection.getMetaData()).thenReturn(metaData);
+    when(metaData.supportsBatchUpdates()).thenReturn(true);
+    when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+    when(preparedStatement.getConnection()).thenReturn(connection);
+    when(preparedStatement.executeBatch()).thenReturn(new int[0]);
+
+    jobLogWriter = new JobLogWriter();
+    ReflectionTestUtils.setField(jobLogWriter, "jdbcTemplate", new JdbcTemplate(dataSource));
+  }
+
+  @Test
+  public void write_sends_all_lines_as_one_batch() throws Exception {
+    // arrange
+    ZonedDateTime now = ZonedDateTime.now();
+    List<JobLogLine> lines =
+        List.of(
+            JobLogLine.builder().jobId(7L).seq(0).createdAt(now).message("one").build(),
+            JobLogLine.builder().jobId(7L).seq(1).createdAt(now).message("two").build());
+
+    // act
+    jobLogWriter.write(lines);
+
+    // assert
+    verify(connection, times(1)).prepareStatement(eq(JobLogWriter.INSERT_SQL));
+    verify(preparedStatement, times(2)).addBatch();
+    verify(preparedStatement, times(1)).executeBatch();
+    verify(preparedStatement).setString(4, "one");
+    verify(preparedStatement).setString(4, "two");
+    verify(preparedStatement, never()).executeUpdate();
+  }
+
+  @Test
+  public void job_logging_10k_lines_issues_one_batched_statement_per_500_lines() throws Exception {
+    // arrange
+    JobContext ctx = new JobContext(jobLogWriter, Job.builder().id(1L).build(), 500, 250);
+
+    // act
+    for (int i = 0; i < 10_000; i++) {
+      ctx.log("line " + i);
+    }
+    ctx.flush();
+
+    // assert
+    verify(connection, times(20)).prepareStatement(eq(JobLogWriter.INSERT_SQL));
+    verify(preparedStatement, times(20)).executeBatch();
+    verify(preparedStatement, times(10_000)).addBatch();
+    verify(preparedStatement, never()).executeUpdate();
+  }
+}
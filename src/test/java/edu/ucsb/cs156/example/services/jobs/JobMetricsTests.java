@@ -0,0 +1,104 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import edu.ucsb.cs156.example.entities.Job;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobMetricsTests {
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final JobMetrics jobMetrics = new JobMetrics();
+
+  private final ZonedDateTime created = ZonedDateTime.parse("2025-10-01T12:00:00Z");
+
+  @BeforeEach
+  public void setup() {
+    ReflectionTestUtils.setField(jobMetrics, "meterRegistry", meterRegistry);
+  }
+
+  @Test
+  public void recordStarted_times_wait_by_job_type() {
+    // arrange
+    Job job =
+        Job.builder()
+            .jobType("TestJob")
+            .createdAt(created)
+            .startedAt(created.plusSeconds(3))
+            .build();
+
+    // act
+    jobMetrics.recordStarted(job);
+
+    // assert
+    Timer wait = meterRegistry.get("jobs.queue.wait").tag("type", "TestJob").timer();
+    assertEquals(1L, wait.count());
+    assertEquals(3000.0, wait.totalTime(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void recordStarted_skips_jobs_without_timestamps() {
+    // act
+    jobMetrics.recordStarted(Job.builder().startedAt(created).build());
+    jobMetrics.recordStarted(Job.builder().createdAt(created).build());
+
+    // assert
+    assertNull(meterRegistry.find("jobs.queue.wait").timer());
+  }
+
+  @Test
+  public void recordFinished_counts_and_times_by_type_and_outcome() {
+    // arrange
+    Job job =
+        Job.builder()
+            .status("error")
+            .startedAt(created)
+            .finishedAt(created.plusMinutes(2))
+            .build();
+
+    // act
+    jobMetrics.recordFinished(job);
+
+    // assert
+    assertEquals(
+        1.0,
+        meterRegistry
+            .get("jobs.finished")
+            .tag("type", JobMetrics.OTHER_TYPE)
+            .tag("outcome", "error")
+            .counter()
+            .count());
+    Timer run = meterRegistry.get("jobs.run").tag("type", "other").tag("outcome", "error").timer();
+    assertEquals(1L, run.count());
+    assertEquals(120.0, run.totalTime(TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void recordFinished_only_counts_jobs_that_never_ran() {
+    // act
+    jobMetrics.recordFinished(
+        Job.builder().jobType("TestJob").status("rejected").finishedAt(created).build());
+    jobMetrics.recordFinished(
+        Job.builder().jobType("TestJob").status("rejected").startedAt(created).build());
+
+    // assert
+    assertEquals(
+        2.0,
+        meterRegistry
+            .get("jobs.finished")
+            .tag("type", "TestJob")
+            .tag("outcome", "rejected")
+            .counter()
+            .count());
+    assertNull(meterRegistry.find("jobs.run").timer());
+  }
+}
@@ -0,0 +1,200 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobExecutorStatus;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class JobQueueWorkerTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobService jobService;
+
+  @Mock private JobRegistry jobRegistry;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  @InjectMocks private JobQueueWorker jobQueueWorker;
+
+  private final JobExecutorStatus idle =
+      JobExecutorStatus.builder().maxConcurrency(2).queueCapacity(10).build();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobQueueWorker, "queueEnabled", true);
+    ReflectionTestUtils.setField(jobQueueWorker, "leaseMs", 60000L);
+    ReflectionTestUtils.setField(jobQueueWorker, "maxAttempts", 3);
+    when(transactionTemplate.execute(any()))
+        .thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+  }
+
+  private static Job pendingJob(long id) {
+    return Job.builder().id(id).status("pending").jobType("TestJob").params("{}").build();
+  }
+
+  @Test
+  public void does_nothing_when_queue_is_disabled() {
+    // arrange
+    ReflectionTestUtils.setField(jobQueueWorker, "queueEnabled", false);
+
+    // act
+    jobQueueWorker.claimPendingJobs();
+    jobQueueWorker.renewLeases();
+    jobQueueWorker.reclaimExpiredLeases();
+
+    // assert
+    verifyNoInteractions(jobsRepository, jobService, jobRegistry, transactionTemplate);
+  }
+
+  @Test
+  public void claims_and_starts_pending_jobs_until_queue_is_empty() throws Exception {
+    // arrange
+    Job job1 = pendingJob(1L);
+    Job job2 = pendingJob(2L);
+    TestJob testJob = TestJob.builder().build();
+    when(jobService.getExecutorStatus()).thenReturn(idle);
+    when(jobsRepository.findNextPendingForUpdate())
+        .thenReturn(Optional.of(job1))
+        .thenReturn(Optional.of(job2))
+        .thenReturn(Optional.empty());
+    when(jobRegistry.create("TestJob", "{}")).thenReturn(testJob);
+
+    // act
+    jobQueueWorker.claimPendingJobs();
+
+    // assert
+    verify(jobService, times(1)).runJobAsync(job1, testJob);
+    verify(jobService, times(1)).runJobAsync(job2, testJob);
+    verify(jobsRepository, times(3)).findNextPendingForUpdate();
+    assertEquals("running", job1.getStatus());
+    assertEquals(jobQueueWorker.getNodeId(), job1.getLeaseOwner());
+    assertTrue(job1.getLeaseExpiresAt().isAfter(ZonedDateTime.now().plusSeconds(50)));
+    assertEquals(1, job1.getAttempts());
+    verify(jobsRepository, times(1)).save(job1);
+  }
+
+  @Test
+  public void stops_claiming_when_executor_is_full() {
+    // arrange
+    when(jobService.getExecutorStatus())
+        .thenReturn(JobExecutorStatus.builder().maxConcurrency(2).active(1).queued(1).build());
+
+    // act
+    jobQueueWorker.claimPendingJobs();
+
+    // assert
+    verify(jobsRepository, never()).findNextPendingForUpdate();
+  }
+
+  @Test
+  public void hands_job_back_when_executor_rejects_it() throws Exception {
+    // arrange
+    Job job = pendingJob(1L);
+    TestJob testJob = TestJob.builder().build();
+    when(jobService.getExecutorStatus())
+        .thenReturn(idle)
+        .thenReturn(JobExecutorStatus.builder().maxConcurrency(2).active(2).build());
+    when(jobsRepository.findNextPendingForUpdate()).thenReturn(Optional.of(job));
+    when(jobRegistry.create("TestJob", "{}")).thenReturn(testJob);
+    doThrow(new TaskRejectedException("full")).when(jobService).runJobAsync(job, testJob);
+
+    // act
+    jobQueueWorker.claimPendingJobs();
+
+    // assert
+    assertEquals("pending", job.getStatus());
+    assertNull(job.getLeaseOwner());
+    assertNull(job.getLeaseExpiresAt());
+    assertEquals(0, job.getAttempts());
+    verify(jobsRepository, times(2)).save(job);
+  }
+
+  @Test
+  public void job_that_cannot_be_built_is_marked_as_error() throws Exception {
+    // arrange
+    Job job = pendingJob(1L);
+    when(jobService.getExecutorStatus()).thenReturn(idle);
+    when(jobsRepository.findNextPendingForUpdate())
+        .thenReturn(Optional.of(job))
+        .thenReturn(Optional.empty());
+    when(jobRegistry.create("TestJob", "{}"))
+        .thenThrow(new IllegalArgumentException("Unknown job type: TestJob"));
+
+    // act
+    jobQueueWorker.claimPendingJobs();
+
+    // assert
+    verify(jobService, never()).runJobAsync(any(), any());
+    ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+    verify(jobService, times(1)).finishWithoutRunning(eq(job), eq("error"), message.capture());
+    assertEquals(
+        "Could not start job of type TestJob: java.lang.IllegalArgumentException:"
+            + " Unknown job type: TestJob",
+        message.getValue());
+  }
+
+  @Test
+  public void renewLeases_extends_leases_owned_by_this_node() {
+    // act
+    jobQueueWorker.renewLeases();
+
+    // assert
+    ArgumentCaptor<ZonedDateTime> expiresAt = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository, times(1))
+        .renewLeases(eq(jobQueueWorker.getNodeId()), expiresAt.capture());
+    assertTrue(expiresAt.getValue().isAfter(ZonedDateTime.now().plusSeconds(50)));
+  }
+
+  @Test
+  public void reclaimExpiredLeases_requeues_and_fails_expired_jobs() {
+    // arrange
+    when(jobsRepository.requeueExpiredLeases(any(ZonedDateTime.class), eq(3))).thenReturn(2);
+    when(jobsRepository.finishExpiredLeases(any(ZonedDateTime.class), eq(3))).thenReturn(1);
+
+    // act
+    jobQueueWorker.reclaimExpiredLeases();
+
+    // assert
+    verify(jobsRepository, times(1)).requeueExpiredLeases(any(ZonedDateTime.class), eq(3));
+    verify(jobsRepository, times(1)).finishExpiredLeases(any(ZonedDateTime.class), eq(3));
+  }
+
+  @Test
+  public void reclaimExpiredLeases_with_nothing_expired() {
+    // act
+    jobQueueWorker.reclaimExpiredLeases();
+
+    // assert
+    verify(jobsRepository, times(1)).requeueExpiredLeases(any(ZonedDateTime.class), anyInt());
+    verify(jobsRepository, times(1)).finishExpiredLeases(any(ZonedDateTime.class), anyInt());
+    verify(jobsRepository, never()).renewLeases(anyString(), any());
+  }
+}
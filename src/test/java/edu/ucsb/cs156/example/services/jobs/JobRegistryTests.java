@@ -0,0 +1,71 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobRegistryTests {
+
+  private JobRegistry jobRegistry;
+
+  @BeforeEach
+  public void setup() {
+    jobRegistry = new JobRegistry();
+    ReflectionTestUtils.setField(jobRegistry, "mapper", new ObjectMapper());
+    jobRegistry.registerJobTypes();
+  }
+
+  @Test
+  public void test_job_is_registered_under_its_class_name() {
+    TestJob testJob = TestJob.builder().fail(true).sleepMs(10).build();
+    assertEquals(Optional.of("TestJob"), jobRegistry.typeOf(testJob));
+  }
+
+  @Test
+  public void unregistered_job_has_no_type() {
+    JobContextConsumer lambda = ctx -> {};
+    assertTrue(jobRegistry.typeOf(lambda).isEmpty());
+  }
+
+  @Test
+  public void params_round_trip_through_the_factory() throws Exception {
+    // arrange
+    TestJob original = TestJob.builder().fail(true).sleepMs(1234).build();
+
+    // act
+    String params = jobRegistry.paramsOf(original);
+    JobContextConsumer rebuilt = jobRegistry.create("TestJob", params);
+
+    // assert
+    assertEquals("{\"fail\":true,\"sleepMs\":1234}", params);
+    TestJob testJob = assertInstanceOf(TestJob.class, rebuilt);
+    assertEquals(true, testJob.getFail());
+    assertEquals(1234, testJob.getSleepMs());
+  }
+
+  @Test
+  public void custom_factory_is_used_for_its_type() throws Exception {
+    // arrange
+    TestJob fixed = TestJob.builder().build();
+    jobRegistry.register("Fixed", TestJob.class, params -> fixed);
+
+    // act & assert
+    assertSame(fixed, jobRegistry.create("Fixed", "{}"));
+  }
+
+  @Test
+  public void unknown_type_cannot_be_created() {
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> jobRegistry.create("Nope", "{}"));
+    assertEquals("Unknown job type: Nope", e.getMessage());
+  }
+}
@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobRetentionServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @InjectMocks private JobRetentionService jobRetentionService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobRetentionService, "maxAgeDays", 30);
+    ReflectionTestUtils.setField(jobRetentionService, "maxRows", 10000);
+    ReflectionTestUtils.setField(jobRetentionService, "batchSize", 100);
+  }
+
+  @Test
+  public void applyRetention_deletes_old_jobs_in_batches_until_none_are_left() {
+    // arrange
+    when(jobsRepository.deleteFinishedCreatedBefore(any(ZonedDateTime.class), eq(100)))
+        .thenReturn(100)
+        .thenReturn(100)
+        .thenReturn(7);
+    when(jobsRepository.findIdWithNewerCount(10000)).thenReturn(Optional.empty());
+
+    // act
+    long deleted = jobRetentionService.applyRetention();
+
+    // assert
+    assertEquals(207L, deleted);
+    ArgumentCaptor<ZonedDateTime> cutoff = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository, times(3)).deleteFinishedCreatedBefore(cutoff.capture(), eq(100));
+    assertTrue(cutoff.getValue().isBefore(ZonedDateTime.now().minusDays(29)));
+    assertTrue(cutoff.getValue().isAfter(ZonedDateTime.now().minusDays(31)));
+    verify(jobsRepository, never()).deleteFinishedUpTo(anyLong(), anyInt());
+  }
+
+  @Test
+  public void applyRetention_deletes_jobs_beyond_max_rows() {
+    // arrange
+    when(jobsRepository.deleteFinishedCreatedBefore(any(ZonedDateTime.class), eq(100)))
+        .thenReturn(0);
+    when(jobsRepository.findIdWithNewerCount(10000)).thenReturn(Optional.of(4242L));
+    when(jobsRepository.deleteFinishedUpTo(4242L, 100)).thenReturn(100).thenReturn(0);
+
+    // act
+    long deleted = jobRetentionService.applyRetention();
+
+    // assert
+    assertEquals(100L, deleted);
+    verify(jobsRepository, times(2)).deleteFinishedUpTo(4242L, 100);
+  }
+
+  @Test
+  public void applyRetention_limits_can_be_turned_off() {
+    // arrange
+    ReflectionTestUtils.setField(jobRetentionService, "maxAgeDays", 0);
+    ReflectionTestUtils.setField(jobRetentionService, "maxRows", 0);
+
+    // act
+    long deleted = jobRetentionService.applyRetention();
+
+    // assert
+    assertEquals(0L, deleted);
+    verify(jobsRepository, never()).deleteFinishedCreatedBefore(any(), anyInt());
+    verify(jobsRepository, never()).findIdWithNewerCount(anyInt());
+  }
+
+  @Test
+  public void deleteAllJobs_deletes_in_batches() {
+    // arrange
+    when(jobsRepository.deleteFinishedOldest(100)).thenReturn(100).thenReturn(100).thenReturn(0);
+
+    // act
+    long deleted = jobRetentionService.deleteAllJobs();
+
+    // assert
+    assertEquals(200L, deleted);
+    verify(jobsRepository, times(3)).deleteFinishedOldest(100);
+  }
+}
@@ -0,0 +1,435 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobExecutorStatus;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private JobLogWriter jobLogWriter;
+
+  @Mock private CurrentUserService currentUserService;
+
+  @Mock private JobRegistry jobRegistry;
+
+  @Mock private JobMetrics jobMetrics;
+
+  @Mock private JobService self;
+
+  @Mock private ThreadPoolTaskExecutor jobExecutor;
+
+  @InjectMocks private JobService jobService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobService, "environment", new MockEnvironment());
+  }
+
+  @Test
+  public void runAsJob_hands_job_to_executor() {
+    // arrange
+    JobContextConsumer jobFunction = ctx -> {};
+
+    // act
+    Job job = jobService.runAsJob(jobFunction);
+
+    // assert
+    assertEquals("running", job.getStatus());
+    verify(self, times(1)).runJobAsync(job, jobFunction);
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobLogWriter, never()).write(anyList());
+  }
+
+  @Test
+  public void runAsJob_marks_job_rejected_when_executor_is_full() {
+    // arrange
+    JobContextConsumer jobFunction = ctx -> {};
+    doThrow(new TaskRejectedException("queue full"))
+        .when(self)
+        .runJobAsync(any(Job.class), eq(jobFunction));
+
+    // act
+    Job job = jobService.runAsJob(jobFunction);
+
+    // assert
+    assertEquals("rejected", job.getStatus());
+    verify(jobLogWriter, times(1)).write(anyList());
+    verify(jobsRepository, times(2)).save(job);
+  }
+
+  @Test
+  public void runAsJob_queues_registered_job_when_queue_is_enabled() {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "queueEnabled", true);
+    TestJob testJob = TestJob.builder().sleepMs(10).build();
+    when(jobRegistry.typeOf(testJob)).thenReturn(Optional.of("TestJob"));
+    when(jobRegistry.paramsOf(testJob)).thenReturn("{\"fail\":false,\"sleepMs\":10}");
+
+    // act
+    Job job = jobService.runAsJob(testJob);
+
+    // assert
+    assertEquals("pending", job.getStatus());
+    assertEquals("TestJob", job.getJobType());
+    assertEquals("{\"fail\":false,\"sleepMs\":10}", job.getParams());
+    verify(jobsRepository, times(1)).save(job);
+    verify(self, never()).runJobAsync(any(), any());
+  }
+
+  @Test
+  public void runAsJob_runs_unregistered_job_locally_when_queue_is_enabled() {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "queueEnabled", true);
+    JobContextConsumer jobFunction = ctx -> {};
+    when(jobRegistry.typeOf(jobFunction)).thenReturn(Optional.empty());
+
+    // act
+    Job job = jobService.runAsJob(jobFunction);
+
+    // assert
+    assertEquals("running", job.getStatus());
+    verify(self, times(1)).runJobAsync(job, jobFunction);
+  }
+
+  @Test
+  public void runJobAsync_continues_numbering_of_existing_log() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "logBatchSize", 500);
+    Job job = Job.builder().id(7L).status("running").build();
+    when(jobLogLinesRepository.findFirstByJobIdOrderBySeqDesc(7L))
+        .thenReturn(Optional.of(JobLogLine.builder().jobId(7L).seq(4).build()));
+
+    // act
+    jobService.runJobAsync(job, ctx -> ctx.log("again"));
+
+    // assert
+    ArgumentCaptor<List<JobLogLine>> captor = ArgumentCaptor.captor();
+    verify(jobLogWriter, times(1)).write(captor.capture());
+    assertEquals(5, captor.getValue().get(0).getSeq());
+    assertEquals("complete", job.getStatus());
+  }
+
+  @Test
+  public void cancelJob_interrupts_job_running_on_this_node() {
+    // arrange
+    Job job = Job.builder().id(5L).status("running").build();
+    AtomicBoolean sawCancel = new AtomicBoolean();
+
+    // act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          sawCancel.set(jobService.cancelJob(5L) && ctx.isCancelled());
+          Thread.sleep(60000);
+        });
+
+    // assert
+    assertTrue(sawCancel.get());
+    assertEquals("cancelled", job.getStatus());
+    assertFalse(Thread.currentThread().isInterrupted());
+    verify(jobsRepository, never()).requestCancel(anyLong(), any());
+    ArgumentCaptor<List<JobLogLine>> captor = ArgumentCaptor.captor();
+    verify(jobLogWriter, times(1)).write(captor.capture());
+    assertEquals(
+        List.of("Job cancelled"), captor.getValue().stream().map(JobLogLine::getMessage).toList());
+  }
+
+  @Test
+  public void cancelJob_marks_job_that_is_not_running_here() {
+    // arrange
+    when(jobsRepository.requestCancel(eq(6L), any())).thenReturn(1);
+    when(jobsRepository.requestCancel(eq(7L), any())).thenReturn(0);
+
+    // act & assert
+    assertTrue(jobService.cancelJob(6L));
+    assertFalse(jobService.cancelJob(7L));
+  }
+
+  @Test
+  public void cancelJob_leaves_other_jobs_running_here_alone() {
+    // arrange
+    Job job = Job.builder().id(5L).status("running").build();
+    when(jobsRepository.requestCancel(eq(6L), any())).thenReturn(1);
+    AtomicBoolean cancelled = new AtomicBoolean();
+
+    // act
+    jobService.runJobAsync(job, ctx -> cancelled.set(jobService.cancelJob(6L)));
+
+    // assert
+    assertTrue(cancelled.get());
+    assertEquals("complete", job.getStatus());
+    verify(jobsRepository, times(1)).requestCancel(eq(6L), any());
+  }
+
+  @Test
+  public void job_that_finishes_after_being_cancelled_is_still_cancelled() {
+    // arrange
+    Job job = Job.builder().id(5L).status("running").build();
+
+    // act
+    jobService.runJobAsync(job, ctx -> jobService.cancelJob(5L));
+
+    // assert
+    assertEquals("cancelled", job.getStatus());
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  public void checkRunningJobs_does_nothing_when_no_jobs_are_running() {
+    // act
+    jobService.checkRunningJobs();
+
+    // assert
+    verify(jobsRepository, never()).findCancellingIds(any());
+  }
+
+  @Test
+  public void checkRunningJobs_gives_up_on_cancels_whose_node_is_gone() {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "cancelTimeoutMs", 60000L);
+    ArgumentCaptor<ZonedDateTime> cutoff = ArgumentCaptor.captor();
+    ArgumentCaptor<ZonedDateTime> now = ArgumentCaptor.captor();
+
+    // act
+    jobService.checkRunningJobs();
+
+    // assert
+    verify(jobsRepository, times(1)).finishAbandonedCancels(cutoff.capture(), now.capture());
+    assertEquals(Duration.ofMinutes(1), Duration.between(cutoff.getValue(), now.getValue()));
+  }
+
+  @Test
+  public void checkRunningJobs_stops_job_cancelled_on_another_node() {
+    // arrange
+    Job job = Job.builder().id(8L).status("running").build();
+    when(jobsRepository.findCancellingIds(List.of(8L))).thenReturn(List.of(8L));
+
+    // act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          jobService.checkRunningJobs();
+          Thread.sleep(60000);
+        });
+
+    // assert
+    assertEquals("cancelled", job.getStatus());
+  }
+
+  @Test
+  public void checkRunningJobs_stops_job_that_runs_past_its_timeout() {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "defaultTimeoutMs", 1L);
+    Job job = Job.builder().id(9L).status("running").build();
+    when(jobsRepository.findCancellingIds(List.of(9L))).thenReturn(List.of());
+
+    // act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          Thread.sleep(5);
+          jobService.checkRunningJobs();
+          Thread.sleep(60000);
+        });
+
+    // assert
+    assertEquals("timed_out", job.getStatus());
+    ArgumentCaptor<List<JobLogLine>> captor = ArgumentCaptor.captor();
+    verify(jobLogWriter, times(1)).write(captor.capture());
+    assertEquals(
+        List.of("Job timed out"), captor.getValue().stream().map(JobLogLine::getMessage).toList());
+  }
+
+  @Test
+  public void timeout_can_be_set_per_job_class() {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "defaultTimeoutMs", 1000L);
+    ReflectionTestUtils.setField(
+        jobService,
+        "environment",
+        new MockEnvironment().withProperty("app.jobs.timeout-ms.TestJob", "1234"));
+
+    // act & assert
+    assertEquals(1234L, jobService.timeoutMsFor(TestJob.builder().build()));
+    assertEquals(1000L, jobService.timeoutMsFor(ctx -> {}));
+  }
+
+  @Test
+  public void runJobAsync_records_start_and_finish() {
+    // arrange
+    Job job = Job.builder().id(3L).status("running").build();
+
+    // act
+    jobService.runJobAsync(job, ctx -> {});
+
+    // assert
+    assertNotNull(job.getStartedAt());
+    assertNotNull(job.getFinishedAt());
+    assertFalse(job.getFinishedAt().isBefore(job.getStartedAt()));
+    InOrder inOrder = inOrder(jobsRepository, jobMetrics);
+    inOrder.verify(jobsRepository).markStarted(3L, job.getStartedAt());
+    inOrder.verify(jobMetrics).recordStarted(job);
+    inOrder.verify(jobsRepository).finishAttempt(3L, null, 0, "complete", job.getFinishedAt());
+    inOrder.verify(jobMetrics).recordFinished(job);
+  }
+
+  @Test
+  public void job_that_is_not_run_is_still_counted() {
+    // arrange
+    Job job = Job.builder().id(3L).status("running").build();
+
+    // act
+    jobService.finishWithoutRunning(job, "rejected", "too busy");
+
+    // assert
+    assertEquals("rejected", job.getStatus());
+    assertNotNull(job.getFinishedAt());
+    verify(jobMetrics, times(1)).recordFinished(job);
+    verify(jobMetrics, never()).recordStarted(any());
+  }
+
+  @Test
+  public void jobTypeOf_names_job_classes_only() {
+    // arrange
+    JobContextConsumer anonymous =
+        new JobContextConsumer() {
+          @Override
+          public void accept(JobContext c) {}
+        };
+
+    // act & assert
+    assertEquals("TestJob", JobService.jobTypeOf(TestJob.builder().build()));
+    assertNull(JobService.jobTypeOf(ctx -> {}));
+    assertNull(JobService.jobTypeOf(anonymous));
+  }
+
+  @Test
+  public void runAsJob_records_job_type() {
+    // act
+    Job job = jobService.runAsJob(TestJob.builder().build());
+
+    // assert
+    assertEquals("TestJob", job.getJobType());
+  }
+
+  @Test
+  public void getExecutorStatus_reports_pool_counts() {
+    // arrange
+    ThreadPoolExecutor pool = mock(ThreadPoolExecutor.class);
+    LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+    queue.add(() -> {});
+    queue.add(() -> {});
+    when(jobExecutor.getThreadPoolExecutor()).thenReturn(pool);
+    when(jobExecutor.getMaxPoolSize()).thenReturn(4);
+    when(jobExecutor.getQueueCapacity()).thenReturn(100);
+    when(pool.getActiveCount()).thenReturn(3);
+    when(pool.getQueue()).thenReturn(queue);
+    when(pool.getCompletedTaskCount()).thenReturn(42L);
+
+    // act
+    JobExecutorStatus status = jobService.getExecutorStatus();
+
+    // assert
+    assertEquals(4, status.getMaxConcurrency());
+    assertEquals(100, status.getQueueCapacity());
+    assertEquals(3, status.getActive());
+    assertEquals(2, status.getQueued());
+    assertEquals(42L, status.getCompleted());
+  }
+
+  @Test
+  public void starting_a_job_does_not_overwrite_a_cancel_requested_while_it_was_queued() {
+    // arrange
+    Job job = Job.builder().id(4L).status("running").build();
+    when(jobsRepository.findCancellingIds(List.of(4L))).thenReturn(List.of(4L));
+
+    // act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          jobService.checkRunningJobs();
+          Thread.sleep(60000);
+        });
+
+    // assert
+    verify(jobsRepository, times(1)).markStarted(4L, job.getStartedAt());
+    assertEquals("cancelled", job.getStatus());
+  }
+
+  @Test
+  public void a_queued_job_finishes_only_the_attempt_it_leased() {
+    // arrange
+    Job job = Job.builder().id(6L).status("running").leaseOwner("node-a").attempts(2).build();
+    when(jobsRepository.finishAttempt(eq(6L), eq("node-a"), eq(2), eq("complete"), any()))
+        .thenReturn(1);
+
+    // act
+    jobService.runJobAsync(job, ctx -> {});
+
+    // assert
+    verify(jobsRepository, times(1))
+        .finishAttempt(6L, "node-a", 2, "complete", job.getFinishedAt());
+    verify(jobsRepository, never()).save(any());
+    verify(jobMetrics, times(1)).recordFinished(job);
+  }
+
+  @Test
+  public void a_job_claimed_by_another_node_does_not_overwrite_its_new_attempt() {
+    // arrange
+    Job job = Job.builder().id(6L).status("running").leaseOwner("node-a").attempts(1).build();
+    when(jobsRepository.finishAttempt(anyLong(), any(), anyInt(), any(), any())).thenReturn(0);
+
+    // act
+    jobService.runJobAsync(job, ctx -> {});
+
+    // assert
+    verify(jobsRepository, times(1))
+        .finishAttempt(6L, "node-a", 1, "complete", job.getFinishedAt());
+    verify(jobsRepository, never()).save(any());
+  }
+}
@@ -1,8 +1,11 @@
 package edu.ucsb.cs156.example.testconfig;
 
 import edu.ucsb.cs156.example.config.SecurityConfig;
+import edu.ucsb.cs156.example.services.AdminService;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.JsonStreamService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
@@ -16,8 +19,23 @@ public class TestConfig {
     return new MockCurrentUserServiceImpl();
   }
 
+  @Bean
+  public AdminService adminService() {
+    return new AdminService();
+  }
+
   @Bean
   public GrantedAuthoritiesService grantedAuthoritiesService() {
     return new GrantedAuthoritiesService();
   }
+
+  @Bean
+  public JsonStreamService jsonStreamService() {
+    return new JsonStreamService();
+  }
+
+  @Bean
+  public TableVersionService tableVersionService() {
+    return new TableVersionService();
+  }
 }